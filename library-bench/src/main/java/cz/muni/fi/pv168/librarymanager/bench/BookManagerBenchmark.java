@@ -0,0 +1,73 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.BookBuilder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded throughput and latency of BookManagerImpl.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookManagerBenchmark {
+
+    @Benchmark
+    public Book getBook(LibraryState state) {
+        return state.bookManager.getBook(state.randomBook().getId());
+    }
+
+    @Benchmark
+    public List<Book> findBooksAfter(LibraryState state) {
+        return state.bookManager.findBooksAfter(state.randomBook().getId(), 100);
+    }
+
+    @Benchmark
+    public List<Book> findBooksByAuthor(LibraryState state) {
+        return state.bookManager.findBooksByAuthor(state.randomBook().getAuthor());
+    }
+
+    @Benchmark
+    public List<Book> findBooksByTitle(LibraryState state) {
+        return state.bookManager.findBooksByTitle(state.randomBook().getTitle());
+    }
+
+    @Benchmark
+    public List<Book> findAllBooks(LibraryState state) {
+        return state.bookManager.findAllBooks();
+    }
+
+    @Benchmark
+    public void updateBook(LibraryState state) {
+        Book book = state.randomBook();
+        state.bookManager.updateBook(new BookBuilder()
+                .id(book.getId())
+                .author(book.getAuthor())
+                .title(book.getTitle())
+                .yearOfPublication(book.getYearOfPublication())
+                .build());
+    }
+
+    @Benchmark
+    public void createAndDeleteBook(LibraryState state) {
+        Book book = new BookBuilder()
+                .author("Benchmark author")
+                .title("Benchmark title")
+                .yearOfPublication(2000)
+                .build();
+        state.bookManager.createBook(book);
+        state.bookManager.deleteBook(book);
+    }
+}
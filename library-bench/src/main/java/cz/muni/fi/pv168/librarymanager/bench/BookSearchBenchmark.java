@@ -0,0 +1,205 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.BookBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.BookManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.BookSearchIndex;
+import cz.muni.fi.pv168.librarymanager.backend.SchemaManager;
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search of books by {@link BookSearchIndex} compared with LIKE '%word%'
+ * queries of the database, which BookManagerImpl uses without the index.
+ * Catalogue has titles of {@value #MIN_TITLE_WORDS} to
+ * {@value #MAX_TITLE_WORDS} words and authors of two words, the words are
+ * made of Czech syllables. Queries are whole words, their prefixes and
+ * their inner parts. One catalogue size is measured by:
+ * <pre>
+ * java -jar benchmarks.jar BookSearchBenchmark -p size=1000000
+ * </pre>
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BookSearchBenchmark {
+
+    private static final int LIMIT = 20;
+    private static final int MIN_TITLE_WORDS = 1;
+    private static final int MAX_TITLE_WORDS = 5;
+    private static final int VOCABULARY = 20000;
+    private static final int AUTHORS = 2000;
+    private static final int QUERIES = 1000;
+    private static final String[] SYLLABLES = {
+        "ba", "be", "bo", "ča", "če", "da", "dě", "do", "ha", "hra", "ja", "ka",
+        "ko", "ků", "la", "lé", "lo", "ma", "mě", "mo", "na", "ně", "no", "pa",
+        "po", "pří", "ra", "ře", "ro", "sa", "se", "so", "ša", "ta", "tě", "to",
+        "va", "ve", "vo", "za", "zá", "žo"
+    };
+
+    @State(Scope.Benchmark)
+    public static class SearchState {
+
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        public BasicDataSource dataSource;
+        public BookManagerImpl indexedManager;
+        public BookManagerImpl databaseManager;
+        public String[] words;
+        public String[] prefixes;
+        public String[] infixes;
+        public String[] pairs;
+
+        private String url;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            url = "jdbc:derby:memory:library-search-bench-" + size;
+            Properties configuration = new Properties();
+            configuration.setProperty("jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver");
+            configuration.setProperty("jdbc.url", url + ";create=true");
+            dataSource = DataSourceFactory.createDataSource(configuration);
+            new SchemaManager(dataSource).updateSchema();
+
+            Random random = new Random(42);
+            String[] vocabulary = new String[VOCABULARY];
+            for (int i = 0; i < VOCABULARY; i++) {
+                vocabulary[i] = word(random, 2 + random.nextInt(3));
+            }
+            String[] authors = new String[AUTHORS];
+            for (int i = 0; i < AUTHORS; i++) {
+                authors[i] = capitalize(word(random, 2)) + " " + capitalize(word(random, 3));
+            }
+            List<Book> books = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                StringBuilder title = new StringBuilder();
+                int count = MIN_TITLE_WORDS + random.nextInt(MAX_TITLE_WORDS - MIN_TITLE_WORDS + 1);
+                for (int j = 0; j < count; j++) {
+                    // skewed towards the first words like natural language
+                    int index = (int) (VOCABULARY * Math.pow(random.nextDouble(), 3));
+                    title.append(j == 0 ? capitalize(vocabulary[index]) : " " + vocabulary[index]);
+                }
+                books.add(new BookBuilder()
+                        .author(authors[random.nextInt(AUTHORS)])
+                        .title(title.toString())
+                        .yearOfPublication(1900 + random.nextInt(100))
+                        .build());
+            }
+            Clock clock = Clock.systemUTC();
+            databaseManager = new BookManagerImpl(clock);
+            databaseManager.setDataSource(dataSource);
+            databaseManager.createBooks(books);
+
+            indexedManager = new BookManagerImpl(clock);
+            indexedManager.setDataSource(dataSource);
+            BookSearchIndex index = new BookSearchIndex();
+            indexedManager.setSearchIndex(index);
+            index.load(indexedManager);
+
+            words = new String[QUERIES];
+            prefixes = new String[QUERIES];
+            infixes = new String[QUERIES];
+            pairs = new String[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                Book book = books.get(random.nextInt(size));
+                String[] titleWords = book.getTitle().split(" ");
+                String word = titleWords[random.nextInt(titleWords.length)];
+                words[i] = word;
+                prefixes[i] = word.substring(0, Math.min(word.length(), 3));
+                infixes[i] = word.length() > 4 ? word.substring(1, word.length() - 1) : word;
+                pairs[i] = word + " " + book.getAuthor().split(" ")[1];
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            dataSource.close();
+            try {
+                DriverManager.getConnection(url + ";drop=true");
+            } catch (SQLException ex) {
+                // dropping of the database is reported by exception
+                if (!"08006".equals(ex.getSQLState())) {
+                    throw ex;
+                }
+            }
+        }
+
+        private static String word(Random random, int syllables) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            return word.toString();
+        }
+
+        private static String capitalize(String word) {
+            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        }
+
+        private static String random(String[] queries) {
+            return queries[ThreadLocalRandom.current().nextInt(queries.length)];
+        }
+    }
+
+    @Benchmark
+    public List<Book> indexWord(SearchState state) {
+        return state.indexedManager.searchBooks(SearchState.random(state.words), LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> indexPrefix(SearchState state) {
+        return state.indexedManager.searchBooks(SearchState.random(state.prefixes), LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> indexInfix(SearchState state) {
+        return state.indexedManager.searchBooks(SearchState.random(state.infixes), LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> indexTitleAndAuthor(SearchState state) {
+        return state.indexedManager.searchBooks(SearchState.random(state.pairs), LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> likeWord(SearchState state) {
+        return state.databaseManager.searchBooks(SearchState.random(state.words), LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> likeInfix(SearchState state) {
+        return state.databaseManager.searchBooks(SearchState.random(state.infixes), LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> likeTitleAndAuthor(SearchState state) {
+        return state.databaseManager.searchBooks(SearchState.random(state.pairs), LIMIT);
+    }
+}
@@ -0,0 +1,89 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import cz.muni.fi.pv168.librarymanager.backend.ClientBuilder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded throughput and latency of ClientManagerImpl.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientManagerBenchmark {
+
+    @Benchmark
+    public Client getClient(LibraryState state) {
+        return state.clientManager.getClient(state.randomClient().getId());
+    }
+
+    @Benchmark
+    public List<Client> findClientsAfter(LibraryState state) {
+        return state.clientManager.findClientsAfter(state.randomClient().getId(), 100);
+    }
+
+    @Benchmark
+    public List<Client> findClientsByName(LibraryState state) {
+        return state.clientManager.findClientsByName(state.randomClient().getName());
+    }
+
+    @Benchmark
+    public List<Client> findClientsBySurname(LibraryState state) {
+        return state.clientManager.findClientsBySurname(state.randomClient().getSurname());
+    }
+
+    @Benchmark
+    public List<Client> findClientsByPrefix(LibraryState state) {
+        return state.clientManager.findClientsByPrefix(typedPrefix(state), 10);
+    }
+
+    @Benchmark
+    public List<Client> findClientsByPrefixInIndex(LibraryState state) {
+        return state.typeaheadClientManager.findClientsByPrefix(typedPrefix(state), 10);
+    }
+
+    /**
+     * @return surname of random client without its last character
+     */
+    private static String typedPrefix(LibraryState state) {
+        String surname = state.randomClient().getSurname();
+        return surname.substring(0, surname.length() - 1);
+    }
+
+    @Benchmark
+    public List<Client> findAllClients(LibraryState state) {
+        return state.clientManager.findAllClients();
+    }
+
+    @Benchmark
+    public void updateClient(LibraryState state) {
+        Client client = state.randomClient();
+        state.clientManager.updateClient(new ClientBuilder()
+                .id(client.getId())
+                .name(client.getName())
+                .surname(client.getSurname())
+                .build());
+    }
+
+    @Benchmark
+    public void createAndDeleteClient(LibraryState state) {
+        Client client = new ClientBuilder()
+                .name("Benchmark")
+                .surname("Client")
+                .build();
+        state.clientManager.createClient(client);
+        state.clientManager.deleteClient(client);
+    }
+}
@@ -0,0 +1,59 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import cz.muni.fi.pv168.librarymanager.backend.Rent;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of the most frequent operations when several
+ * desks use the library at once. Number of threads can be changed
+ * by -t option.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ConcurrentManagerBenchmark {
+
+    @Benchmark
+    public Book getBook(LibraryState state) {
+        return state.bookManager.getBook(state.randomBook().getId());
+    }
+
+    @Benchmark
+    public Client getClient(LibraryState state) {
+        return state.clientManager.getClient(state.randomClient().getId());
+    }
+
+    @Benchmark
+    public List<Book> findRentBooksByClient(LibraryState state) {
+        return state.rentManager.findRentBooksByClient(state.randomClient());
+    }
+
+    @Benchmark
+    public List<Rent> findDelayedReturns(LibraryState state) {
+        return state.rentManager.findDelayedReturns();
+    }
+
+    @Benchmark
+    public Rent createAndDeleteRent(LibraryState state) {
+        Rent rent = state.newFutureRent();
+        state.rentManager.createRent(rent);
+        state.rentManager.deleteRent(rent);
+        return rent;
+    }
+}
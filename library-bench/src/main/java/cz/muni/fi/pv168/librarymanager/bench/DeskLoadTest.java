@@ -0,0 +1,193 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.BookBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.BookManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import cz.muni.fi.pv168.librarymanager.backend.ClientManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.Rent;
+import cz.muni.fi.pv168.librarymanager.backend.RentBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.RentManagerImpl;
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import cz.muni.fi.pv168.librarymanager.common.DatabaseServer;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * Load test of desks sharing one database through {@link DatabaseServer}.
+ * This process populates the database by {@link LibraryState} and starts
+ * the server on localhost, then runs steps with growing number of desks.
+ * Each desk is a separate JVM connected by the client driver, which
+ * repeats the operations of {@link ConcurrentManagerBenchmark} in one
+ * thread without pauses: get book, get client, find books of client and
+ * create and delete rent of its own book. Desks warm up until the common
+ * start and count operations for the same interval, throughput of the
+ * step is their sum. Runs by:
+ * <pre>
+ * java -cp benchmarks.jar cz.muni.fi.pv168.librarymanager.bench.DeskLoadTest [size [seconds [desks...]]]
+ * </pre>
+ * Defaults are 10000 books and clients, 10 seconds and 1, 2, 4 and 8 desks.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class DeskLoadTest {
+
+    private static final int DEFAULT_SIZE = 10000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int[] DEFAULT_DESKS = {1, 2, 4, 8};
+
+    /**
+     * Milliseconds for desks to start and warm up before measurement
+     */
+    private static final long WARMUP_MILLIS = 8000;
+
+    private static final String RESULT = "operations ";
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        int[] steps = DEFAULT_DESKS;
+        if (args.length > 2) {
+            steps = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                steps[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        LibraryState state = new LibraryState();
+        state.size = size;
+        state.setUp();
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try (DatabaseServer server = new DatabaseServer(DatabaseServer.DEFAULT_HOST, port)) {
+            server.start();
+            String url = server.getClientUrl("memory:library-bench-" + size);
+            System.out.printf("%6s %12s %12s %12s%n", "desks", "ops/s", "ops/s/desk", "ms/op");
+            for (int desks : steps) {
+                long total = runStep(url, desks, seconds);
+                double throughput = (double) total / seconds;
+                System.out.printf("%6d %12.0f %12.0f %12.3f%n", desks, throughput,
+                        throughput / desks, 1000.0 * desks / throughput);
+            }
+        } finally {
+            state.tearDown();
+        }
+    }
+
+    private static long runStep(String url, int desks, int seconds)
+            throws IOException, InterruptedException {
+        long start = System.currentTimeMillis() + WARMUP_MILLIS;
+        long end = start + seconds * 1000L;
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>(desks);
+        for (int i = 0; i < desks; i++) {
+            processes.add(new ProcessBuilder(java, "-Xmx256m",
+                    "-cp", System.getProperty("java.class.path"),
+                    Desk.class.getName(), url, String.valueOf(start), String.valueOf(end))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start());
+        }
+        long total = 0;
+        for (Process process : processes) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(RESULT)) {
+                        total += Long.parseLong(line.substring(RESULT.length()));
+                    }
+                }
+            }
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("Desk failed with exit code " + process.exitValue());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * One desk, prints number of operations finished between the start and
+     * the end.
+     */
+    public static class Desk {
+
+        private static final LocalDate FUTURE = LocalDate.of(2100, 1, 1);
+
+        public static void main(String[] args) throws SQLException {
+            String url = args[0];
+            long start = Long.parseLong(args[1]);
+            long end = Long.parseLong(args[2]);
+            Properties configuration = new Properties();
+            configuration.setProperty("jdbc.url", url);
+            BasicDataSource dataSource = DataSourceFactory.createDataSource(configuration);
+            try {
+                Clock clock = Clock.systemUTC();
+                BookManagerImpl bookManager = new BookManagerImpl(clock);
+                bookManager.setDataSource(dataSource);
+                ClientManagerImpl clientManager = new ClientManagerImpl(dataSource);
+                RentManagerImpl rentManager = new RentManagerImpl(clock);
+                rentManager.setDataSource(dataSource);
+
+                List<Book> books = new ArrayList<>();
+                bookManager.forEachBook(books::add);
+                List<Client> clients = new ArrayList<>();
+                clientManager.forEachClient(clients::add);
+                // rents of own book do not collide with other desks
+                Book ownBook = new BookBuilder().author("Desk").title("Desk").build();
+                bookManager.createBook(ownBook);
+
+                long operations = 0;
+                boolean measured = false;
+                for (long now = System.currentTimeMillis(); now < end;
+                        now = System.currentTimeMillis()) {
+                    if (!measured && now >= start) {
+                        measured = true;
+                        operations = 0;
+                    }
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    Client client = clients.get(random.nextInt(clients.size()));
+                    switch ((int) (operations % 4)) {
+                        case 0:
+                            bookManager.getBook(books.get(random.nextInt(books.size())).getId());
+                            break;
+                        case 1:
+                            clientManager.getClient(client.getId());
+                            break;
+                        case 2:
+                            rentManager.findRentBooksByClient(client);
+                            break;
+                        default:
+                            LocalDate day = FUTURE.plusDays(operations % 100000);
+                            LocalDate next = day.plusDays(1);
+                            Rent rent = new RentBuilder()
+                                    .book(ownBook)
+                                    .client(client)
+                                    .startDay(day.getYear(), day.getMonth(), day.getDayOfMonth())
+                                    .endDay(next.getYear(), next.getMonth(), next.getDayOfMonth())
+                                    .build();
+                            rentManager.createRent(rent);
+                            rentManager.deleteRent(rent);
+                    }
+                    operations++;
+                }
+                bookManager.deleteBook(ownBook);
+                System.out.println(RESULT + operations);
+            } finally {
+                dataSource.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.BookAvailabilityIndex;
+import cz.muni.fi.pv168.librarymanager.backend.BookBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.BookManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import cz.muni.fi.pv168.librarymanager.backend.ClientBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.ClientManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.ClientTypeaheadIndex;
+import cz.muni.fi.pv168.librarymanager.backend.Rent;
+import cz.muni.fi.pv168.librarymanager.backend.RentBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.RentManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.SchemaManager;
+import cz.muni.fi.pv168.librarymanager.backend.TrackingRentManager;
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * In-memory Derby database populated with given number of books, clients
+ * and rents. Every book is rent once, about half of the rents are delayed
+ * at {@link #TODAY}. Rents created by benchmarks use separate spare books,
+ * so that each of the populated books keeps exactly one rent.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@State(Scope.Benchmark)
+public class LibraryState {
+
+    /**
+     * Date of population, rents start after it
+     */
+    public static final LocalDate POPULATED = LocalDate.of(2016, 1, 1);
+
+    /**
+     * Date seen by managers during benchmark
+     */
+    public static final LocalDate TODAY = LocalDate.of(2016, 6, 1);
+
+    private static final LocalDate FUTURE = LocalDate.of(2100, 1, 1);
+    private static final int FUTURE_DAYS = 100000;
+    private static final int SPARE_BOOKS = 1000;
+
+    /**
+     * Number of entities created in one transaction. Single huge batches
+     * make Derby generate duplicate identity values while the index
+     * statistics daemon is running.
+     */
+    private static final int POPULATION_CHUNK = 1000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    public BasicDataSource dataSource;
+    public BookManagerImpl bookManager;
+    public ClientManagerImpl clientManager;
+    public ClientManagerImpl typeaheadClientManager;
+    public RentManagerImpl rentManager;
+    public TrackingRentManager trackingRentManager;
+    public BookAvailabilityIndex availabilityIndex;
+
+    public Book[] books;
+    public Client[] clients;
+    public Rent[] rents;
+    public Book[] spareBooks;
+
+    private final AtomicLong futureRentCounter = new AtomicLong();
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        url = "jdbc:derby:memory:library-bench-" + size;
+        Properties configuration = new Properties();
+        configuration.setProperty("jdbc.driver", "org.apache.derby.jdbc.EmbeddedDriver");
+        configuration.setProperty("jdbc.url", url + ";create=true");
+        configuration.setProperty("pool.maxTotal", "32");
+        configuration.setProperty("pool.maxIdle", "32");
+        dataSource = DataSourceFactory.createDataSource(configuration);
+        new SchemaManager(dataSource).updateSchema();
+
+        Clock today = clockAt(TODAY);
+        bookManager = new BookManagerImpl(today);
+        bookManager.setDataSource(dataSource);
+        clientManager = new ClientManagerImpl(dataSource);
+        rentManager = new RentManagerImpl(today);
+        rentManager.setDataSource(dataSource);
+
+        populate();
+        updateStatistics();
+        trackingRentManager = new TrackingRentManager(rentManager, today);
+        availabilityIndex = new BookAvailabilityIndex(today);
+        availabilityIndex.load(rentManager);
+        typeaheadClientManager = new ClientManagerImpl(dataSource);
+        ClientTypeaheadIndex typeaheadIndex = new ClientTypeaheadIndex();
+        typeaheadClientManager.setTypeaheadIndex(typeaheadIndex);
+        typeaheadIndex.load(typeaheadClientManager);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        dataSource.close();
+        try {
+            DriverManager.getConnection(url + ";drop=true");
+        } catch (SQLException ex) {
+            // dropping of the database is reported by exception
+            if (!"08006".equals(ex.getSQLState())) {
+                throw ex;
+            }
+        }
+    }
+
+    private void populate() {
+        List<Book> bookList = new ArrayList<>(size + SPARE_BOOKS);
+        for (int i = 0; i < size + SPARE_BOOKS; i++) {
+            bookList.add(new BookBuilder()
+                    .author("Author " + i % 1000)
+                    .title("Title " + i)
+                    .yearOfPublication(1900 + i % 100)
+                    .build());
+        }
+        createInChunks(bookList, bookManager::createBooks);
+        books = bookList.subList(0, size).toArray(new Book[size]);
+        spareBooks = bookList.subList(size, size + SPARE_BOOKS).toArray(new Book[SPARE_BOOKS]);
+
+        List<Client> clientList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            clientList.add(new ClientBuilder()
+                    .name("Name " + i % 1000)
+                    .surname("Surname " + i)
+                    .build());
+        }
+        createInChunks(clientList, clientManager::createClients);
+        clients = clientList.toArray(new Client[size]);
+
+        List<Rent> rentList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LocalDate start = POPULATED.plusDays(i % 300);
+            LocalDate end = start.plusDays(14);
+            rentList.add(new RentBuilder()
+                    .book(books[i])
+                    .client(clients[(int) ((i * 7L) % size)])
+                    .startDay(start.getYear(), start.getMonth(), start.getDayOfMonth())
+                    .endDay(end.getYear(), end.getMonth(), end.getDayOfMonth())
+                    .build());
+        }
+        RentManagerImpl populatingManager = new RentManagerImpl(clockAt(POPULATED));
+        populatingManager.setDataSource(dataSource);
+        createInChunks(rentList, populatingManager::createRents);
+        rents = rentList.toArray(new Rent[size]);
+    }
+
+    /**
+     * Index statistics are brought up to date before measurement, otherwise
+     * the statistics daemon refreshes them during the first iterations and
+     * statements invalidated by it are recompiled by all threads at once.
+     */
+    private void updateStatistics() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+            Statement st = conn.createStatement()) {
+            for (String table : new String[]{"BOOK", "CLIENT", "RENT", "CHANGE_LOG"}) {
+                st.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS(CURRENT SCHEMA, '"
+                        + table + "', NULL)");
+            }
+        }
+    }
+
+    private static <T> void createInChunks(List<T> entities, Consumer<List<T>> create) {
+        for (int from = 0; from < entities.size(); from += POPULATION_CHUNK) {
+            create.accept(entities.subList(from, Math.min(from + POPULATION_CHUNK, entities.size())));
+        }
+    }
+
+    /**
+     * Returns new rent of a spare book. Rents returned to concurrently
+     * running threads do not overlap as long as the previous ones are
+     * deleted soon.
+     */
+    public Rent newFutureRent() {
+        long n = futureRentCounter.getAndIncrement();
+        LocalDate start = FUTURE.plusDays((n * 2) % FUTURE_DAYS);
+        LocalDate end = start.plusDays(1);
+        return new RentBuilder()
+                .book(spareBooks[(int) (n % SPARE_BOOKS)])
+                .client(randomClient())
+                .startDay(start.getYear(), start.getMonth(), start.getDayOfMonth())
+                .endDay(end.getYear(), end.getMonth(), end.getDayOfMonth())
+                .build();
+    }
+
+    public Book randomBook() {
+        return books[ThreadLocalRandom.current().nextInt(books.length)];
+    }
+
+    public Client randomClient() {
+        return clients[ThreadLocalRandom.current().nextInt(clients.length)];
+    }
+
+    public Rent randomRent() {
+        return rents[ThreadLocalRandom.current().nextInt(rents.length)];
+    }
+
+    private static Clock clockAt(LocalDate date) {
+        ZoneId zone = ZoneId.of("UTC");
+        return Clock.fixed(date.atStartOfDay(zone).toInstant(), zone);
+    }
+}
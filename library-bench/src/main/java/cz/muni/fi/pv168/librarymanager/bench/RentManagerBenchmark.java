@@ -0,0 +1,79 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import cz.muni.fi.pv168.librarymanager.backend.Rent;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded throughput and latency of RentManagerImpl.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RentManagerBenchmark {
+
+    @Benchmark
+    public Rent createAndDeleteRent(LibraryState state) {
+        Rent rent = state.newFutureRent();
+        state.rentManager.createRent(rent);
+        state.rentManager.deleteRent(rent);
+        return rent;
+    }
+
+    @Benchmark
+    public Rent getRent(LibraryState state) {
+        return state.rentManager.getRent(state.randomRent().getId());
+    }
+
+    @Benchmark
+    public List<Rent> findDelayedReturns(LibraryState state) {
+        return state.rentManager.findDelayedReturns();
+    }
+
+    @Benchmark
+    public List<Rent> findDelayedReturnsTracked(LibraryState state) {
+        return state.trackingRentManager.findDelayedReturns();
+    }
+
+    @Benchmark
+    public LocalDate findFirstFreeSlot(LibraryState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return state.availabilityIndex.findFirstFreeSlot(state.randomBook().getId(),
+                LibraryState.POPULATED.plusDays(random.nextInt(300)), 1 + random.nextInt(30));
+    }
+
+    @Benchmark
+    public Client findClientByRentBook(LibraryState state) {
+        return state.rentManager.findClientByRentBook(state.randomBook());
+    }
+
+    @Benchmark
+    public List<Book> findRentBooksByClient(LibraryState state) {
+        return state.rentManager.findRentBooksByClient(state.randomClient());
+    }
+
+    @Benchmark
+    public List<Rent> findRentsAfter(LibraryState state) {
+        return state.rentManager.findRentsAfter(state.randomRent().getId(), 100);
+    }
+
+    @Benchmark
+    public List<Rent> findAllRents(LibraryState state) {
+        return state.rentManager.findAllRents();
+    }
+}
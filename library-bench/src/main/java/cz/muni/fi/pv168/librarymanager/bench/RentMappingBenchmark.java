@@ -0,0 +1,87 @@
+package cz.muni.fi.pv168.librarymanager.bench;
+
+import cz.muni.fi.pv168.librarymanager.backend.Rent;
+import cz.muni.fi.pv168.librarymanager.backend.RentBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.RentManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.RentQuery;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rent listings mapped with and without sharing of clients, books and
+ * days. Listed rents are {@value #LISTED_RENTS} rents of spare books of
+ * {@link LibraryState} made by {@value #LISTED_CLIENTS} clients, so that
+ * clients and books repeat. Allocation per listing is reported by the GC
+ * profiler:
+ * <pre>
+ * java -jar benchmarks.jar RentMappingBenchmark -prof gc
+ * </pre>
+ * and gc.alloc.rate.norm is the number of bytes allocated per listing.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RentMappingBenchmark {
+
+    private static final int LISTED_RENTS = 10000;
+    private static final int LISTED_CLIENTS = 50;
+    private static final LocalDate LISTED_FROM = LocalDate.of(2020, 1, 1);
+    private static final LocalDate LISTED_TO = LocalDate.of(2099, 12, 31);
+
+    private static final RentQuery LISTED = new RentQuery()
+            .period(LISTED_FROM, LISTED_TO);
+
+    @State(Scope.Benchmark)
+    public static class MappingState {
+
+        @Param({"false", "true"})
+        public boolean sharing;
+
+        public RentManagerImpl manager;
+
+        @Setup(Level.Trial)
+        public void setUp(LibraryState library) {
+            manager = new RentManagerImpl(Clock.systemUTC());
+            manager.setDataSource(library.dataSource);
+            manager.setSharingEntities(sharing);
+            // rents of spare books before the rents of LibraryState.newFutureRent
+            int perBook = LISTED_RENTS / library.spareBooks.length;
+            List<Rent> rents = new ArrayList<>(LISTED_RENTS);
+            for (int i = 0; i < LISTED_RENTS; i++) {
+                LocalDate start = LISTED_FROM.plusDays(i % perBook * 30);
+                LocalDate end = start.plusDays(1);
+                rents.add(new RentBuilder()
+                        .book(library.spareBooks[i / perBook])
+                        .client(library.clients[i % LISTED_CLIENTS])
+                        .startDay(start.getYear(), start.getMonth(), start.getDayOfMonth())
+                        .endDay(end.getYear(), end.getMonth(), end.getDayOfMonth())
+                        .build());
+            }
+            library.rentManager.createRents(rents);
+        }
+    }
+
+    @Benchmark
+    public List<Rent> findRents(MappingState state) {
+        return state.manager.findRents(LISTED);
+    }
+}
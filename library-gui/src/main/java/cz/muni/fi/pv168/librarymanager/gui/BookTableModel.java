@@ -5,17 +5,36 @@
  */
 package cz.muni.fi.pv168.librarymanager.gui;
 
+import cz.muni.fi.pv168.librarymanager.backend.AsyncBookManager;
 import cz.muni.fi.pv168.librarymanager.backend.Book;
 import cz.muni.fi.pv168.librarymanager.backend.BookManager;
 import cz.muni.fi.pv168.librarymanager.backend.BookManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.BookQuery;
+import cz.muni.fi.pv168.librarymanager.backend.BookSearchIndex;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEventBus;
+import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import cz.muni.fi.pv168.librarymanager.common.Metrics;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
+import java.awt.EventQueue;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import static java.time.Month.MARCH;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.sql.DataSource;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.SwingWorker;
 import javax.swing.table.AbstractTableModel;
 
@@ -25,84 +44,279 @@ import javax.swing.table.AbstractTableModel;
  */
 public class BookTableModel extends AbstractTableModel{
     
-    private final List<Book> books = new ArrayList<>();
+    private final PagedRows<Book> books = new PagedRows<>(this, BLOCK_SIZE, MAX_BLOCKS,
+            Book::getId);
     private final BookManager bookManager;
+    private final AsyncBookManager asyncBookManager;
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
     private final static ZonedDateTime NOW
             = LocalDateTime.of(2016, MARCH, 13, 22, 00).atZone(ZoneId.of("UTC"));
 
-    public BookTableModel(DataSource dataSource) {
-        bookManager = new BookManagerImpl(prepareClockMock(NOW));
-        bookManager.setDataSource(dataSource);
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                books.addAll(bookManager.findAllBooks());
-                return null;
-            }
-        };
-        worker.execute();
+    /**
+     * Number of books loaded at once when table is scrolled
+     */
+    public static final int BLOCK_SIZE = 200;
+
+    /**
+     * Number of loaded blocks of books kept in memory
+     */
+    public static final int MAX_BLOCKS = 20;
+
+    /**
+     * Maximal number of books found by words of title or author
+     */
+    public static final int SEARCH_LIMIT = 1000;
+    
+    private static final BookQuery.SortColumn[] SORT_COLUMNS = {
+        BookQuery.SortColumn.TITLE,
+        BookQuery.SortColumn.AUTHOR,
+        BookQuery.SortColumn.YEAR_OF_PUBLICATION
+    };
+    
+    private int filterColumn;
+    private String filterText = "";
+    private int sortColumn;
+    private boolean descending;
+    private boolean ranked;
+    private volatile List<Book> found = Collections.emptyList();
+
+    public BookTableModel(DataSource dataSource, ManagerExecutor executor) {
+        this(dataSource, executor, false);
     }
     
-    private static Clock prepareClockMock(ZonedDateTime now) {
-        return Clock.fixed(now.toInstant(), now.getZone());
+    /**
+     * @param preload whether rows are counted and the first block loaded
+     * in the calling thread, the model must not be shown in a table yet
+     */
+    BookTableModel(DataSource dataSource, ManagerExecutor executor, boolean preload) {
+        BookManagerImpl manager = new BookManagerImpl(prepareClockMock(NOW));
+        manager.setDataSource(dataSource);
+        manager.setChangeEventBus(ChangeEventBus.getDefault());
+        manager.setSearchIndex(searchIndex);
+        loadSearchIndex(manager);
+        bookManager = Metrics.getDefault().isEnabled()
+                ? Metrics.getDefault().instrument(BookManager.class, manager) : manager;
+        asyncBookManager = new AsyncBookManager(bookManager, executor);
+        setSource();
+        if (preload) {
+            books.preload();
+        } else {
+            books.refresh();
+        }
     }
     
-    public void addBook(Book book) {
+    private void loadSearchIndex(BookManager manager) {
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
-                bookManager.createBook(book);
-                System.out.println(book);
+                searchIndex.load(manager);
                 return null;
             }
 
             @Override
             protected void done() {
-                books.add(book);
-                int lastRow = books.size() - 1;
-                fireTableRowsInserted(lastRow, lastRow);
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Logger.getLogger(BookTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                }
             }
         };
         worker.execute();
     }
     
-    public void updateBook(Book book, int selectedRow){
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                bookManager.updateBook(book);
-                return null;
+    /**
+     * Shows only books whose value in column starts with text, year
+     * of publication has to be equal. When the search index is loaded,
+     * title and author filters show books whose title or author contain
+     * all words of text, best matches first, until they are sorted.
+     * @param column index of filtered column
+     * @param text text to match, empty text shows all books
+     * @throws NumberFormatException when year of publication is not a number
+     */
+    public void filter(int column, String text) {
+        if (column == 2 && !text.isEmpty()) {
+            Integer.parseInt(text.trim());
+        }
+        filterColumn = column;
+        filterText = text;
+        ranked = true;
+        reload();
+    }
+    
+    /**
+     * Sorts books by column, repeated sorting by the same column reverses
+     * the order.
+     * @param column index of column
+     */
+    public void sortBy(int column) {
+        descending = column == sortColumn && !descending;
+        sortColumn = column;
+        ranked = false;
+        reload();
+    }
+    
+    private BookQuery createQuery() {
+        BookQuery query = new BookQuery()
+                .sortBy(SORT_COLUMNS[sortColumn], descending);
+        if (filterText.isEmpty()) {
+            return query;
+        }
+        switch (filterColumn) {
+            case 0:
+                return query.title(filterText, MatchMode.PREFIX);
+            case 1:
+                return query.author(filterText, MatchMode.PREFIX);
+            case 2:
+                int year = Integer.parseInt(filterText.trim());
+                return query.yearOfPublication(year, year);
+            default:
+                throw new IndexOutOfBoundsException("Column index must be "
+                        + "greater or equal to 0 and less than 3: " + filterColumn);
+        }
+    }
+    
+    private void reload() {
+        setSource();
+        books.refresh();
+    }
+    
+    private boolean isSearching() {
+        return !filterText.isEmpty() && filterColumn < 2 && searchIndex.isLoaded();
+    }
+    
+    private void setSource() {
+        if (isSearching()) {
+            String text = filterText;
+            Comparator<Book> order = ranked ? null : createComparator();
+            books.setSource(() -> search(text, order),
+                    (offset, limit) -> found.subList(Math.min(offset, found.size()),
+                            Math.min(offset + limit, found.size())));
+            return;
+        }
+        BookQuery query = createQuery();
+        books.setSource(() -> bookManager.countBooks(query),
+                (offset, limit) -> bookManager.findBooks(query.page(offset, limit)));
+    }
+    
+    private int search(String text, Comparator<Book> order) {
+        List<Book> result = new ArrayList<>(bookManager.searchBooks(text, SEARCH_LIMIT));
+        if (order != null) {
+            result.sort(order);
+        }
+        found = result;
+        return result.size();
+    }
+    
+    private Comparator<Book> createComparator() {
+        Comparator<Book> order;
+        switch (sortColumn) {
+            case 0:
+                order = Comparator.comparing(Book::getTitle);
+                break;
+            case 1:
+                order = Comparator.comparing(Book::getAuthor);
+                break;
+            default:
+                order = Comparator.comparingInt(Book::getYearOfPublication);
+        }
+        order = order.thenComparing(Book::getId);
+        return descending ? order.reversed() : order;
+    }
+    
+    private static Clock prepareClockMock(ZonedDateTime now) {
+        return Clock.fixed(now.toInstant(), now.getZone());
+    }
+    
+    /**
+     * Rows are loaded again when the call fails, successful change is
+     * published by the manager.
+     */
+    private void refreshWhenFailed(CompletableFuture<Void> call) {
+        call.whenComplete((result, ex) -> {
+            if (ex != null) {
+                Logger.getLogger(BookTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                EventQueue.invokeLater(books::refresh);
             }
+        });
+    }
 
-            @Override
-            protected void done() {
-                fireTableRowsUpdated(selectedRow,selectedRow);
-            }
-        };
-        worker.execute();
+    /**
+     * Shows changes of books published to the bus, including changes made
+     * by this model.
+     * @param bus bus of the managers
+     */
+    public void listenTo(ChangeEventBus bus) {
+        bus.addListener(this::changed);
     }
     
-    public void deleteBook(int row){
-        SwingWorker<Void,Void> worker;
-        worker = new SwingWorker<Void, Void>() {
-            
-            @Override
-            protected Void doInBackground() throws Exception {
-                bookManager.deleteBook(books.get(row));
-                return null;
+    private void changed(ChangeEvent event) {
+        if (event.getEntityType() != EntityType.BOOK) {
+            return;
+        }
+        // changes of other processes are not in the search index yet
+        boolean remote = event.getEntity() == null;
+        switch (event.getChangeType()) {
+            case CREATED:
+                if (remote) {
+                    Book created = bookManager.getBook(event.getId());
+                    if (created != null) {
+                        searchIndex.put(created);
+                    }
+                }
+                // position of the new book depends on sorting
+                books.changed();
+                break;
+            case UPDATED:
+                Book book = remote ? bookManager.getBook(event.getId()) : (Book) event.getEntity();
+                if (book != null) {
+                    if (remote) {
+                        searchIndex.put(book);
+                    }
+                    books.updated(book);
+                    break;
+                }
+                // book was deleted after the update
+            default:
+                if (remote) {
+                    searchIndex.remove(event.getId());
+                }
+                books.deleted(event.getId());
+        }
+    }
+    
+    public void addBook(Book book) {
+        refreshWhenFailed(asyncBookManager.createBook(book));
+    }
+    
+    public void updateBook(Book book, int selectedRow) {
+        refreshWhenFailed(asyncBookManager.updateBook(book));
+    }
+    
+    public void deleteBook(int row) {
+        Book book = books.get(row);
+        if (book == null) {
+            return;
+        }
+        asyncBookManager.deleteBook(book).whenCompleteAsync((result, ex) -> {
+            if (ex instanceof IllegalEntityException) {
+                // archived rents keep the book, current ones have to be deleted first
+                JOptionPane.showMessageDialog(new JPanel(), "The book was not deleted, "
+                        + "it has current or returned rents or it is already deleted",
+                        "BOOK NOT DELETED", JOptionPane.ERROR_MESSAGE);
+                books.refresh();
+                return;
             }
-            @Override
-            protected void done() {
-                books.remove(row);
-                fireTableDataChanged();
+            if (ex != null) {
+                Logger.getLogger(BookTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                books.refresh();
             }
-        };
-        worker.execute();
+        }, EventQueue::invokeLater);
     }
 
     @Override
     public int getRowCount() {
-        return books.size();
+        return books.getRowCount();
     }
 
     @Override
@@ -113,6 +327,9 @@ public class BookTableModel extends AbstractTableModel{
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         Book book = books.get(rowIndex);
+        if (book == null) {
+            return PagedRows.PLACEHOLDER;
+        }
         switch (columnIndex) {
             case 0: 
                 return book.getTitle();
@@ -143,8 +360,6 @@ public class BookTableModel extends AbstractTableModel{
     }
     
     public Book getSelectedBook(int row){
-        if(row>=books.size() || row<0)
-            return null;
         return books.get(row);
     }
 }
@@ -1,13 +1,30 @@
 package cz.muni.fi.pv168.librarymanager.gui;
 
+import cz.muni.fi.pv168.librarymanager.backend.AsyncClientManager;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEventBus;
 import cz.muni.fi.pv168.librarymanager.backend.Client;
 import cz.muni.fi.pv168.librarymanager.backend.ClientManager;
 import cz.muni.fi.pv168.librarymanager.backend.ClientManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.ClientQuery;
+import cz.muni.fi.pv168.librarymanager.backend.ClientTypeaheadIndex;
+import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import cz.muni.fi.pv168.librarymanager.common.Metrics;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
 import java.awt.EventQueue;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.sql.DataSource;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.SwingWorker;
 import javax.swing.table.AbstractTableModel;
 
@@ -16,78 +33,263 @@ import javax.swing.table.AbstractTableModel;
  */
 public class ClientTableModel extends AbstractTableModel {
     
-    private final List<Client> clients = new ArrayList<>();
+    private final PagedRows<Client> clients = new PagedRows<>(this, BLOCK_SIZE, MAX_BLOCKS,
+            Client::getId);
     private final ClientManager clientManager;
+    private final AsyncClientManager asyncClientManager;
     private final ResourceBundle bundle;
+    private final ClientTypeaheadIndex typeaheadIndex = new ClientTypeaheadIndex();
 
-    public ClientTableModel(ResourceBundle bundle, DataSource dataSource) {
-        this.clientManager = new ClientManagerImpl(dataSource);
+    /**
+     * Number of clients loaded at once when table is scrolled
+     */
+    public static final int BLOCK_SIZE = 200;
+
+    /**
+     * Number of loaded blocks of clients kept in memory
+     */
+    public static final int MAX_BLOCKS = 20;
+
+    /**
+     * Maximal number of clients found while their name is typed
+     */
+    public static final int TYPEAHEAD_LIMIT = 50;
+    
+    private static final ClientQuery.SortColumn[] SORT_COLUMNS = {
+        ClientQuery.SortColumn.NAME,
+        ClientQuery.SortColumn.SURNAME
+    };
+    
+    private int filterColumn;
+    private String filterText = "";
+    private int sortColumn = 1;
+    private boolean descending;
+    private List<Client> shown;
+
+    public ClientTableModel(ResourceBundle bundle, DataSource dataSource,
+            ManagerExecutor executor) {
+        this(bundle, dataSource, executor, false);
+    }
+    
+    /**
+     * @param preload whether rows are counted and the first block loaded
+     * in the calling thread, the model must not be shown in a table yet
+     */
+    ClientTableModel(ResourceBundle bundle, DataSource dataSource,
+            ManagerExecutor executor, boolean preload) {
+        ClientManagerImpl manager = new ClientManagerImpl(dataSource);
+        manager.setChangeEventBus(ChangeEventBus.getDefault());
+        manager.setTypeaheadIndex(typeaheadIndex);
+        loadTypeaheadIndex(manager);
+        this.clientManager = Metrics.getDefault().isEnabled()
+                ? Metrics.getDefault().instrument(ClientManager.class, manager) : manager;
+        this.asyncClientManager = new AsyncClientManager(clientManager, executor);
         this.bundle = bundle;
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                clients.addAll(clientManager.findAllClients());
-                return null;
-            }
-        };
-        worker.execute();
+        setSource();
+        if (preload) {
+            clients.preload();
+        } else {
+            clients.refresh();
+        }
     }
     
-    public void addClient(Client client) {
+    private void loadTypeaheadIndex(ClientManager manager) {
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
-                clientManager.createClient(client);
+                typeaheadIndex.load(manager);
                 return null;
             }
 
             @Override
             protected void done() {
-                clients.add(client);
-                int lastRow = clients.size() - 1;
-                fireTableRowsInserted(lastRow, lastRow);
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Logger.getLogger(ClientTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                }
             }
         };
         worker.execute();
     }
     
-    public void updateClient(Client client, int selectedRow){
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                clientManager.updateClient(client);
-                return null;
+    /**
+     * Finds clients whose "name surname" or "surname name" starts with
+     * prefix, it may query the database until the typeahead index is loaded.
+     * @param prefix beginning of the name
+     * @return at most {@link #TYPEAHEAD_LIMIT} clients
+     */
+    public List<Client> findClientsByPrefix(String prefix) {
+        return clientManager.findClientsByPrefix(prefix, TYPEAHEAD_LIMIT);
+    }
+    
+    /**
+     * Shows only the given clients, in their order until they are sorted.
+     * Filtering shows clients of the database again.
+     * @param found clients to show
+     */
+    public void showClients(List<Client> found) {
+        show(new ArrayList<>(found));
+    }
+    
+    private void show(List<Client> list) {
+        // rows are read in background, the list is not changed afterwards
+        shown = list;
+        clients.setSource(list::size, (offset, limit) -> list.subList(
+                Math.min(offset, list.size()), Math.min(offset + limit, list.size())));
+        clients.refresh();
+    }
+    
+    /**
+     * Shows only clients whose value in column starts with text.
+     * @param column index of filtered column
+     * @param text text to match, empty text shows all clients
+     */
+    public void filter(int column, String text) {
+        filterColumn = column;
+        filterText = text;
+        shown = null;
+        reload();
+    }
+    
+    /**
+     * Sorts clients by column, repeated sorting by the same column reverses
+     * the order.
+     * @param column index of column
+     */
+    public void sortBy(int column) {
+        descending = column == sortColumn && !descending;
+        sortColumn = column;
+        if (shown != null) {
+            Comparator<Client> order = Comparator.comparing(sortColumn == 0
+                    ? Client::getName : Client::getSurname);
+            order = order.thenComparing(Client::getId);
+            List<Client> sorted = new ArrayList<>(shown);
+            sorted.sort(descending ? order.reversed() : order);
+            show(sorted);
+            return;
+        }
+        reload();
+    }
+    
+    private ClientQuery createQuery() {
+        ClientQuery query = new ClientQuery()
+                .sortBy(SORT_COLUMNS[sortColumn], descending);
+        if (filterText.isEmpty()) {
+            return query;
+        }
+        switch (filterColumn) {
+            case 0:
+                return query.name(filterText, MatchMode.PREFIX);
+            case 1:
+                return query.surname(filterText, MatchMode.PREFIX);
+            default:
+                throw new IndexOutOfBoundsException("Column index must be "
+                        + "greater or equal to 0 and less than 2: " + filterColumn);
+        }
+    }
+    
+    private void reload() {
+        setSource();
+        clients.refresh();
+    }
+    
+    private void setSource() {
+        ClientQuery query = createQuery();
+        clients.setSource(() -> clientManager.countClients(query),
+                (offset, limit) -> clientManager.findClients(query.page(offset, limit)));
+    }
+    
+    /**
+     * Rows are loaded again when the call fails, successful change is
+     * published by the manager.
+     */
+    private void refreshWhenFailed(CompletableFuture<Void> call) {
+        call.whenComplete((result, ex) -> {
+            if (ex != null) {
+                Logger.getLogger(ClientTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                EventQueue.invokeLater(clients::refresh);
             }
+        });
+    }
 
-            @Override
-            protected void done() {
-                fireTableRowsUpdated(selectedRow,selectedRow);
-            }
-        };
-        worker.execute();
+    /**
+     * Shows changes of clients published to the bus, including changes
+     * made by this model.
+     * @param bus bus of the managers
+     */
+    public void listenTo(ChangeEventBus bus) {
+        bus.addListener(this::changed);
     }
     
-    public void deleteClient(int row){
-        SwingWorker<Void,Void> worker;
-        worker = new SwingWorker<Void, Void>() {
-            
-            @Override
-            protected Void doInBackground() throws Exception {
-                clientManager.deleteClient(clients.get(row));
-                return null;
+    private void changed(ChangeEvent event) {
+        if (event.getEntityType() != EntityType.CLIENT) {
+            return;
+        }
+        // changes of other processes are not in the typeahead index yet
+        boolean remote = event.getEntity() == null;
+        switch (event.getChangeType()) {
+            case CREATED:
+                if (remote) {
+                    Client created = clientManager.getClient(event.getId());
+                    if (created != null) {
+                        typeaheadIndex.put(created);
+                    }
+                }
+                // position of the new client depends on sorting
+                clients.changed();
+                break;
+            case UPDATED:
+                Client client = remote
+                        ? clientManager.getClient(event.getId()) : (Client) event.getEntity();
+                if (client != null) {
+                    if (remote) {
+                        typeaheadIndex.put(client);
+                    }
+                    clients.updated(client);
+                    break;
+                }
+                // client was deleted after the update
+            default:
+                if (remote) {
+                    typeaheadIndex.remove(event.getId());
+                }
+                clients.deleted(event.getId());
+        }
+    }
+    
+    public void addClient(Client client) {
+        refreshWhenFailed(asyncClientManager.createClient(client));
+    }
+    
+    public void updateClient(Client client, int selectedRow) {
+        refreshWhenFailed(asyncClientManager.updateClient(client));
+    }
+    
+    public void deleteClient(int row) {
+        Client client = clients.get(row);
+        if (client == null) {
+            return;
+        }
+        asyncClientManager.deleteClient(client).whenCompleteAsync((result, ex) -> {
+            if (ex instanceof IllegalEntityException) {
+                // archived rents keep the client, current ones have to be deleted first
+                JOptionPane.showMessageDialog(new JPanel(), "The client was not deleted, "
+                        + "it has current or returned rents or it is already deleted",
+                        "CLIENT NOT DELETED", JOptionPane.ERROR_MESSAGE);
+                clients.refresh();
+                return;
             }
-            @Override
-            protected void done() {
-                clients.remove(row);
-                fireTableDataChanged();
+            if (ex != null) {
+                Logger.getLogger(ClientTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                clients.refresh();
             }
-        };
-        worker.execute();
+        }, EventQueue::invokeLater);
     }
 
     @Override
     public int getRowCount() {
-        return clients.size();
+        return clients.getRowCount();
     }
 
     @Override
@@ -98,6 +300,9 @@ public class ClientTableModel extends AbstractTableModel {
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         Client client = clients.get(rowIndex);
+        if (client == null) {
+            return PagedRows.PLACEHOLDER;
+        }
         switch (columnIndex) {
             case 0: 
                 return client.getName();
@@ -124,8 +329,6 @@ public class ClientTableModel extends AbstractTableModel {
     }
     
     public Client getSelectedClient(int row){
-        if(row>=clients.size() || row<0)
-            return null;
         return clients.get(row);
     }
     
@@ -0,0 +1,118 @@
+package cz.muni.fi.pv168.librarymanager.gui;
+
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Finds clients while their name is typed into text fields. Clients are
+ * looked up when typing pauses for {@link #DELAY} milliseconds, in
+ * background. Lookup of older text is cancelled and its clients are dropped,
+ * so only clients of the current text are shown.
+ *
+ * @author Josef Pavelec <jospavelec@gmail.com>
+ */
+public class ClientTypeahead {
+
+    /**
+     * Milliseconds of pause in typing before clients are looked up
+     */
+    public static final int DELAY = 150;
+
+    private final ClientTableModel model;
+    private final Supplier<String> text;
+    private final Consumer<List<Client>> consumer;
+    private final Timer timer;
+    private SwingWorker<List<Client>, Void> worker;
+
+    /**
+     * @param model model finding clients by prefix of their name
+     * @param text current text of the fields
+     * @param consumer receives found clients in event dispatch thread,
+     * empty list for blank text
+     */
+    public ClientTypeahead(ClientTableModel model, Supplier<String> text,
+            Consumer<List<Client>> consumer) {
+        this.model = model;
+        this.text = text;
+        this.consumer = consumer;
+        timer = new Timer(DELAY, e -> lookup());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Looks clients up when text of the field changes.
+     * @param field field with part of the name
+     */
+    public void attach(JTextComponent field) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                typed();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                typed();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+    }
+
+    private void typed() {
+        cancel();
+        timer.restart();
+    }
+
+    private void cancel() {
+        if (worker != null) {
+            // query is not interrupted, its result is only dropped
+            worker.cancel(false);
+            worker = null;
+        }
+    }
+
+    private void lookup() {
+        cancel();
+        String prefix = text.get();
+        if (prefix.trim().isEmpty()) {
+            consumer.accept(Collections.emptyList());
+            return;
+        }
+        worker = new SwingWorker<List<Client>, Void>() {
+            @Override
+            protected List<Client> doInBackground() throws Exception {
+                return model.findClientsByPrefix(prefix);
+            }
+
+            @Override
+            protected void done() {
+                // lookup of older text may finish before it is cancelled
+                if (isCancelled() || worker != this) {
+                    return;
+                }
+                worker = null;
+                try {
+                    consumer.accept(get());
+                } catch (InterruptedException | ExecutionException | CancellationException ex) {
+                    Logger.getLogger(ClientTypeahead.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        };
+        worker.execute();
+    }
+}
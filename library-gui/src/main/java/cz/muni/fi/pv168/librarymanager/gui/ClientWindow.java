@@ -18,6 +18,11 @@ public class ClientWindow extends javax.swing.JPanel {
     private Client client;
     private ResourceBundle bundle;
     private JTable table;
+    
+    /**
+     * Number of existing clients shown while name is typed
+     */
+    private static final int EXISTING_SHOWN = 3;
 
     /** Creates new form ClientAddWindow */
     public ClientWindow(String action,Client client,ResourceBundle bundle,
@@ -40,6 +45,40 @@ public class ClientWindow extends javax.swing.JPanel {
                 setTextsFromCustomer(customer);
                 break;                */
         }
+        attachTypeahead();
+    }
+    
+    /**
+     * Shows existing clients with the typed name, so that the same client
+     * is not added twice.
+     */
+    private void attachTypeahead() {
+        ClientTypeahead typeahead = new ClientTypeahead((ClientTableModel) table.getModel(),
+                () -> jTextFieldName.getText() + " " + jTextFieldSurname.getText(),
+                found -> {
+                    StringBuilder text = new StringBuilder();
+                    int shown = 0;
+                    for (Client existing : found) {
+                        if (client != null && existing.getId().equals(client.getId())) {
+                            continue;
+                        }
+                        if (shown == EXISTING_SHOWN) {
+                            text.append(", ...");
+                            break;
+                        }
+                        text.append(shown == 0 ? "Existing: " : ", ")
+                                .append(existing.getName()).append(' ')
+                                .append(existing.getSurname());
+                        shown++;
+                    }
+                    jLabelExisting.setText(text.toString());
+                    Window win = SwingUtilities.getWindowAncestor(this);
+                    if (win != null) {
+                        win.pack();
+                    }
+                });
+        typeahead.attach(jTextFieldName);
+        typeahead.attach(jTextFieldSurname);
     }
     
     private void setTextsFromClients(Client client) {
@@ -114,6 +153,7 @@ public class ClientWindow extends javax.swing.JPanel {
         jButton1 = new javax.swing.JButton();
         jLabelName = new javax.swing.JLabel();
         jLabelSurname = new javax.swing.JLabel();
+        jLabelExisting = new javax.swing.JLabel();
         jButton2 = new javax.swing.JButton();
 
         jLabelClientWindow.setText("Add a new client");
@@ -165,7 +205,10 @@ public class ClientWindow extends javax.swing.JPanel {
                             .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                             .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING, false)
                                 .addComponent(jTextFieldSurname, javax.swing.GroupLayout.DEFAULT_SIZE, 101, Short.MAX_VALUE)
-                                .addComponent(jTextFieldName)))))
+                                .addComponent(jTextFieldName)))
+                        .addGroup(layout.createSequentialGroup()
+                            .addGap(22, 22, 22)
+                            .addComponent(jLabelExisting))))
                 .addContainerGap(14, Short.MAX_VALUE))
         );
         layout.setVerticalGroup(
@@ -181,6 +224,8 @@ public class ClientWindow extends javax.swing.JPanel {
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jTextFieldSurname, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jLabelSurname))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jLabelExisting)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jButton1)
@@ -218,6 +263,7 @@ public class ClientWindow extends javax.swing.JPanel {
     private javax.swing.JButton jButton1;
     private javax.swing.JButton jButton2;
     private javax.swing.JLabel jLabelClientWindow;
+    private javax.swing.JLabel jLabelExisting;
     private javax.swing.JLabel jLabelName;
     private javax.swing.JLabel jLabelSurname;
     private javax.swing.JTextField jTextFieldName;
@@ -3,29 +3,26 @@ package cz.muni.fi.pv168.librarymanager.gui;
 import cz.muni.fi.pv168.librarymanager.backend.Book;
 import cz.muni.fi.pv168.librarymanager.backend.Client;
 import cz.muni.fi.pv168.librarymanager.backend.Rent;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import cz.muni.fi.pv168.librarymanager.common.Metrics;
+import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.format.DateTimeParseException;
 import java.util.Locale;
-import java.util.Properties;
 import java.util.concurrent.ExecutionException;
+import java.util.function.IntConsumer;
 import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
 import javax.swing.JDialog;
 import javax.swing.JOptionPane;
+import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
-import javax.swing.RowFilter;
 import javax.swing.SwingWorker;
-import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
-import org.apache.commons.dbcp2.BasicDataSource;
 
 /**
  * @author Josef Pavelec <jospavelec@gmail.com>
@@ -34,38 +31,68 @@ public class MainFrame extends javax.swing.JFrame {
 
     private static ResourceBundle bundle;
     private DataSource dataSource;
+    private ManagerExecutor executor;
+    private StartupLoader startup;
 
 //    private final ResourceBundle bundle = null;
     public MainFrame() {
-        DataSourceSwingWorker dataSourceSwingWorker = new DataSourceSwingWorker();
-        dataSourceSwingWorker.execute();
         /*String bundleName = MainFrame.class.getPackage().getName() 
                 + ".Bundle"+"_"+Locale.getDefault().toString();*/
         String bundleName = MainFrame.class.getPackage().getName() 
                 + ".Bundle"+"_cs_CZ";
         bundle = ResourceBundle.getBundle(bundleName);
+        startup = new StartupLoader(bundle);
+        DataSourceSwingWorker dataSourceSwingWorker = new DataSourceSwingWorker();
+        dataSourceSwingWorker.execute();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (startup.getChangeFeed() != null) {
+                    startup.getChangeFeed().close();
+                }
+                if (executor != null) {
+                    executor.shutdown();
+                }
+                if (startup.getServer() != null) {
+                    startup.getServer().close();
+                }
+                if (Metrics.getDefault().isEnabled()) {
+                    Logger.getLogger(MainFrame.class.getName()).log(Level.INFO,
+                            "Metrics:\n{0}", Metrics.getDefault().dump());
+                }
+            }
+        });
     }
 
-    private class DataSourceSwingWorker extends SwingWorker<DataSource, Void> {
+    private class DataSourceSwingWorker extends SwingWorker<Void, Void> {
 
         @Override
-        protected DataSource doInBackground() throws Exception {
-            return setDataSource();
+        protected Void doInBackground() throws Exception {
+            startup.load();
+            return null;
         }
 
         @Override
         protected void done() {
             try {
-                dataSource = get();
+                get();
+                dataSource = startup.getDataSource();
+                executor = startup.getExecutor();
                 initComponents();
 
                 jTable1.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
                 jTable2.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
                 jTable3.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+                sortOnHeaderClick(jTable1, ((ClientTableModel) jTable1.getModel())::sortBy);
+                sortOnHeaderClick(jTable2, ((BookTableModel) jTable2.getModel())::sortBy);
+                sortOnHeaderClick(jTable3, ((RentTableModel) jTable3.getModel())::sortBy);
 
             } catch (ExecutionException ex) {
+                Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex.getCause());
+                // e.g. rents which must be fixed by hand before the upgrade
                 JOptionPane.showMessageDialog(null,
-                        "Connection to database failed, aplication is closing.",
+                        "Opening of database failed, aplication is closing.\n"
+                        + ex.getCause().getMessage(),
                         "Database error",
                         JOptionPane.ERROR_MESSAGE);
                 System.exit(0);
@@ -75,45 +102,32 @@ public class MainFrame extends javax.swing.JFrame {
         }
     }
 
-    private DataSource setDataSource() {
-        Properties dbconf = new Properties();
-        try {
-            
-            dbconf.load(MainFrame.class.getResourceAsStream("/dbconf.properties"));
-        } catch (IOException ex) {
-            Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
-            return null;
-        }
-
-        BasicDataSource ds = new BasicDataSource();
-        ds.setUrl(dbconf.getProperty("jdbc.url"));
-        ds.setUsername(dbconf.getProperty("jdbc.user"));
-        ds.setPassword(dbconf.getProperty("jdbc.password"));
-
-        try (Connection con = ds.getConnection()) {
-            DatabaseMetaData dbmd = con.getMetaData();
-            ResultSet rs = dbmd.getTables(null, null, "BOOK", null);
-            if (!rs.next()) {
-                StringBuilder sb = new StringBuilder("");
-                for (String line : Files.readAllLines(Paths.get("src", "main",
-                        "resources", "createTables.sql"))) {
-                    if (line.trim().isEmpty()) {
-                        continue;
-                    }
-                    sb.append(line.trim());
-                    if (line.endsWith(";")) {
-                        sb.deleteCharAt(sb.length() - 1);
-                        try (PreparedStatement st1 = con.prepareStatement(sb.toString())) {
-                            st1.execute();
-                        }
-                        sb.setLength(0);
-                    }
+    /**
+     * Rows are sorted by database, so clicking on column header reloads
+     * the table model instead of using row sorter.
+     */
+    private static void sortOnHeaderClick(JTable table, IntConsumer sorter) {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column != -1) {
+                    sorter.accept(table.convertColumnIndexToModel(column));
                 }
             }
-        } catch (SQLException | IOException ex) {
-            Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+        });
+    }
+
+    /**
+     * Logs time to the first paint of the tables at startup.
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (startup != null && jTabbedPane1 != null) {
+            startup.painted();
+            startup = null;
         }
-        return ds;
     }
 
     /**
@@ -143,6 +157,7 @@ public class MainFrame extends javax.swing.JFrame {
         jMenuItem3 = new javax.swing.JMenuItem();
         jMenuItem4 = new javax.swing.JMenuItem();
         jMenuItem5 = new javax.swing.JMenuItem();
+        jMenuItem6 = new javax.swing.JMenuItem();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
 
@@ -152,17 +167,17 @@ public class MainFrame extends javax.swing.JFrame {
             }
         });
 
-        jTable1.setModel(new ClientTableModel(bundle, dataSource));
+        jTable1.setModel(startup.getClientModel());
         jScrollPane1.setViewportView(jTable1);
 
         jTabbedPane1.addTab("Clients", jScrollPane1);
 
-        jTable2.setModel(new BookTableModel(dataSource));
+        jTable2.setModel(startup.getBookModel());
         jScrollPane2.setViewportView(jTable2);
 
         jTabbedPane1.addTab("Books", jScrollPane2);
 
-        jTable3.setModel(new RentTableModel(dataSource));
+        jTable3.setModel(startup.getRentModel());
         jScrollPane3.setViewportView(jTable3);
 
         jTabbedPane1.addTab("Rents", jScrollPane3);
@@ -239,6 +254,14 @@ public class MainFrame extends javax.swing.JFrame {
         });
         jMenu2.add(jMenuItem5);
 
+        jMenuItem6.setText("Return selected rent");
+        jMenuItem6.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jMenuItem6ActionPerformed(evt);
+            }
+        });
+        jMenu2.add(jMenuItem6);
+
         jMenuBar1.add(jMenu2);
 
         setJMenuBar(jMenuBar1);
@@ -430,26 +453,25 @@ public class MainFrame extends javax.swing.JFrame {
     }//GEN-LAST:event_jComboBox1ActionPerformed
 
     private void jButtonFilterActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButtonFilterActionPerformed
-        /*final TableRowSorter<TableModel> sorter =
-                 new TableRowSorter<TableModel>(jTable2.getModel());
-        // jTable2.setRowSorter(sorter);
+        int column = Math.max(jComboBox1.getSelectedIndex(), 0);
         String text = jTextField1.getText();
-             if (text.length() == 0) {
-               sorter.setRowFilter(null);
-             } else {
-                 sorter.setRowFilter(
-                     RowFilter.regexFilter(text,1));
-                 RowFilter<BookTableModel, Object> rf = null;
-    //If current expression doesn't parse, don't update.
-    try {
-        rf = RowFilter.regexFilter(jTextField1.getText(), 0);
-                  RowFilter rowFilter = RowFilter.regexFilter(text, 1);
-                    //jTable2.getRowSorter().setRowFilter(rowFilter);
-               } catch (PatternSyntaxException pse) {
-                 System.err.println("Bad regex pattern");
-               }
-             }
-     jTable1.setRowSorter(sorter);*/
+        try {
+            switch (jTabbedPane1.getSelectedIndex()) {
+                case 0:
+                    ((ClientTableModel) jTable1.getModel()).filter(column, text);
+                    break;
+                case 1:
+                    ((BookTableModel) jTable2.getModel()).filter(column, text);
+                    break;
+                case 2:
+                    ((RentTableModel) jTable3.getModel()).filter(column, text);
+                    break;
+            }
+        } catch (NumberFormatException | DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this,
+                    "Invalid value " + text + " of " + jComboBox1.getSelectedItem(),
+                    "Filter", JOptionPane.ERROR_MESSAGE);
+        }
     }//GEN-LAST:event_jButtonFilterActionPerformed
 
     private void jMenuItem2ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jMenuItem2ActionPerformed
@@ -464,8 +486,14 @@ public class MainFrame extends javax.swing.JFrame {
         deleteActionPerformed(evt);
     }//GEN-LAST:event_jMenuItem5ActionPerformed
 
+    private void jMenuItem6ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jMenuItem6ActionPerformed
+        if (jTabbedPane1.getSelectedIndex() == 2 && jTable3.getSelectedRow() >= 0) {
+            ((RentTableModel) jTable3.getModel()).returnRent(jTable3.getSelectedRow());
+        }
+    }//GEN-LAST:event_jMenuItem6ActionPerformed
+
     private void jTextField1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jTextField1ActionPerformed
-        // TODO add your handling code here:
+        jButtonFilterActionPerformed(evt);
     }//GEN-LAST:event_jTextField1ActionPerformed
 
     private void jTextField1FocusGained(java.awt.event.FocusEvent evt) {//GEN-FIRST:event_jTextField1FocusGained
@@ -544,6 +572,7 @@ public class MainFrame extends javax.swing.JFrame {
     private javax.swing.JMenuItem jMenuItem3;
     private javax.swing.JMenuItem jMenuItem4;
     private javax.swing.JMenuItem jMenuItem5;
+    private javax.swing.JMenuItem jMenuItem6;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JScrollPane jScrollPane2;
     private javax.swing.JScrollPane jScrollPane3;
@@ -0,0 +1,468 @@
+package cz.muni.fi.pv168.librarymanager.gui;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Rows of table model loaded from database in blocks when they are shown.
+ * Number of rows is counted in database, only the last used blocks are
+ * kept in memory. Methods have to be called from event dispatch thread
+ * except of {@link #changed}, {@link #updated} and {@link #deleted}.
+ * <p>
+ * Changes of entities are queued by any thread and applied by event
+ * dispatch thread, which is the only writer of rows. All changes queued
+ * until the queue is drained are applied together and reported by the
+ * smallest ranges of inserted, updated and deleted rows instead of
+ * reloading the whole table.
+ *
+ * @param <T> type of entity in row
+ * @author Josef Pavelec <jospavelec@gmail.com>
+ */
+public class PagedRows<T> {
+
+    /**
+     * Value shown in cells of rows which are being loaded
+     */
+    public static final String PLACEHOLDER = "...";
+
+    /**
+     * Loads block of rows
+     */
+    public interface BlockLoader<T> {
+
+        /**
+         * @param offset index of the first row
+         * @param limit number of rows
+         * @return rows of the block
+         */
+        List<T> load(int offset, int limit);
+    }
+
+    private enum ChangeType {
+        UNKNOWN, UPDATED, DELETED
+    }
+
+    private static final class Change<T> {
+
+        private final ChangeType type;
+        private final Long id;
+        private final T entity;
+
+        private Change(ChangeType type, Long id, T entity) {
+            this.type = type;
+            this.id = id;
+            this.entity = entity;
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(PagedRows.class.getName());
+
+    private final AbstractTableModel model;
+    private final int blockSize;
+    private final int maxBlocks;
+    private final Function<T, Long> idOf;
+    private final Map<Integer, List<T>> blocks;
+    private final Set<Integer> loadingBlocks = new HashSet<>();
+    private final Set<Integer> staleBlocks = new HashSet<>();
+    private final Queue<Change<T>> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean changesScheduled = new AtomicBoolean();
+
+    private IntSupplier counter;
+    private BlockLoader<T> loader;
+    private int rowCount;
+    private int generation;
+    /**
+     * Incremented when rows are changed, blocks loaded before are dropped
+     */
+    private int modification;
+    private boolean counting;
+    private boolean countAgain;
+
+    /**
+     * @param model table model notified about loaded rows
+     * @param blockSize number of rows loaded at once
+     * @param maxBlocks number of blocks kept in memory
+     * @param idOf returns id of entity
+     */
+    public PagedRows(AbstractTableModel model, int blockSize, int maxBlocks,
+            Function<T, Long> idOf) {
+        this.model = model;
+        this.blockSize = blockSize;
+        this.maxBlocks = maxBlocks;
+        this.idOf = idOf;
+        this.blocks = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > PagedRows.this.maxBlocks;
+            }
+        };
+    }
+
+    /**
+     * Sets how rows are counted and loaded, rows are loaded by
+     * {@link #refresh()} or {@link #preload()}.
+     *
+     * @param counter counts rows in database
+     * @param loader loads block of rows from database
+     */
+    public void setSource(IntSupplier counter, BlockLoader<T> loader) {
+        this.counter = counter;
+        this.loader = loader;
+    }
+
+    /**
+     * Counts rows and loads the first block in the calling thread. It is
+     * used before the model is shown in a table, e.g. by background thread
+     * at startup, so the table is filled at once and listeners are not
+     * notified.
+     */
+    public void preload() {
+        generation++;
+        clearBlocks();
+        try {
+            rowCount = counter.getAsInt();
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Counting of rows failed", ex);
+            rowCount = 0;
+            return;
+        }
+        if (rowCount == 0) {
+            return;
+        }
+        try {
+            blocks.put(0, new ArrayList<>(loader.load(0, blockSize)));
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, "Loading of rows failed", ex);
+            blocks.put(0, Collections.<T>emptyList());
+        }
+    }
+
+    /**
+     * Discards loaded rows and counts rows again, used when rows were
+     * filtered or sorted again or when the state of the database is not
+     * known.
+     */
+    public void refresh() {
+        int load = ++generation;
+        clearBlocks();
+        IntSupplier currentCounter = counter;
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return currentCounter.getAsInt();
+            }
+
+            @Override
+            protected void done() {
+                if (load != generation) {
+                    return;
+                }
+                try {
+                    rowCount = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    logger.log(Level.SEVERE, "Counting of rows failed", ex);
+                    rowCount = 0;
+                }
+                model.fireTableDataChanged();
+            }
+        }.execute();
+    }
+
+    private void clearBlocks() {
+        blocks.clear();
+        loadingBlocks.clear();
+        staleBlocks.clear();
+        counting = false;
+        countAgain = false;
+    }
+
+    /**
+     * Queues change of rows which are not known, e.g. entity added to
+     * database whose position depends on sorting. It may be called from any
+     * thread. Rows are counted again and shown blocks are reloaded.
+     */
+    public void changed() {
+        queue(new Change<>(ChangeType.UNKNOWN, null, null));
+    }
+
+    /**
+     * Queues entity updated in database, it may be called from any thread.
+     * Loaded row of the entity is replaced.
+     *
+     * @param entity updated entity
+     */
+    public void updated(T entity) {
+        queue(new Change<>(ChangeType.UPDATED, idOf.apply(entity), entity));
+    }
+
+    /**
+     * Queues entity deleted from database, it may be called from any
+     * thread. Loaded row of the entity is removed, rows are counted again
+     * when the entity is not loaded.
+     *
+     * @param id id of deleted entity
+     */
+    public void deleted(Long id) {
+        queue(new Change<>(ChangeType.DELETED, id, null));
+    }
+
+    private void queue(Change<T> change) {
+        changes.add(change);
+        if (changesScheduled.compareAndSet(false, true)) {
+            EventQueue.invokeLater(this::applyChanges);
+        }
+    }
+
+    private void applyChanges() {
+        changesScheduled.set(false);
+        Map<Long, T> updated = new LinkedHashMap<>();
+        Set<Long> deleted = new LinkedHashSet<>();
+        boolean count = false;
+        Change<T> change;
+        while ((change = changes.poll()) != null) {
+            switch (change.type) {
+                case UNKNOWN:
+                    count = true;
+                    break;
+                case UPDATED:
+                    updated.put(change.id, change.entity);
+                    break;
+                default:
+                    updated.remove(change.id);
+                    deleted.add(change.id);
+            }
+        }
+        if (counter == null) {
+            return;
+        }
+        // loads started before the changes would bring old rows back
+        modification++;
+        loadingBlocks.clear();
+        replaceRows(updated);
+        if (!removeRows(deleted)) {
+            count = true;
+        }
+        if (count) {
+            count();
+        }
+    }
+
+    private void replaceRows(Map<Long, T> updated) {
+        if (updated.isEmpty()) {
+            return;
+        }
+        List<Integer> rows = new ArrayList<>();
+        for (Map.Entry<Integer, List<T>> block : blocks.entrySet()) {
+            List<T> entities = block.getValue();
+            for (int i = 0; i < entities.size(); i++) {
+                T entity = updated.get(idOf.apply(entities.get(i)));
+                if (entity != null) {
+                    entities.set(i, entity);
+                    rows.add(block.getKey() * blockSize + i);
+                }
+            }
+        }
+        Collections.sort(rows);
+        for (int i = 0; i < rows.size();) {
+            int first = rows.get(i);
+            int last = first;
+            while (++i < rows.size() && rows.get(i) == last + 1) {
+                last++;
+            }
+            model.fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * @return false when some entity is not loaded
+     */
+    private boolean removeRows(Set<Long> deleted) {
+        if (deleted.isEmpty()) {
+            return true;
+        }
+        List<Integer> rows = new ArrayList<>();
+        for (Map.Entry<Integer, List<T>> block : blocks.entrySet()) {
+            List<T> entities = block.getValue();
+            for (int i = 0; i < entities.size(); i++) {
+                if (deleted.contains(idOf.apply(entities.get(i)))) {
+                    rows.add(block.getKey() * blockSize + i);
+                }
+            }
+        }
+        // removing from the end keeps indexes of the other rows
+        Collections.sort(rows, Collections.reverseOrder());
+        for (int i = 0; i < rows.size();) {
+            int last = rows.get(i);
+            int first = last;
+            removeRow(first);
+            while (++i < rows.size() && rows.get(i) == first - 1) {
+                first--;
+                removeRow(first);
+            }
+            model.fireTableRowsDeleted(first, last);
+        }
+        return rows.size() == deleted.size();
+    }
+
+    /**
+     * Removes loaded row and moves the first rows of the following loaded
+     * blocks to the end of the previous blocks. Block without the following
+     * block is reloaded when it is shown.
+     */
+    private void removeRow(int row) {
+        int block = row / blockSize;
+        List<T> entities = blocks.get(block);
+        entities.remove(row - block * blockSize);
+        int oldRowCount = rowCount--;
+        while ((block + 1) * blockSize < oldRowCount) {
+            List<T> next = blocks.get(block + 1);
+            if (next == null || next.isEmpty()) {
+                staleBlocks.add(block);
+                return;
+            }
+            if (staleBlocks.contains(block + 1)) {
+                staleBlocks.add(block);
+            }
+            entities.add(next.remove(0));
+            entities = next;
+            block++;
+        }
+    }
+
+    /**
+     * Counts rows in background and reloads shown blocks, rows are counted
+     * once more when rows were changed while counting.
+     */
+    private void count() {
+        if (counting) {
+            countAgain = true;
+            return;
+        }
+        counting = true;
+        int load = generation;
+        int counted = modification;
+        IntSupplier currentCounter = counter;
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return currentCounter.getAsInt();
+            }
+
+            @Override
+            protected void done() {
+                if (load != generation) {
+                    return;
+                }
+                counting = false;
+                int oldRowCount = rowCount;
+                try {
+                    rowCount = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    logger.log(Level.SEVERE, "Counting of rows failed", ex);
+                    refresh();
+                    return;
+                }
+                modification++;
+                loadingBlocks.clear();
+                staleBlocks.addAll(blocks.keySet());
+                if (rowCount > oldRowCount) {
+                    model.fireTableRowsInserted(oldRowCount, rowCount - 1);
+                } else if (rowCount < oldRowCount) {
+                    model.fireTableRowsDeleted(rowCount, oldRowCount - 1);
+                }
+                int shownRows = Math.min(rowCount, oldRowCount);
+                if (shownRows > 0) {
+                    // repaint loads the stale blocks which are shown
+                    model.fireTableRowsUpdated(0, shownRows - 1);
+                }
+                if (countAgain || counted + 1 != modification) {
+                    countAgain = false;
+                    count();
+                }
+            }
+        }.execute();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns entity in row, loading of its block is started when it is
+     * not loaded or when it was changed.
+     *
+     * @param row index of row
+     * @return entity or null when it is being loaded
+     */
+    public T get(int row) {
+        if (row < 0 || row >= rowCount) {
+            return null;
+        }
+        int block = row / blockSize;
+        List<T> rows = blocks.get(block);
+        if (rows == null) {
+            load(block);
+            return null;
+        }
+        if (staleBlocks.contains(block)) {
+            // changed rows are shown until the block is loaded
+            load(block);
+        }
+        int index = row - block * blockSize;
+        return index < rows.size() ? rows.get(index) : null;
+    }
+
+    private void load(int block) {
+        if (!loadingBlocks.add(block)) {
+            return;
+        }
+        int load = generation;
+        int loadedModification = modification;
+        BlockLoader<T> currentLoader = loader;
+        new SwingWorker<List<T>, Void>() {
+            @Override
+            protected List<T> doInBackground() throws Exception {
+                return currentLoader.load(block * blockSize, blockSize);
+            }
+
+            @Override
+            protected void done() {
+                if (load != generation || loadedModification != modification) {
+                    return;
+                }
+                loadingBlocks.remove(block);
+                staleBlocks.remove(block);
+                try {
+                    blocks.put(block, new ArrayList<>(get()));
+                } catch (InterruptedException | ExecutionException ex) {
+                    logger.log(Level.SEVERE, "Loading of rows failed", ex);
+                    // placeholders stay until refresh instead of loading
+                    // the block again on every repaint
+                    blocks.put(block, Collections.<T>emptyList());
+                }
+                int firstRow = block * blockSize;
+                int lastRow = Math.min(firstRow + blockSize, rowCount) - 1;
+                if (firstRow <= lastRow) {
+                    model.fireTableRowsUpdated(firstRow, lastRow);
+                }
+            }
+        }.execute();
+    }
+}
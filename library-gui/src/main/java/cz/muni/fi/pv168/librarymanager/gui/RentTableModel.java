@@ -5,16 +5,30 @@
  */
 package cz.muni.fi.pv168.librarymanager.gui;
 
+import cz.muni.fi.pv168.librarymanager.backend.AsyncRentManager;
+import cz.muni.fi.pv168.librarymanager.backend.BookAvailabilityIndex;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEventBus;
 import cz.muni.fi.pv168.librarymanager.backend.Rent;
 import cz.muni.fi.pv168.librarymanager.backend.RentManager;
 import cz.muni.fi.pv168.librarymanager.backend.RentManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.RentQuery;
+import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import cz.muni.fi.pv168.librarymanager.common.Metrics;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
+import java.awt.EventQueue;
 import java.time.Clock;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import static java.time.Month.MARCH;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.sql.DataSource;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -27,92 +41,267 @@ import javax.swing.table.AbstractTableModel;
  */
 public class RentTableModel extends AbstractTableModel{
     
-    private final List<Rent> rents = new ArrayList<>();
+    private final PagedRows<Rent> rents = new PagedRows<>(this, BLOCK_SIZE, MAX_BLOCKS,
+            Rent::getId);
     private final RentManager rentManager;
+    private final AsyncRentManager asyncRentManager;
+    private final BookAvailabilityIndex availabilityIndex;
     private final static ZonedDateTime NOW
             = LocalDateTime.of(2016, MARCH, 13, 22, 00).atZone(ZoneId.of("UTC"));
 
-    public RentTableModel(DataSource dataSource) {
-        rentManager = new RentManagerImpl(prepareClockMock(NOW));
-        rentManager.setDataSource(dataSource);
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                rents.addAll(rentManager.findAllRents());
-                return null;
-            }
-        };
-        worker.execute();
+    /**
+     * Number of rents loaded at once when table is scrolled
+     */
+    public static final int BLOCK_SIZE = 200;
+
+    /**
+     * Number of loaded blocks of rents kept in memory
+     */
+    public static final int MAX_BLOCKS = 20;
+    
+    private static final RentQuery.SortColumn[] SORT_COLUMNS = {
+        RentQuery.SortColumn.BOOK_TITLE,
+        RentQuery.SortColumn.CLIENT_SURNAME,
+        RentQuery.SortColumn.START_DAY,
+        RentQuery.SortColumn.END_DAY
+    };
+    
+    private int filterColumn;
+    private String filterText = "";
+    private int sortColumn = 2;
+    private boolean descending = true;
+
+    public RentTableModel(DataSource dataSource, ManagerExecutor executor) {
+        this(dataSource, executor, false);
+    }
+    
+    /**
+     * @param preload whether rows are counted and the first block loaded
+     * in the calling thread, the model must not be shown in a table yet
+     */
+    RentTableModel(DataSource dataSource, ManagerExecutor executor, boolean preload) {
+        RentManagerImpl manager = new RentManagerImpl(prepareClockMock(NOW));
+        manager.setDataSource(dataSource);
+        manager.setChangeEventBus(ChangeEventBus.getDefault());
+        availabilityIndex = new BookAvailabilityIndex(prepareClockMock(NOW));
+        manager.setAvailabilityIndex(availabilityIndex);
+        loadAvailability(manager);
+        rentManager = Metrics.getDefault().isEnabled()
+                ? Metrics.getDefault().instrument(RentManager.class, manager) : manager;
+        asyncRentManager = new AsyncRentManager(rentManager, executor);
+        setSource();
+        if (preload) {
+            rents.preload();
+        } else {
+            rents.refresh();
+        }
+    }
+    
+    /**
+     * Shows only rents whose book title or client surname starts with text.
+     * Filtering by start or end day shows rents lasting on given day.
+     * @param column index of filtered column
+     * @param text text to match, empty text shows all rents
+     * @throws java.time.format.DateTimeParseException when day is not ISO date
+     */
+    public void filter(int column, String text) {
+        if (column >= 2 && !text.isEmpty()) {
+            LocalDate.parse(text.trim());
+        }
+        filterColumn = column;
+        filterText = text;
+        reload();
+    }
+    
+    /**
+     * Sorts rents by column, repeated sorting by the same column reverses
+     * the order.
+     * @param column index of column
+     */
+    public void sortBy(int column) {
+        descending = column == sortColumn && !descending;
+        sortColumn = column;
+        reload();
+    }
+    
+    private RentQuery createQuery() {
+        RentQuery query = new RentQuery()
+                .sortBy(SORT_COLUMNS[sortColumn], descending);
+        if (filterText.isEmpty()) {
+            return query;
+        }
+        switch (filterColumn) {
+            case 0:
+                return query.bookTitle(filterText, MatchMode.PREFIX);
+            case 1:
+                return query.clientSurname(filterText, MatchMode.PREFIX);
+            case 2:
+            case 3:
+                LocalDate day = LocalDate.parse(filterText.trim());
+                return query.period(day, day);
+            default:
+                throw new IndexOutOfBoundsException("Column index must be "
+                        + "greater or equal to 0 and less than 4: " + filterColumn);
+        }
+    }
+    
+    private void reload() {
+        setSource();
+        rents.refresh();
+    }
+    
+    private void setSource() {
+        RentQuery query = createQuery();
+        rents.setSource(() -> rentManager.countRents(query),
+                (offset, limit) -> rentManager.findRents(query.page(offset, limit)));
     }
     
     private static Clock prepareClockMock(ZonedDateTime now) {
         return Clock.fixed(now.toInstant(), now.getZone());
     }
     
-    public void addRent(Rent rent) {
-        for (Rent iRent : rents) {
-                    if (iRent.getBook().equals(rent.getBook())) {
-                        final JPanel panel = new JPanel();
-                        JOptionPane.showMessageDialog(panel, "The book is already rented", 
-                            "BOOK NOT AVAILABLE", JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
-        }
+    private void loadAvailability(RentManager manager) {
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
-                rentManager.createRent(rent);
-                System.out.println(rent);
+                availabilityIndex.load(manager);
                 return null;
             }
 
             @Override
             protected void done() {
-                rents.add(rent);
-                int lastRow = rents.size() - 1;
-                fireTableRowsInserted(lastRow, lastRow);
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Logger.getLogger(RentTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                }
             }
         };
         worker.execute();
     }
     
-    public void updateRent(Rent rent, int selectedRow){
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                rentManager.updateRent(rent);
-                return null;
+    private void showBookNotAvailable(Rent rent) {
+        final JPanel panel = new JPanel();
+        JOptionPane.showMessageDialog(panel, "The book is already rented, it is free from "
+                + availabilityIndex.findNextFreeDay(rent.getBook().getId()),
+                "BOOK NOT AVAILABLE", JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Rows are loaded again when the call fails, successful change is
+     * published by the manager.
+     */
+    private void refreshWhenFailed(CompletableFuture<Void> call) {
+        call.whenComplete((result, ex) -> {
+            if (ex != null) {
+                Logger.getLogger(RentTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                EventQueue.invokeLater(rents::refresh);
             }
+        });
+    }
 
-            @Override
-            protected void done() {
-                fireTableRowsUpdated(selectedRow,selectedRow);
+    /**
+     * Shows changes of rents published to the bus, including changes made
+     * by this model. Changes of books and clients reload shown rents.
+     * @param bus bus of the managers
+     */
+    public void listenTo(ChangeEventBus bus) {
+        bus.addListener(this::changed);
+    }
+    
+    private void changed(ChangeEvent event) {
+        if (event.getEntityType() != EntityType.RENT) {
+            // titles and surnames are shown
+            rents.changed();
+            return;
+        }
+        switch (event.getChangeType()) {
+            case CREATED:
+                // position of the new rent depends on sorting
+                rents.changed();
+                if (event.getEntity() == null) {
+                    // rent of other process is not in the index
+                    Rent created = rentManager.getRent(event.getId());
+                    if (created != null) {
+                        availabilityIndex.put(created);
+                    }
+                }
+                break;
+            case UPDATED:
+                Rent rent = event.getEntity() != null
+                        ? (Rent) event.getEntity() : rentManager.getRent(event.getId());
+                if (rent != null) {
+                    rents.updated(rent);
+                    availabilityIndex.put(rent);
+                    break;
+                }
+                // rent was deleted or archived after the update
+            default:
+                rents.deleted(event.getId());
+                availabilityIndex.remove(event.getId());
+        }
+    }
+    
+    public void addRent(Rent rent) {
+        if (rent.getBook() != null && rent.getStartDay() != null && rent.getEndDay() != null
+                && !availabilityIndex.isAvailable(rent.getBook().getId(),
+                        rent.getStartDay(), rent.getEndDay())) {
+            showBookNotAvailable(rent);
+            return;
+        }
+        asyncRentManager.createRent(rent).whenCompleteAsync((result, ex) -> {
+            // rent made by other user may not be in the index yet
+            if (ex instanceof IllegalEntityException) {
+                showBookNotAvailable(rent);
+                return;
             }
-        };
-        worker.execute();
+            if (ex != null) {
+                Logger.getLogger(RentTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                rents.refresh();
+            }
+        }, EventQueue::invokeLater);
     }
     
-    public void deleteRent(int row){
-        SwingWorker<Void,Void> worker;
-        worker = new SwingWorker<Void, Void>() {
-            
-            @Override
-            protected Void doInBackground() throws Exception {
-                rentManager.deleteRent(rents.get(row));
-                return null;
+    public void updateRent(Rent rent, int selectedRow) {
+        refreshWhenFailed(asyncRentManager.updateRent(rent));
+    }
+    
+    public void deleteRent(int row) {
+        Rent rent = rents.get(row);
+        if (rent == null) {
+            return;
+        }
+        refreshWhenFailed(asyncRentManager.deleteRent(rent));
+    }
+    
+    /**
+     * Moves rent of returned book to the archive, rent which did not start
+     * yet is not returned.
+     * @param row index of the rent
+     */
+    public void returnRent(int row) {
+        Rent rent = rents.get(row);
+        if (rent == null) {
+            return;
+        }
+        asyncRentManager.returnRent(rent).whenCompleteAsync((result, ex) -> {
+            if (ex instanceof IllegalEntityException) {
+                JOptionPane.showMessageDialog(new JPanel(), "The rent starts on "
+                        + rent.getStartDay() + ", it can be deleted, not returned",
+                        "RENT NOT STARTED", JOptionPane.ERROR_MESSAGE);
+                rents.refresh();
+                return;
             }
-            @Override
-            protected void done() {
-                rents.remove(row);
-                fireTableDataChanged();
+            if (ex != null) {
+                Logger.getLogger(RentTableModel.class.getName()).log(Level.SEVERE, null, ex);
+                rents.refresh();
             }
-        };
-        worker.execute();
+        }, EventQueue::invokeLater);
     }
 
     @Override
     public int getRowCount() {
-        return rents.size();
+        return rents.getRowCount();
     }
 
     @Override
@@ -123,6 +312,9 @@ public class RentTableModel extends AbstractTableModel{
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         Rent rent = rents.get(rowIndex);
+        if (rent == null) {
+            return PagedRows.PLACEHOLDER;
+        }
         switch (columnIndex) {
             case 0: 
                 return rent.getBook().getTitle();
@@ -157,8 +349,6 @@ public class RentTableModel extends AbstractTableModel{
     }
     
     public Rent getSelectedRent(int row){
-        if(row>=rents.size() || row<0)
-            return null;
         return rents.get(row);
     }
 }
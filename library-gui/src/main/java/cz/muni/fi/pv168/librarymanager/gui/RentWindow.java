@@ -11,15 +11,11 @@ import cz.muni.fi.pv168.librarymanager.backend.Rent;
 import cz.muni.fi.pv168.librarymanager.backend.Rent;
 import cz.muni.fi.pv168.librarymanager.backend.RentManager;
 import cz.muni.fi.pv168.librarymanager.backend.RentManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.SchemaManager;
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
 import java.awt.Window;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -28,7 +24,6 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
@@ -52,6 +47,8 @@ public class RentWindow extends javax.swing.JPanel {
     private ResourceBundle bundle;
     private JTable table;
     private DataSource dataSource;
+    // tables of the window only select rows, nothing is submitted to it
+    private final ManagerExecutor executor = new ManagerExecutor(1, 1);
 
     public RentWindow(String action, Rent rent, ResourceBundle bundle,
             JTable table) {
@@ -79,48 +76,38 @@ public class RentWindow extends javax.swing.JPanel {
 
         jTable1.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         jTable2.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        attachClientTypeahead();
 
         DataSourceSwingWorker dataSourceSwingWorker = new DataSourceSwingWorker();
         dataSourceSwingWorker.execute();
     }
 
+    /**
+     * Clients table shows clients whose name starts with text of the
+     * client field.
+     */
+    private void attachClientTypeahead() {
+        ClientTableModel model = (ClientTableModel) jTable2.getModel();
+        ClientTypeahead typeahead = new ClientTypeahead(model, jTextFieldClient::getText,
+                found -> {
+                    if (jTextFieldClient.getText().trim().isEmpty()) {
+                        model.filter(0, "");
+                        return;
+                    }
+                    model.showClients(found);
+                });
+        typeahead.attach(jTextFieldClient);
+    }
+
     private DataSource setDataSource() {
-        Properties dbconf = new Properties();
+        BasicDataSource ds;
         try {
-            dbconf.load(MainFrame.class.getResourceAsStream("/dbconf.properties"));
-        } catch (IOException ex) {
+            ds = DataSourceFactory.createDataSource();
+            new SchemaManager(ds).updateSchema();
+        } catch (ServiceFailureException ex) {
             Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         }
-
-        BasicDataSource ds = new BasicDataSource();
-        ds.setUrl(dbconf.getProperty("jdbc.url"));
-        ds.setUsername(dbconf.getProperty("jdbc.user"));
-        ds.setPassword(dbconf.getProperty("jdbc.password"));
-
-        try (Connection con = ds.getConnection()) {
-            DatabaseMetaData dbmd = con.getMetaData();
-            ResultSet rs = dbmd.getTables(null, null, "BOOK", null);
-            if (!rs.next()) {
-                StringBuilder sb = new StringBuilder("");
-                for (String line : Files.readAllLines(Paths.get("src", "main",
-                        "resources", "createTables.sql"))) {
-                    if (line.trim().isEmpty()) {
-                        continue;
-                    }
-                    sb.append(line.trim());
-                    if (line.endsWith(";")) {
-                        sb.deleteCharAt(sb.length() - 1);
-                        try (PreparedStatement st1 = con.prepareStatement(sb.toString())) {
-                            st1.execute();
-                        }
-                        sb.setLength(0);
-                    }
-                }
-            }
-        } catch (SQLException | IOException ex) {
-            Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
-        }
         return ds;
     }
 
@@ -145,18 +132,22 @@ public class RentWindow extends javax.swing.JPanel {
         jTable1 = new javax.swing.JTable();
         jScrollPane2 = new javax.swing.JScrollPane();
         jTable2 = new javax.swing.JTable();
+        jLabelClient = new javax.swing.JLabel();
+        jTextFieldClient = new javax.swing.JTextField();
         jLabel2 = new javax.swing.JLabel();
         jComboBox1 = new javax.swing.JComboBox<>();
         jButton1 = new javax.swing.JButton();
         jButton2 = new javax.swing.JButton();
         jLabelRentWindow = new javax.swing.JLabel();
 
-        jTable1.setModel(new BookTableModel(dataSource));
+        jTable1.setModel(new BookTableModel(dataSource, executor));
         jScrollPane1.setViewportView(jTable1);
 
-        jTable2.setModel(new ClientTableModel(bundle, dataSource));
+        jTable2.setModel(new ClientTableModel(bundle, dataSource, executor));
         jScrollPane2.setViewportView(jTable2);
 
+        jLabelClient.setText("Client:");
+
         jLabel2.setText("Number of months:");
 
         jComboBox1.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12" }));
@@ -202,6 +193,10 @@ public class RentWindow extends javax.swing.JPanel {
                         .addContainerGap()
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 563, Short.MAX_VALUE)
+                            .addGroup(layout.createSequentialGroup()
+                                .addComponent(jLabelClient)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(jTextFieldClient))
                             .addComponent(jScrollPane2, javax.swing.GroupLayout.Alignment.TRAILING)
                             .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
                                 .addGap(0, 0, Short.MAX_VALUE)
@@ -216,6 +211,10 @@ public class RentWindow extends javax.swing.JPanel {
                 .addGap(39, 39, 39)
                 .addComponent(jScrollPane1, javax.swing.GroupLayout.PREFERRED_SIZE, 101, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(18, 18, 18)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabelClient)
+                    .addComponent(jTextFieldClient, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jScrollPane2, javax.swing.GroupLayout.PREFERRED_SIZE, 102, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(34, 34, 34)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
@@ -253,11 +252,13 @@ public class RentWindow extends javax.swing.JPanel {
     private javax.swing.JButton jButton2;
     private javax.swing.JComboBox<String> jComboBox1;
     private javax.swing.JLabel jLabel2;
+    private javax.swing.JLabel jLabelClient;
     private javax.swing.JLabel jLabelRentWindow;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JScrollPane jScrollPane2;
     private javax.swing.JTable jTable1;
     private javax.swing.JTable jTable2;
+    private javax.swing.JTextField jTextFieldClient;
     // End of variables declaration//GEN-END:variables
 
     private void setTextsFromRents(Rent rent) {
@@ -0,0 +1,171 @@
+package cz.muni.fi.pv168.librarymanager.gui;
+
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEventBus;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeFeedPoller;
+import cz.muni.fi.pv168.librarymanager.backend.SchemaManager;
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import cz.muni.fi.pv168.librarymanager.common.DatabaseServer;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import cz.muni.fi.pv168.librarymanager.common.Metrics;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * Prepares data of the main window in background thread. It starts the
+ * database server when this desk shares the database with other desks,
+ * opens the connection pool, updates the schema and then counts and loads the first
+ * block of clients, books and rents in parallel, so the tables are shown
+ * filled at once. Each table is loaded on its own pooled connection, which
+ * also prepares the statements used when the table is scrolled. Time from
+ * creation of the loader to the first paint of the tables is logged. Loaded
+ * models then follow changes published to the default change bus, both by
+ * this process and, through the change feed, by other processes.
+ *
+ * @author Josef Pavelec <jospavelec@gmail.com>
+ */
+public class StartupLoader {
+
+    private static final Logger logger = Logger.getLogger(StartupLoader.class.getName());
+
+    private final ResourceBundle bundle;
+    private final long start = System.nanoTime();
+    private long poolOpened;
+    private long tablesLoaded;
+    private DataSource dataSource;
+    private ManagerExecutor executor;
+    private ClientTableModel clientModel;
+    private BookTableModel bookModel;
+    private RentTableModel rentModel;
+    private ChangeFeedPoller changeFeed;
+    private DatabaseServer server;
+
+    /**
+     * @param bundle resources of client table
+     */
+    public StartupLoader(ResourceBundle bundle) {
+        this.bundle = bundle;
+    }
+
+    /**
+     * Opens the pool and loads the tables, it is called in background
+     * thread. Models are shown after this method returns.
+     *
+     * @throws ServiceFailureException when the server does not start, the
+     * pool cannot be opened, the schema cannot be upgraded, the change log
+     * cannot be read or loading is interrupted
+     */
+    public void load() {
+        Properties configuration = DataSourceFactory.loadConfiguration();
+        server = DatabaseServer.fromConfiguration(configuration);
+        if (server != null) {
+            server.start();
+        }
+        BasicDataSource pool = DataSourceFactory.createDataSource(configuration);
+        new SchemaManager(pool).updateSchema();
+        executor = ManagerExecutor.forPool(pool);
+        dataSource = instrument(pool);
+        poolOpened = System.nanoTime();
+
+        // end of the change log is found before loading, so that changes of
+        // other processes made while the tables load are published later
+        ChangeEventBus bus = ChangeEventBus.getDefault();
+        changeFeed = new ChangeFeedPoller(pool, bus);
+        changeFeed.poll();
+        CompletableFuture<ClientTableModel> clients = executor.submit(
+                () -> new ClientTableModel(bundle, dataSource, executor, true));
+        CompletableFuture<BookTableModel> books = executor.submit(
+                () -> new BookTableModel(dataSource, executor, true));
+        CompletableFuture<RentTableModel> rents = executor.submit(
+                () -> new RentTableModel(dataSource, executor, true));
+        try {
+            clientModel = clients.get();
+            bookModel = books.get();
+            rentModel = rents.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceFailureException("Interrupted while loading tables", ex);
+        } catch (ExecutionException ex) {
+            throw new ServiceFailureException("Loading of tables failed", ex.getCause());
+        }
+        tablesLoaded = System.nanoTime();
+
+        clientModel.listenTo(bus);
+        bookModel.listenTo(bus);
+        rentModel.listenTo(bus);
+        changeFeed.start();
+    }
+
+    private static DataSource instrument(BasicDataSource pool) {
+        Metrics metrics = Metrics.getDefault();
+        if (!metrics.isEnabled()) {
+            return pool;
+        }
+        try {
+            metrics.registerMBeans();
+        } catch (ServiceFailureException ex) {
+            logger.log(Level.WARNING, null, ex);
+        }
+        return metrics.instrument(pool);
+    }
+
+    /**
+     * Logs time to the first paint, it is called from event dispatch thread
+     * when the loaded tables were painted.
+     */
+    public void painted() {
+        long now = System.nanoTime();
+        logger.log(Level.INFO, "Main window painted {0} ms after start "
+                + "(pool and schema {1} ms, tables {2} ms, showing {3} ms)", new Object[]{
+                    TimeUnit.NANOSECONDS.toMillis(now - start),
+                    TimeUnit.NANOSECONDS.toMillis(poolOpened - start),
+                    TimeUnit.NANOSECONDS.toMillis(tablesLoaded - poolOpened),
+                    TimeUnit.NANOSECONDS.toMillis(now - tablesLoaded)});
+        if (Metrics.getDefault().isEnabled()) {
+            Metrics.getDefault().getStats("startup.firstPaint").record(now - start, 0, false);
+        }
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public ManagerExecutor getExecutor() {
+        return executor;
+    }
+
+    public ClientTableModel getClientModel() {
+        return clientModel;
+    }
+
+    public BookTableModel getBookModel() {
+        return bookModel;
+    }
+
+    public RentTableModel getRentModel() {
+        return rentModel;
+    }
+
+    /**
+     * @return poller of changes made by other processes, it is closed when
+     * the window is closed
+     */
+    public ChangeFeedPoller getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * @return database server started by this desk, null when the desk does
+     * not start the server; it is stopped when the window is closed
+     */
+    public DatabaseServer getServer() {
+        return server;
+    }
+}
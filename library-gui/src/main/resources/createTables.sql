@@ -1,20 +0,0 @@
-CREATE TABLE "BOOK" (
-    "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
-    "AUTHOR" VARCHAR(255),
-    "TITLE" VARCHAR(255) NOT NULL,
-    "YEAROFPUBLICATION" INTEGER NOT NULL
-);
-
-CREATE TABLE "CLIENT" (
-    "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
-    "NAME" VARCHAR(255),
-    "SURNAME" VARCHAR(255)
-);
-
-CREATE TABLE "RENT" (
-    "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
-    "CLIENTID" BIGINT NOT NULL,
-    "BOOKID" BIGINT NOT NULL,
-    "STARTDAY" DATE,
-    "ENDDAY" DATE
-);
\ No newline at end of file
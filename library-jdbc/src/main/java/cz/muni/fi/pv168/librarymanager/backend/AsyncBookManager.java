@@ -0,0 +1,107 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous counterpart of {@link BookManager}. Each method submits the
+ * method of the same name of the wrapped manager to the executor and
+ * returns future of its result, so independent calls run in parallel on
+ * connections of the pool. Exceptions of the manager complete the future.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class AsyncBookManager {
+
+    private final BookManager delegate;
+    private final ManagerExecutor executor;
+
+    public AsyncBookManager(BookManager delegate, ManagerExecutor executor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * @return wrapped blocking manager
+     */
+    public BookManager getManager() {
+        return delegate;
+    }
+
+    public CompletableFuture<Void> createBook(Book book) {
+        return executor.run(() -> delegate.createBook(book));
+    }
+
+    public CompletableFuture<Void> updateBook(Book book) {
+        return executor.run(() -> delegate.updateBook(book));
+    }
+
+    public CompletableFuture<Void> deleteBook(Book book) {
+        return executor.run(() -> delegate.deleteBook(book));
+    }
+
+    public CompletableFuture<Void> createBooks(Collection<Book> books) {
+        return executor.run(() -> delegate.createBooks(books));
+    }
+
+    public CompletableFuture<Void> updateBooks(Collection<Book> books) {
+        return executor.run(() -> delegate.updateBooks(books));
+    }
+
+    public CompletableFuture<Void> deleteBooks(Collection<Book> books) {
+        return executor.run(() -> delegate.deleteBooks(books));
+    }
+
+    public CompletableFuture<Book> getBook(Long id) {
+        return executor.submit(() -> delegate.getBook(id));
+    }
+
+    public CompletableFuture<List<Book>> findAllBooks() {
+        return executor.submit(() -> delegate.findAllBooks());
+    }
+
+    public CompletableFuture<List<Book>> findBooksAfter(Long lastId, int limit) {
+        return executor.submit(() -> delegate.findBooksAfter(lastId, limit));
+    }
+
+    public CompletableFuture<Void> forEachBook(Consumer<? super Book> consumer) {
+        return executor.run(() -> delegate.forEachBook(consumer));
+    }
+
+    public CompletableFuture<List<Book>> findBooks(BookQuery query) {
+        return executor.submit(() -> delegate.findBooks(query));
+    }
+
+    public CompletableFuture<Integer> countBooks(BookQuery query) {
+        return executor.submit(() -> delegate.countBooks(query));
+    }
+
+    public CompletableFuture<List<Book>> findBooksByAuthor(String author) {
+        return executor.submit(() -> delegate.findBooksByAuthor(author));
+    }
+
+    public CompletableFuture<List<Book>> findBooksByTitle(String title) {
+        return executor.submit(() -> delegate.findBooksByTitle(title));
+    }
+
+    public CompletableFuture<List<Book>> findBooksByFoldedAuthor(String author) {
+        return executor.submit(() -> delegate.findBooksByFoldedAuthor(author));
+    }
+
+    public CompletableFuture<List<Book>> findBooksByFoldedTitle(String title) {
+        return executor.submit(() -> delegate.findBooksByFoldedTitle(title));
+    }
+
+    public CompletableFuture<List<Book>> searchBooks(String text, int limit) {
+        return executor.submit(() -> delegate.searchBooks(text, limit));
+    }
+}
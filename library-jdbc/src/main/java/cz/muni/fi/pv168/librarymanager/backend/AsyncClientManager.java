@@ -0,0 +1,107 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous counterpart of {@link ClientManager}. Each method submits the
+ * method of the same name of the wrapped manager to the executor and
+ * returns future of its result, so independent calls run in parallel on
+ * connections of the pool. Exceptions of the manager complete the future.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class AsyncClientManager {
+
+    private final ClientManager delegate;
+    private final ManagerExecutor executor;
+
+    public AsyncClientManager(ClientManager delegate, ManagerExecutor executor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * @return wrapped blocking manager
+     */
+    public ClientManager getManager() {
+        return delegate;
+    }
+
+    public CompletableFuture<Void> createClient(Client client) {
+        return executor.run(() -> delegate.createClient(client));
+    }
+
+    public CompletableFuture<Void> updateClient(Client client) {
+        return executor.run(() -> delegate.updateClient(client));
+    }
+
+    public CompletableFuture<Void> deleteClient(Client client) {
+        return executor.run(() -> delegate.deleteClient(client));
+    }
+
+    public CompletableFuture<Void> createClients(Collection<Client> clients) {
+        return executor.run(() -> delegate.createClients(clients));
+    }
+
+    public CompletableFuture<Void> updateClients(Collection<Client> clients) {
+        return executor.run(() -> delegate.updateClients(clients));
+    }
+
+    public CompletableFuture<Void> deleteClients(Collection<Client> clients) {
+        return executor.run(() -> delegate.deleteClients(clients));
+    }
+
+    public CompletableFuture<List<Client>> findClientsBySurname(String surname) {
+        return executor.submit(() -> delegate.findClientsBySurname(surname));
+    }
+
+    public CompletableFuture<List<Client>> findClientsByName(String name) {
+        return executor.submit(() -> delegate.findClientsByName(name));
+    }
+
+    public CompletableFuture<List<Client>> findClientsByFoldedSurname(String surname) {
+        return executor.submit(() -> delegate.findClientsByFoldedSurname(surname));
+    }
+
+    public CompletableFuture<List<Client>> findClientsByFoldedName(String name) {
+        return executor.submit(() -> delegate.findClientsByFoldedName(name));
+    }
+
+    public CompletableFuture<List<Client>> findClientsByPrefix(String prefix, int limit) {
+        return executor.submit(() -> delegate.findClientsByPrefix(prefix, limit));
+    }
+
+    public CompletableFuture<List<Client>> findAllClients() {
+        return executor.submit(() -> delegate.findAllClients());
+    }
+
+    public CompletableFuture<List<Client>> findClientsAfter(Long lastId, int limit) {
+        return executor.submit(() -> delegate.findClientsAfter(lastId, limit));
+    }
+
+    public CompletableFuture<Void> forEachClient(Consumer<? super Client> consumer) {
+        return executor.run(() -> delegate.forEachClient(consumer));
+    }
+
+    public CompletableFuture<List<Client>> findClients(ClientQuery query) {
+        return executor.submit(() -> delegate.findClients(query));
+    }
+
+    public CompletableFuture<Integer> countClients(ClientQuery query) {
+        return executor.submit(() -> delegate.countClients(query));
+    }
+
+    public CompletableFuture<Client> getClient(Long id) {
+        return executor.submit(() -> delegate.getClient(id));
+    }
+}
@@ -0,0 +1,103 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous counterpart of {@link RentManager}. Each method submits the
+ * method of the same name of the wrapped manager to the executor and
+ * returns future of its result, so independent calls run in parallel on
+ * connections of the pool. Exceptions of the manager complete the future.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class AsyncRentManager {
+
+    private final RentManager delegate;
+    private final ManagerExecutor executor;
+
+    public AsyncRentManager(RentManager delegate, ManagerExecutor executor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * @return wrapped blocking manager
+     */
+    public RentManager getManager() {
+        return delegate;
+    }
+
+    public CompletableFuture<Void> createRent(Rent rent) {
+        return executor.run(() -> delegate.createRent(rent));
+    }
+
+    public CompletableFuture<Void> updateRent(Rent rent) {
+        return executor.run(() -> delegate.updateRent(rent));
+    }
+
+    public CompletableFuture<Void> deleteRent(Rent rent) {
+        return executor.run(() -> delegate.deleteRent(rent));
+    }
+
+    public CompletableFuture<Void> createRents(Collection<Rent> rents) {
+        return executor.run(() -> delegate.createRents(rents));
+    }
+
+    public CompletableFuture<Void> updateRents(Collection<Rent> rents) {
+        return executor.run(() -> delegate.updateRents(rents));
+    }
+
+    public CompletableFuture<Void> deleteRents(Collection<Rent> rents) {
+        return executor.run(() -> delegate.deleteRents(rents));
+    }
+
+    public CompletableFuture<Void> returnRent(Rent rent) {
+        return executor.run(() -> delegate.returnRent(rent));
+    }
+
+    public CompletableFuture<List<Rent>> findDelayedReturns() {
+        return executor.submit(() -> delegate.findDelayedReturns());
+    }
+
+    public CompletableFuture<Client> findClientByRentBook(Book book) {
+        return executor.submit(() -> delegate.findClientByRentBook(book));
+    }
+
+    public CompletableFuture<List<Book>> findRentBooksByClient(Client client) {
+        return executor.submit(() -> delegate.findRentBooksByClient(client));
+    }
+
+    public CompletableFuture<Rent> getRent(Long id) {
+        return executor.submit(() -> delegate.getRent(id));
+    }
+
+    public CompletableFuture<List<Rent>> findAllRents() {
+        return executor.submit(() -> delegate.findAllRents());
+    }
+
+    public CompletableFuture<List<Rent>> findRentsAfter(Long lastId, int limit) {
+        return executor.submit(() -> delegate.findRentsAfter(lastId, limit));
+    }
+
+    public CompletableFuture<Void> forEachRent(Consumer<? super Rent> consumer) {
+        return executor.run(() -> delegate.forEachRent(consumer));
+    }
+
+    public CompletableFuture<List<Rent>> findRents(RentQuery query) {
+        return executor.submit(() -> delegate.findRents(query));
+    }
+
+    public CompletableFuture<Integer> countRents(RentQuery query) {
+        return executor.submit(() -> delegate.countRents(query));
+    }
+}
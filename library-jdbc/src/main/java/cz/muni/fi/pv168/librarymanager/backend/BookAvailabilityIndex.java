@@ -0,0 +1,199 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Periods of rents of each book kept in memory as {@link DayIntervals}, so
+ * that availability of a book is answered without querying the database
+ * in logarithmic time. Books rented today are
+ * marked in a bitmap indexed by book id, which is rebuilt when the day of
+ * the clock changes. Index has to be told about every change of rents,
+ * {@link RentManagerImpl#setAvailabilityIndex(BookAvailabilityIndex)}
+ * does it for the manager.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class BookAvailabilityIndex {
+
+    private final Clock clock;
+    private final Map<Long, DayIntervals> rentsByBook = new HashMap<>();
+    private final Map<Long, Long> bookByRent = new HashMap<>();
+    private final BitSet rentedToday = new BitSet();
+    private long bitmapDay = Long.MIN_VALUE;
+
+    public BookAvailabilityIndex(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock is null");
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * Replaces periods in the index by rents of the manager.
+     *
+     * @param manager manager reading rents from database
+     */
+    public synchronized void load(RentManager manager) {
+        rentsByBook.clear();
+        bookByRent.clear();
+        manager.forEachRent(this::put);
+        bitmapDay = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds rent or replaces period of rent with the same id.
+     *
+     * @param rent rent with id, book id, start day and end day
+     */
+    public synchronized void put(Rent rent) {
+        if (rent == null || rent.getId() == null || rent.getBook() == null
+                || rent.getBook().getId() == null) {
+            throw new IllegalArgumentException("rent, its id or its book id is null");
+        }
+        if (rent.getStartDay() == null || rent.getEndDay() == null) {
+            throw new IllegalArgumentException("period of rent is not set");
+        }
+        remove(rent.getId());
+        Long bookId = rent.getBook().getId();
+        DayIntervals rents = rentsByBook.getOrDefault(bookId, DayIntervals.EMPTY).with(
+                rent.getStartDay().toEpochDay(), rent.getEndDay().toEpochDay(), rent.getId());
+        rentsByBook.put(bookId, rents);
+        bookByRent.put(rent.getId(), bookId);
+        updateBitmap(bookId, rents);
+    }
+
+    /**
+     * Removes period of rent, nothing happens when rent is not in the index.
+     *
+     * @param rentId id of rent
+     */
+    public synchronized void remove(Long rentId) {
+        Long bookId = bookByRent.remove(rentId);
+        if (bookId == null) {
+            return;
+        }
+        DayIntervals rents = rentsByBook.get(bookId).without(rentId);
+        if (rents.size() == 0) {
+            rentsByBook.remove(bookId);
+        } else {
+            rentsByBook.put(bookId, rents);
+        }
+        updateBitmap(bookId, rents);
+    }
+
+    /**
+     * @param bookId id of book
+     * @return whether the book is not rented at the day of the clock
+     */
+    public synchronized boolean isAvailable(Long bookId) {
+        long today = LocalDate.now(clock).toEpochDay();
+        if (bitmapDay != today) {
+            rebuildBitmap(today);
+        }
+        if (bookId < 0 || bookId > Integer.MAX_VALUE) {
+            return !getRents(bookId).overlaps(today, today);
+        }
+        return !rentedToday.get(bookId.intValue());
+    }
+
+    /**
+     * @param bookId id of book
+     * @param from first day of the period
+     * @param to last day of the period
+     * @return whether no rent of the book overlaps the period
+     */
+    public synchronized boolean isAvailable(Long bookId, LocalDate from, LocalDate to) {
+        return !getRents(bookId).overlaps(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * @param bookId id of book
+     * @return the first day from the day of the clock on which the book is
+     * not rented
+     */
+    public synchronized LocalDate findNextFreeDay(Long bookId) {
+        return findFirstFreeSlot(bookId, LocalDate.now(clock), 1);
+    }
+
+    /**
+     * @param bookId id of book
+     * @param from the earliest first day of the slot
+     * @param days positive length of the slot
+     * @return the first day, not before the given day, from which the book
+     * is not rented for given number of days
+     */
+    public synchronized LocalDate findFirstFreeSlot(Long bookId, LocalDate from, int days) {
+        return LocalDate.ofEpochDay(getRents(bookId).findFirstFreeSlot(from.toEpochDay(), days));
+    }
+
+    /**
+     * Plans reservations of the book in the order of the queue, each one
+     * gets the first free slot which is not taken by rents nor by
+     * reservations planned before it. Index is not changed.
+     *
+     * @param bookId id of book
+     * @param queue reservations in the order they were requested
+     * @return first days of the planned reservations in the order of queue
+     */
+    public List<LocalDate> planReservations(Long bookId, List<Reservation> queue) {
+        if (queue == null) {
+            throw new IllegalArgumentException("queue is null");
+        }
+        DayIntervals rents;
+        synchronized (this) {
+            rents = getRents(bookId);
+        }
+        NavigableMap<Long, Long> planned = new TreeMap<>();
+        List<LocalDate> result = new ArrayList<>(queue.size());
+        for (Reservation reservation : queue) {
+            long start = reservation.getEarliestStart().toEpochDay();
+            while (true) {
+                start = rents.findFirstFreeSlot(start, reservation.getDays());
+                long end = start + reservation.getDays() - 1;
+                // planned reservations do not overlap, so only the last one
+                // starting before the end can overlap the slot
+                Map.Entry<Long, Long> conflict = planned.floorEntry(end);
+                if (conflict == null || conflict.getValue() < start) {
+                    planned.put(start, end);
+                    result.add(LocalDate.ofEpochDay(start));
+                    break;
+                }
+                start = conflict.getValue() + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of rents in the index
+     */
+    public synchronized int size() {
+        return bookByRent.size();
+    }
+
+    private DayIntervals getRents(Long bookId) {
+        return rentsByBook.getOrDefault(bookId, DayIntervals.EMPTY);
+    }
+
+    private void updateBitmap(Long bookId, DayIntervals rents) {
+        if (bitmapDay != Long.MIN_VALUE && bookId >= 0 && bookId <= Integer.MAX_VALUE) {
+            rentedToday.set(bookId.intValue(), rents.overlaps(bitmapDay, bitmapDay));
+        }
+    }
+
+    private void rebuildBitmap(long today) {
+        rentedToday.clear();
+        bitmapDay = today;
+        for (Map.Entry<Long, DayIntervals> entry : rentsByBook.entrySet()) {
+            updateBitmap(entry.getKey(), entry.getValue());
+        }
+    }
+}
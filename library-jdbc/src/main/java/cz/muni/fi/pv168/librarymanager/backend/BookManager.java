@@ -1,7 +1,9 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
 import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import javax.sql.DataSource;
 
 /**
@@ -25,11 +27,32 @@ public interface BookManager {
     public void updateBook(Book book);
     
     /**
-     * Method delete existing book
+     * Method delete existing book, book with current or archived rents is
+     * not deleted
      * @param book book to delete
      */
     public void deleteBook(Book book);
     
+    /**
+     * Method create all books in one transaction, generated ids are set
+     * to the given books
+     * @param books new books
+     */
+    public void createBooks(Collection<Book> books);
+    
+    /**
+     * Method change all existing books in one transaction
+     * @param books books to change
+     */
+    public void updateBooks(Collection<Book> books);
+    
+    /**
+     * Method delete all existing books in one transaction, none is deleted
+     * when some of them has current or archived rents
+     * @param books books to delete
+     */
+    public void deleteBooks(Collection<Book> books);
+    
     /**
      * Method returns book by id
      * @param id book to get
@@ -43,6 +66,37 @@ public interface BookManager {
      */
     public List<Book> findAllBooks();
     
+    /**
+     * Method list one page of books ordered by id. Next page is obtained by
+     * passing id of the last book of previous page.
+     * @param lastId id of the last book of previous page or null for first page
+     * @param limit maximal number of books in page
+     * @return at most limit books with id greater than lastId as list of Book
+     */
+    public List<Book> findBooksAfter(Long lastId, int limit);
+    
+    /**
+     * Method pass all books one by one to consumer without loading whole 
+     * library into memory
+     * @param consumer consumer of books
+     */
+    public void forEachBook(Consumer<? super Book> consumer);
+    
+    /**
+     * Method list books matching the query in order and page given by query
+     * @param query criteria, order and page of books
+     * @return matching books as list of Book
+     */
+    public List<Book> findBooks(BookQuery query);
+    
+    /**
+     * Method count all books matching the query, order and page of query
+     * are ignored
+     * @param query criteria of books
+     * @return number of matching books
+     */
+    public int countBooks(BookQuery query);
+    
     /**
      * For input author find and list all his books
      * @param author input author as String
@@ -56,6 +110,30 @@ public interface BookManager {
      * @return all books of input title as list of Book
      */
     public List<Book> findBooksByTitle(String title);
+    
+    /**
+     * Find books of author ignoring case and diacritics, "Čapek" finds
+     * books of "capek"
+     * @param author input author as String
+     * @return all books of input author as list of Book
+     */
+    public List<Book> findBooksByFoldedAuthor(String author);
+    
+    /**
+     * Find books with title ignoring case and diacritics
+     * @param title input title as String
+     * @return all books of input title as list of Book
+     */
+    public List<Book> findBooksByFoldedTitle(String title);
+    
+    /**
+     * Finds books whose title or author contain all words of the text,
+     * words may be given only partially
+     * @param text words to find
+     * @param limit maximal number of books
+     * @return at most limit books, best matches first
+     */
+    public List<Book> searchBooks(String text, int limit);
 
     public void setDataSource(DataSource dataSource);
 }
@@ -1,6 +1,11 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.ChangeType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter;
 import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import cz.muni.fi.pv168.librarymanager.common.TextNormalizer;
 import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
 import cz.muni.fi.pv168.librarymanager.common.ValidationException;
 import java.sql.Connection;
@@ -11,7 +16,10 @@ import java.sql.Statement;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,9 +35,19 @@ public class BookManagerImpl implements BookManager {
     private static final Logger logger = LoggerFactory.getLogger(
             BookManagerImpl.class.getName());
     
+    private static final int FETCH_SIZE = 500;
+    
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    
     private DataSource dataSource;
 
     private final Clock clock;
+    
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    
+    private ChangeEventBus changeEventBus;
+    
+    private BookSearchIndex searchIndex;
 
     public BookManagerImpl(Clock clock) {
         this.clock = clock;
@@ -39,6 +57,59 @@ public class BookManagerImpl implements BookManager {
         this.dataSource = dataSource;
     }
     
+    /**
+     * Sets number of statements sent to database at once by batch methods
+     * @param batchSize positive number of statements
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size is not positive number");
+        }
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Sets bus to which changes of books committed by this manager are
+     * published.
+     * @param changeEventBus bus or null for no events
+     */
+    public void setChangeEventBus(ChangeEventBus changeEventBus) {
+        this.changeEventBus = changeEventBus;
+    }
+    
+    /**
+     * Sets index which answers {@link #searchBooks(String, int)} without
+     * querying the database, books changed by this manager are written to
+     * it. Until the index is loaded, books are searched in the database.
+     * @param searchIndex index loaded from this manager, null for no index
+     */
+    public void setSearchIndex(BookSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+    
+    private void updateSearchIndex(ChangeType changeType, Collection<Book> books) {
+        if (searchIndex == null) {
+            return;
+        }
+        for (Book book : books) {
+            if (changeType == ChangeType.DELETED) {
+                searchIndex.remove(book.getId());
+            } else {
+                searchIndex.put(book);
+            }
+        }
+    }
+    
+    private void publish(ChangeType changeType, Collection<Book> books) {
+        if (changeEventBus == null) {
+            return;
+        }
+        for (Book book : books) {
+            changeEventBus.publish(new ChangeEvent(EntityType.BOOK, changeType,
+                    book.getId(), book));
+        }
+    }
+    
     private void checkDataSource() {
         if (dataSource == null) {
             throw new IllegalStateException("DataSource is not set");
@@ -65,6 +136,122 @@ public class BookManagerImpl implements BookManager {
         }          
     }
 
+    @Override
+    public List<Book> findBooksAfter(Long lastId, int limit) {
+        checkDataSource();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                    "SELECT id, author, title, yearofpublication FROM Book "
+                    + "WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+            
+            st.setLong(1, lastId == null ? Long.MIN_VALUE : lastId);
+            st.setInt(2, limit);
+            ResultSet rs = st.executeQuery();
+            
+            List<Book> result = new ArrayList<>(limit);
+            while (rs.next()) {
+                result.add(resultSetToBook(rs));
+            }
+            logger.info("Retriving " + result.size() + " books after id " + lastId);
+            return result;
+        } catch (SQLException ex) {
+            String msg = "Error when getting books after id " + lastId + " from DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+    
+    @Override
+    public void forEachBook(Consumer<? super Book> consumer) {
+        checkDataSource();
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                    "SELECT id, author, title, yearofpublication FROM Book")) {
+            
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(resultSetToBook(rs));
+                }
+            }
+            logger.info("Streamed all books");
+        } catch (SQLException ex) {
+            String msg = "Error when streaming all books from DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        checkDataSource();
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+        SqlFilter filter = filterOf(query);
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                    "SELECT id, author, title, yearofpublication FROM Book"
+                    + filter.toWhereClause()
+                    + " ORDER BY " + query.getSortColumn().getColumn()
+                    + (query.isDescending() ? " DESC, id DESC" : ", id")
+                    + SqlFilter.pageClause(query.getLimit()))) {
+            
+            int index = filter.setParameters(st, 1);
+            SqlFilter.setPageParameters(st, index, query.getOffset(), query.getLimit());
+            st.setFetchSize(query.getLimit() == 0 ? FETCH_SIZE : query.getLimit());
+            List<Book> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(resultSetToBook(rs));
+                }
+            }
+            logger.info("Retriving " + result.size() + " books by " + query);
+            return result;
+        } catch (SQLException ex) {
+            String msg = "Error when getting books by " + query + " from DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public int countBooks(BookQuery query) {
+        checkDataSource();
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+        SqlFilter filter = filterOf(query);
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM Book" + filter.toWhereClause())) {
+            
+            filter.setParameters(st, 1);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException ex) {
+            String msg = "Error when counting books by " + query + " in DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+    
+    private static SqlFilter filterOf(BookQuery query) {
+        return new SqlFilter()
+                .match("title", query.getTitle(), query.getTitleMatch())
+                .match("author", query.getAuthor(), query.getAuthorMatch())
+                .atLeast("yearofpublication", query.getYearFrom())
+                .atMost("yearofpublication", query.getYearTo());
+    }
+
     @Override
     public void createBook(Book book) throws ServiceFailureException {
         checkDataSource();
@@ -75,12 +262,15 @@ public class BookManagerImpl implements BookManager {
 
         try (Connection connection = dataSource.getConnection();
             PreparedStatement st = connection.prepareStatement(
-                "INSERT INTO BOOK (author,title,yearofpublication) VALUES (?,?,?)",
+                "INSERT INTO BOOK (author,title,yearofpublication,authorkey,titlekey) "
+                + "VALUES (?,?,?,?,?)",
                 Statement.RETURN_GENERATED_KEYS)) {
 
             st.setString(1, book.getAuthor());
             st.setString(2, book.getTitle());
             st.setInt(3, book.getYearOfPublication());
+            st.setString(4, TextNormalizer.toKey(book.getAuthor()));
+            st.setString(5, TextNormalizer.toKey(book.getTitle()));
             int addedRows = st.executeUpdate();
             if (addedRows != 1) {
                 logger.error("Error while creating book - more rows affected");
@@ -97,9 +287,11 @@ public class BookManagerImpl implements BookManager {
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex);
         }
+        updateSearchIndex(ChangeType.CREATED, Collections.singletonList(book));
+        publish(ChangeType.CREATED, Collections.singletonList(book));
     }
 
-    private void validate(Book book) throws IllegalArgumentException {
+    void validate(Book book) throws IllegalArgumentException {
         if (book == null) {
             throw new IllegalArgumentException("book is null");
         }
@@ -156,12 +348,15 @@ public class BookManagerImpl implements BookManager {
         }
         try (Connection connection = dataSource.getConnection();
             PreparedStatement st = connection.prepareStatement(
-                "UPDATE Book SET author = ?, title = ?, yearofpublication = ? WHERE id = ?")) {
+                "UPDATE Book SET author = ?, title = ?, yearofpublication = ?, "
+                + "authorkey = ?, titlekey = ? WHERE id = ?")) {
 
             st.setString(1, book.getAuthor());
             st.setString(2, book.getTitle());
             st.setInt(3, book.getYearOfPublication());
-            st.setLong(4, book.getId());
+            st.setString(4, TextNormalizer.toKey(book.getAuthor()));
+            st.setString(5, TextNormalizer.toKey(book.getTitle()));
+            st.setLong(6, book.getId());
 
             int count = st.executeUpdate();
             if (count == 0) {
@@ -177,6 +372,8 @@ public class BookManagerImpl implements BookManager {
             throw new ServiceFailureException(msg, ex);
             
         }
+        updateSearchIndex(ChangeType.UPDATED, Collections.singletonList(book));
+        publish(ChangeType.UPDATED, Collections.singletonList(book));
     }
 
     @Override
@@ -204,10 +401,177 @@ public class BookManagerImpl implements BookManager {
             }
             logger.info("Book with id "+book.getId()+" was deleted");
         } catch (SQLException ex) {
+            if (DBUtils.isForeignKeyViolation(ex)) {
+                logger.error("Book " + book + " to delete has rents");
+                throw new IllegalEntityException("Book " + book + " has rents");
+            }
             String msg = "Error when deleting book " + book;
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex);
         }
+        updateSearchIndex(ChangeType.DELETED, Collections.singletonList(book));
+        publish(ChangeType.DELETED, Collections.singletonList(book));
+    }
+
+    @Override
+    public void createBooks(Collection<Book> books) {
+        checkDataSource();
+        if (books == null) {
+            throw new IllegalArgumentException("books is null");
+        }
+        for (Book book : books) {
+            validate(book);
+            if (book.getId() != null) {
+                throw new IllegalEntityException("book id is already set");
+            }
+        }
+        if (books.isEmpty()) {
+            return;
+        }
+        List<Book> batch = new ArrayList<>(books);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            long lastId = DBUtils.lockTableAndGetMaxId(conn, "book");
+            st = conn.prepareStatement(
+                    "INSERT INTO BOOK (author,title,yearofpublication,authorkey,titlekey) "
+                + "VALUES (?,?,?,?,?)");
+            for (int i = 0; i < batch.size(); i++) {
+                Book book = batch.get(i);
+                st.setString(1, book.getAuthor());
+                st.setString(2, book.getTitle());
+                st.setInt(3, book.getYearOfPublication());
+                st.setString(4, TextNormalizer.toKey(book.getAuthor()));
+                st.setString(5, TextNormalizer.toKey(book.getTitle()));
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    st.executeBatch();
+                }
+            }
+            List<Long> ids = DBUtils.getIdsInsertedAfter(conn, "book", lastId, batch.size());
+            conn.commit();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).setId(ids.get(i));
+            }
+            logger.info(batch.size() + " books were created");
+        } catch (SQLException ex) {
+            String msg = "Error when inserting batch of " + batch.size() + " books";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        updateSearchIndex(ChangeType.CREATED, batch);
+        publish(ChangeType.CREATED, batch);
+    }
+
+    @Override
+    public void updateBooks(Collection<Book> books) {
+        checkDataSource();
+        if (books == null) {
+            throw new IllegalArgumentException("books is null");
+        }
+        for (Book book : books) {
+            validate(book);
+            if (book.getId() == null) {
+                throw new IllegalEntityException("book id is null");
+            }
+        }
+        if (books.isEmpty()) {
+            return;
+        }
+        List<Book> batch = new ArrayList<>(books);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement(
+                "UPDATE Book SET author = ?, title = ?, yearofpublication = ?, "
+                + "authorkey = ?, titlekey = ? WHERE id = ?");
+            int batchStart = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Book book = batch.get(i);
+                st.setString(1, book.getAuthor());
+                st.setString(2, book.getTitle());
+                st.setInt(3, book.getYearOfPublication());
+                st.setString(4, TextNormalizer.toKey(book.getAuthor()));
+                st.setString(5, TextNormalizer.toKey(book.getTitle()));
+                st.setLong(6, book.getId());
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    DBUtils.checkBatchUpdatesCounts(st.executeBatch(), 
+                            batch.subList(batchStart, i + 1));
+                    batchStart = i + 1;
+                }
+            }
+            conn.commit();
+            logger.info(batch.size() + " books were updated");
+        } catch (SQLException ex) {
+            String msg = "Error when updating batch of " + batch.size() + " books";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        updateSearchIndex(ChangeType.UPDATED, batch);
+        publish(ChangeType.UPDATED, batch);
+    }
+
+    @Override
+    public void deleteBooks(Collection<Book> books) {
+        checkDataSource();
+        if (books == null) {
+            throw new IllegalArgumentException("books is null");
+        }
+        for (Book book : books) {
+            if (book == null) {
+                throw new IllegalArgumentException("book is null");
+            }
+            if (book.getId() == null) {
+                throw new IllegalEntityException("book id is null");
+            }
+        }
+        if (books.isEmpty()) {
+            return;
+        }
+        List<Book> batch = new ArrayList<>(books);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement("DELETE FROM book WHERE id = ?");
+            int batchStart = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                st.setLong(1, batch.get(i).getId());
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    DBUtils.checkBatchUpdatesCounts(st.executeBatch(), 
+                            batch.subList(batchStart, i + 1));
+                    batchStart = i + 1;
+                }
+            }
+            conn.commit();
+            logger.info(batch.size() + " books were deleted");
+        } catch (SQLException ex) {
+            if (DBUtils.isForeignKeyViolation(ex)) {
+                logger.error("Some of books to delete has rents", ex);
+                throw new IllegalEntityException("Some of books has rents");
+            }
+            String msg = "Error when deleting batch of " + batch.size() + " books";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        updateSearchIndex(ChangeType.DELETED, batch);
+        publish(ChangeType.DELETED, batch);
     }
 
     @Override
@@ -258,6 +622,88 @@ public class BookManagerImpl implements BookManager {
         }
     }
 
+    @Override
+    public List<Book> findBooksByFoldedAuthor(String author) {
+        return findBooksByKey("authorkey", author);
+    }
+
+    @Override
+    public List<Book> findBooksByFoldedTitle(String title) {
+        return findBooksByKey("titlekey", title);
+    }
+
+    private List<Book> findBooksByKey(String keyColumn, String value) {
+        checkDataSource();
+        if (value == null) {
+            throw new IllegalArgumentException("value of " + keyColumn + " is null");
+        }
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement st = connection.prepareStatement(
+                "SELECT id,author,title,yearofpublication FROM book WHERE "
+                + keyColumn + " = ?")) {
+
+            st.setString(1, TextNormalizer.toKey(value));
+            List<Book> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(resultSetToBook(rs));
+                }
+            }
+            logger.info("Retriving books with " + keyColumn + " of " + value);
+            return result;
+
+        } catch (SQLException ex) {
+            String msg = "Error when retrieving books with " + keyColumn + " of " + value;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public List<Book> searchBooks(String text, int limit) {
+        checkDataSource();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        if (searchIndex != null && searchIndex.isLoaded()) {
+            return searchIndex.search(text, limit);
+        }
+        // words are matched against the folded keys, matches are not ranked
+        List<String> words = TextNormalizer.tokenize(text);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT id,author,title,yearofpublication FROM book WHERE ");
+        for (int i = 0; i < words.size(); i++) {
+            sql.append(i == 0 ? "" : " AND ")
+                    .append("(titlekey LIKE ? OR authorkey LIKE ?)");
+        }
+        sql.append(" ORDER BY title, id FETCH FIRST ? ROWS ONLY");
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement st = connection.prepareStatement(sql.toString())) {
+
+            int index = 1;
+            for (String word : words) {
+                st.setString(index++, "%" + word + "%");
+                st.setString(index++, "%" + word + "%");
+            }
+            st.setInt(index, limit);
+            List<Book> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(resultSetToBook(rs));
+                }
+            }
+            logger.info("Retriving " + result.size() + " books matching " + text);
+            return result;
+        } catch (SQLException ex) {
+            String msg = "Error when searching books matching " + text;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
     @Override
     public Book getBook(Long id) throws ServiceFailureException {
         checkDataSource();
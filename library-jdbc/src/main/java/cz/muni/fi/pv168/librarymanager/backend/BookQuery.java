@@ -0,0 +1,165 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
+
+/**
+ * Criteria of books listed by {@link BookManager#findBooks(BookQuery)}.
+ * Criteria which are not set do not restrict the result. Text criteria are
+ * case sensitive, prefix match can use index of the column.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class BookQuery {
+
+    /**
+     * Column books are sorted by, books with equal values are sorted by id
+     */
+    public enum SortColumn {
+        ID("id"),
+        TITLE("title"),
+        AUTHOR("author"),
+        YEAR_OF_PUBLICATION("yearofpublication");
+
+        private final String column;
+
+        private SortColumn(String column) {
+            this.column = column;
+        }
+
+        String getColumn() {
+            return column;
+        }
+    }
+
+    private String title;
+    private MatchMode titleMatch = MatchMode.PREFIX;
+    private String author;
+    private MatchMode authorMatch = MatchMode.PREFIX;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private SortColumn sortColumn = SortColumn.ID;
+    private boolean descending;
+    private int offset;
+    private int limit;
+
+    public BookQuery title(String title, MatchMode match) {
+        if (match == null) {
+            throw new IllegalArgumentException("match mode is null");
+        }
+        this.title = title;
+        this.titleMatch = match;
+        return this;
+    }
+
+    public BookQuery author(String author, MatchMode match) {
+        if (match == null) {
+            throw new IllegalArgumentException("match mode is null");
+        }
+        this.author = author;
+        this.authorMatch = match;
+        return this;
+    }
+
+    /**
+     * @param from minimal year of publication, null for no minimum
+     * @param to maximal year of publication, null for no maximum
+     */
+    public BookQuery yearOfPublication(Integer from, Integer to) {
+        this.yearFrom = from;
+        this.yearTo = to;
+        return this;
+    }
+
+    public BookQuery sortBy(SortColumn column, boolean descending) {
+        if (column == null) {
+            throw new IllegalArgumentException("sort column is null");
+        }
+        this.sortColumn = column;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Returns copy of this query for one page, this query is not changed,
+     * so pages of one query can be loaded concurrently.
+     *
+     * @param offset number of skipped books
+     * @param limit maximal number of books, 0 for no limit
+     * @return new query with the other criteria of this query
+     */
+    public BookQuery page(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset is negative number");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit is negative number");
+        }
+        BookQuery page = copy();
+        page.offset = offset;
+        page.limit = limit;
+        return page;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public MatchMode getTitleMatch() {
+        return titleMatch;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public MatchMode getAuthorMatch() {
+        return authorMatch;
+    }
+
+    public Integer getYearFrom() {
+        return yearFrom;
+    }
+
+    public Integer getYearTo() {
+        return yearTo;
+    }
+
+    public SortColumn getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private BookQuery copy() {
+        BookQuery copy = new BookQuery();
+        copy.title = title;
+        copy.titleMatch = titleMatch;
+        copy.author = author;
+        copy.authorMatch = authorMatch;
+        copy.yearFrom = yearFrom;
+        copy.yearTo = yearTo;
+        copy.sortColumn = sortColumn;
+        copy.descending = descending;
+        copy.offset = offset;
+        copy.limit = limit;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "BookQuery{" + "title=" + title + ", author=" + author
+                + ", yearFrom=" + yearFrom + ", yearTo=" + yearTo
+                + ", sortColumn=" + sortColumn + ", descending=" + descending
+                + ", offset=" + offset + ", limit=" + limit + '}';
+    }
+}
@@ -0,0 +1,383 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.TextNormalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Words of titles and authors of books kept in memory as inverted index, so
+ * that books are found by words or their parts without querying the
+ * database. Words are folded by {@link TextNormalizer}. Word of a query
+ * matches a word of a book exactly, as its prefix or, when it has at least
+ * {@link #GRAM_LENGTH} characters, anywhere inside; the inner matches are
+ * found through trigrams of the indexed words. Books have to match all
+ * words of the query and are ranked by the kind of matches, title matches
+ * rank higher than author matches. Index has to be told about every change
+ * of books, {@link BookManagerImpl#setSearchIndex(BookSearchIndex)} does it
+ * for the manager.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class BookSearchIndex {
+
+    /**
+     * Length of grams of the words, shorter query words match only
+     * prefixes of words
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int INFIX = 1;
+    private static final int TITLE_WEIGHT = 2;
+
+    private final Map<Long, Entry> books = new HashMap<>();
+    private final NavigableMap<String, Postings> titleWords = new TreeMap<>();
+    private final NavigableMap<String, Postings> authorWords = new TreeMap<>();
+    private final Map<String, Set<String>> wordsByGram = new HashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Replaces books in the index by books of the manager.
+     *
+     * @param manager manager reading books from database
+     */
+    public synchronized void load(BookManager manager) {
+        loaded = false;
+        books.clear();
+        titleWords.clear();
+        authorWords.clear();
+        wordsByGram.clear();
+        manager.forEachBook(this::put);
+        loaded = true;
+    }
+
+    /**
+     * @return whether the index was loaded and answers for all books, it
+     * does not wait for loading in progress
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds book or replaces book with the same id.
+     *
+     * @param book book with id, title and author
+     */
+    public synchronized void put(Book book) {
+        if (book == null || book.getId() == null) {
+            throw new IllegalArgumentException("book or its id is null");
+        }
+        remove(book.getId());
+        Entry entry = new Entry(copy(book), words(book.getTitle()), words(book.getAuthor()));
+        books.put(book.getId(), entry);
+        for (String word : entry.titleWords) {
+            addPosting(titleWords, word, book.getId());
+        }
+        for (String word : entry.authorWords) {
+            addPosting(authorWords, word, book.getId());
+        }
+    }
+
+    /**
+     * Removes book, nothing happens when book is not in the index.
+     *
+     * @param bookId id of book
+     */
+    public synchronized void remove(Long bookId) {
+        Entry entry = books.remove(bookId);
+        if (entry == null) {
+            return;
+        }
+        for (String word : entry.titleWords) {
+            removePosting(titleWords, word, bookId);
+        }
+        for (String word : entry.authorWords) {
+            removePosting(authorWords, word, bookId);
+        }
+    }
+
+    /**
+     * @return number of books in the index
+     */
+    public synchronized int size() {
+        return books.size();
+    }
+
+    /**
+     * Finds books whose title or author contain all words of the text.
+     *
+     * @param text words to find
+     * @param limit maximal number of books
+     * @return at most limit books, best matches first, books with the same
+     * rank ordered by id
+     */
+    public synchronized List<Book> search(String text, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        String[] query = words(text);
+        if (query.length == 0) {
+            return Collections.emptyList();
+        }
+        // candidates are books matching the most selective word
+        List<Postings> driver = null;
+        long driverSize = Long.MAX_VALUE;
+        for (String word : query) {
+            List<Postings> postings = findPostings(word);
+            long size = 0;
+            for (Postings p : postings) {
+                size += p.size;
+            }
+            if (size < driverSize) {
+                driver = postings;
+                driverSize = size;
+            }
+        }
+        if (driverSize == 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Match> best = new PriorityQueue<>(Math.min(limit, (int) driverSize) + 1);
+        for (long id : union(driver, (int) driverSize)) {
+            Entry entry = books.get(id);
+            int score = score(entry, query);
+            if (score > 0) {
+                best.add(new Match(entry.book, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        Match[] matches = best.toArray(new Match[best.size()]);
+        Arrays.sort(matches, Collections.reverseOrder());
+        List<Book> result = new ArrayList<>(matches.length);
+        for (Match match : matches) {
+            result.add(copy(match.book));
+        }
+        return result;
+    }
+
+    private static String[] words(String text) {
+        return new LinkedHashSet<>(TextNormalizer.tokenize(text)).toArray(new String[0]);
+    }
+
+    private List<Postings> findPostings(String word) {
+        List<Postings> result = new ArrayList<>();
+        for (NavigableMap<String, Postings> words : Arrays.asList(titleWords, authorWords)) {
+            result.addAll(words.subMap(word, true, word + Character.MAX_VALUE, false).values());
+        }
+        if (word.length() >= GRAM_LENGTH) {
+            for (String inner : findInnerWords(word)) {
+                for (NavigableMap<String, Postings> words : Arrays.asList(titleWords, authorWords)) {
+                    Postings postings = words.get(inner);
+                    if (postings != null) {
+                        result.add(postings);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return indexed words containing the word, but not as their prefix
+     */
+    private Set<String> findInnerWords(String word) {
+        Set<String> result = null;
+        for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+            Set<String> words = wordsByGram.get(word.substring(i, i + GRAM_LENGTH));
+            if (words == null) {
+                return Collections.emptySet();
+            }
+            if (result == null || words.size() < result.size()) {
+                result = words;
+            }
+        }
+        Set<String> inner = new HashSet<>();
+        for (String candidate : result) {
+            if (!candidate.startsWith(word) && candidate.indexOf(word, 1) > 0) {
+                inner.add(candidate);
+            }
+        }
+        return inner;
+    }
+
+    private static long[] union(List<Postings> postings, int size) {
+        long[] ids = new long[size];
+        int length = 0;
+        for (Postings p : postings) {
+            System.arraycopy(p.ids, 0, ids, length, p.size);
+            length += p.size;
+        }
+        if (postings.size() > 1) {
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int i = 0; i < length; i++) {
+                if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            length = distinct;
+        }
+        return length == ids.length ? ids : Arrays.copyOf(ids, length);
+    }
+
+    /**
+     * @return sum of the best matches of query words, 0 when some word
+     * does not match
+     */
+    private static int score(Entry entry, String[] query) {
+        int total = 0;
+        for (String word : query) {
+            int score = Math.max(TITLE_WEIGHT * match(entry.titleWords, word),
+                    match(entry.authorWords, word));
+            if (score == 0) {
+                return 0;
+            }
+            total += score;
+        }
+        return total;
+    }
+
+    private static int match(String[] words, String word) {
+        int best = 0;
+        for (String candidate : words) {
+            if (candidate.equals(word)) {
+                return EXACT;
+            } else if (candidate.startsWith(word)) {
+                best = PREFIX;
+            } else if (best == 0 && word.length() >= GRAM_LENGTH
+                    && candidate.indexOf(word, 1) > 0) {
+                best = INFIX;
+            }
+        }
+        return best;
+    }
+
+    private void addPosting(NavigableMap<String, Postings> words, String word, Long id) {
+        Postings postings = words.get(word);
+        if (postings == null) {
+            if (!titleWords.containsKey(word) && !authorWords.containsKey(word)) {
+                for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+                    wordsByGram.computeIfAbsent(word.substring(i, i + GRAM_LENGTH),
+                            gram -> new HashSet<>()).add(word);
+                }
+            }
+            postings = new Postings();
+            words.put(word, postings);
+        }
+        postings.add(id);
+    }
+
+    private void removePosting(NavigableMap<String, Postings> words, String word, Long id) {
+        Postings postings = words.get(word);
+        if (postings == null || !postings.remove(id) || postings.size > 0) {
+            return;
+        }
+        words.remove(word);
+        if (titleWords.containsKey(word) || authorWords.containsKey(word)) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+            String gram = word.substring(i, i + GRAM_LENGTH);
+            Set<String> gramWords = wordsByGram.get(gram);
+            gramWords.remove(word);
+            if (gramWords.isEmpty()) {
+                wordsByGram.remove(gram);
+            }
+        }
+    }
+
+    private static Book copy(Book book) {
+        Book copy = new Book();
+        copy.setId(book.getId());
+        copy.setTitle(book.getTitle());
+        copy.setAuthor(book.getAuthor());
+        copy.setYearOfPublication(book.getYearOfPublication());
+        return copy;
+    }
+
+    private static final class Entry {
+
+        final Book book;
+        final String[] titleWords;
+        final String[] authorWords;
+
+        Entry(Book book, String[] titleWords, String[] authorWords) {
+            this.book = book;
+            this.titleWords = titleWords;
+            this.authorWords = authorWords;
+        }
+    }
+
+    /**
+     * Sorted ids of books containing a word, ids of new books are usually
+     * appended.
+     */
+    private static final class Postings {
+
+        long[] ids = new long[2];
+        int size;
+
+        void add(long id) {
+            int index = size == 0 || ids[size - 1] < id
+                    ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            if (size > 0 && size * 4 < ids.length) {
+                ids = Arrays.copyOf(ids, ids.length / 2);
+            }
+            return true;
+        }
+    }
+
+    private static final class Match implements Comparable<Match> {
+
+        final Book book;
+        final int score;
+
+        Match(Book book, int score) {
+            this.book = book;
+            this.score = score;
+        }
+
+        /**
+         * Better match is greater, lower id is better for the same score
+         */
+        @Override
+        public int compareTo(Match other) {
+            if (score != other.score) {
+                return Integer.compare(score, other.score);
+            }
+            return Long.compare(other.book.getId(), book.getId());
+        }
+    }
+}
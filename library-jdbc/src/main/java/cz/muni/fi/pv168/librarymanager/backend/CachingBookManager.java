@@ -0,0 +1,198 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.EntityCache;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+/**
+ * Book manager which caches books returned by {@link #getBook(Long)}.
+ * Books created and changed through this manager are written to the cache,
+ * deleted books are removed from it. Books loaded while a change was made
+ * are not cached. Other methods are passed to the wrapped manager. Changes
+ * made to the database by other means are visible after the cached book
+ * expires.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CachingBookManager implements BookManager {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private final BookManager delegate;
+    private final EntityCache<Long, Book> cache;
+
+    public CachingBookManager(BookManager delegate) {
+        this(delegate, DEFAULT_MAX_SIZE, DEFAULT_TTL, Clock.systemDefaultZone());
+    }
+
+    public CachingBookManager(BookManager delegate, int maxSize, Duration ttl, Clock clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        }
+        this.delegate = delegate;
+        this.cache = new EntityCache<>(maxSize, ttl, clock);
+    }
+
+    /**
+     * @return cache of books with its statistics
+     */
+    public EntityCache<Long, Book> getCache() {
+        return cache;
+    }
+
+    @Override
+    public void createBook(Book book) {
+        delegate.createBook(book);
+        cache.put(book.getId(), copy(book));
+    }
+
+    @Override
+    public void updateBook(Book book) {
+        try {
+            delegate.updateBook(book);
+        } catch (RuntimeException ex) {
+            invalidate(book);
+            throw ex;
+        }
+        cache.put(book.getId(), copy(book));
+    }
+
+    @Override
+    public void deleteBook(Book book) {
+        try {
+            delegate.deleteBook(book);
+        } finally {
+            // after the delete, so that a concurrent load does not cache it again
+            invalidate(book);
+        }
+    }
+
+    @Override
+    public void createBooks(Collection<Book> books) {
+        delegate.createBooks(books);
+        for (Book book : books) {
+            cache.put(book.getId(), copy(book));
+        }
+    }
+
+    @Override
+    public void updateBooks(Collection<Book> books) {
+        try {
+            delegate.updateBooks(books);
+        } catch (RuntimeException ex) {
+            if (books != null) {
+                books.forEach(this::invalidate);
+            }
+            throw ex;
+        }
+        for (Book book : books) {
+            cache.put(book.getId(), copy(book));
+        }
+    }
+
+    @Override
+    public void deleteBooks(Collection<Book> books) {
+        try {
+            delegate.deleteBooks(books);
+        } finally {
+            if (books != null) {
+                books.forEach(this::invalidate);
+            }
+        }
+    }
+
+    @Override
+    public Book getBook(Long id) throws ServiceFailureException {
+        if (id == null) {
+            return delegate.getBook(id);
+        }
+        Book book = cache.get(id);
+        if (book == null) {
+            long stamp = cache.loadStamp();
+            book = delegate.getBook(id);
+            if (book != null) {
+                cache.putLoaded(id, copy(book), stamp);
+            }
+            return book;
+        }
+        return copy(book);
+    }
+
+    @Override
+    public List<Book> findAllBooks() {
+        return delegate.findAllBooks();
+    }
+
+    @Override
+    public List<Book> findBooksAfter(Long lastId, int limit) {
+        return delegate.findBooksAfter(lastId, limit);
+    }
+
+    @Override
+    public void forEachBook(Consumer<? super Book> consumer) {
+        delegate.forEachBook(consumer);
+    }
+
+    @Override
+    public List<Book> findBooks(BookQuery query) {
+        return delegate.findBooks(query);
+    }
+
+    @Override
+    public int countBooks(BookQuery query) {
+        return delegate.countBooks(query);
+    }
+
+    @Override
+    public List<Book> findBooksByAuthor(String author) {
+        return delegate.findBooksByAuthor(author);
+    }
+
+    @Override
+    public List<Book> findBooksByTitle(String title) {
+        return delegate.findBooksByTitle(title);
+    }
+
+    @Override
+    public List<Book> findBooksByFoldedAuthor(String author) {
+        return delegate.findBooksByFoldedAuthor(author);
+    }
+
+    @Override
+    public List<Book> findBooksByFoldedTitle(String title) {
+        return delegate.findBooksByFoldedTitle(title);
+    }
+
+    @Override
+    public List<Book> searchBooks(String text, int limit) {
+        return delegate.searchBooks(text, limit);
+    }
+
+    @Override
+    public void setDataSource(DataSource dataSource) {
+        cache.clear();
+        delegate.setDataSource(dataSource);
+    }
+
+    private void invalidate(Book book) {
+        if (book != null && book.getId() != null) {
+            cache.invalidate(book.getId());
+        }
+    }
+
+    private static Book copy(Book book) {
+        Book copy = new Book();
+        copy.setId(book.getId());
+        copy.setAuthor(book.getAuthor());
+        copy.setTitle(book.getTitle());
+        copy.setYearOfPublication(book.getYearOfPublication());
+        return copy;
+    }
+}
@@ -0,0 +1,189 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.EntityCache;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Client manager which caches clients returned by {@link #getClient(Long)}.
+ * Clients created and changed through this manager are written to the cache,
+ * deleted clients are removed from it. Clients loaded while a change was made
+ * are not cached. Other methods are passed to the wrapped manager. Changes
+ * made to the database by other means are visible after the cached client
+ * expires.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CachingClientManager implements ClientManager {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private final ClientManager delegate;
+    private final EntityCache<Long, Client> cache;
+
+    public CachingClientManager(ClientManager delegate) {
+        this(delegate, DEFAULT_MAX_SIZE, DEFAULT_TTL, Clock.systemDefaultZone());
+    }
+
+    public CachingClientManager(ClientManager delegate, int maxSize, Duration ttl, Clock clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        }
+        this.delegate = delegate;
+        this.cache = new EntityCache<>(maxSize, ttl, clock);
+    }
+
+    /**
+     * @return cache of clients with its statistics
+     */
+    public EntityCache<Long, Client> getCache() {
+        return cache;
+    }
+
+    @Override
+    public void createClient(Client client) {
+        delegate.createClient(client);
+        cache.put(client.getId(), copy(client));
+    }
+
+    @Override
+    public void updateClient(Client client) {
+        try {
+            delegate.updateClient(client);
+        } catch (RuntimeException ex) {
+            invalidate(client);
+            throw ex;
+        }
+        cache.put(client.getId(), copy(client));
+    }
+
+    @Override
+    public void deleteClient(Client client) {
+        try {
+            delegate.deleteClient(client);
+        } finally {
+            // after the delete, so that a concurrent load does not cache it again
+            invalidate(client);
+        }
+    }
+
+    @Override
+    public void createClients(Collection<Client> clients) {
+        delegate.createClients(clients);
+        for (Client client : clients) {
+            cache.put(client.getId(), copy(client));
+        }
+    }
+
+    @Override
+    public void updateClients(Collection<Client> clients) {
+        try {
+            delegate.updateClients(clients);
+        } catch (RuntimeException ex) {
+            if (clients != null) {
+                clients.forEach(this::invalidate);
+            }
+            throw ex;
+        }
+        for (Client client : clients) {
+            cache.put(client.getId(), copy(client));
+        }
+    }
+
+    @Override
+    public void deleteClients(Collection<Client> clients) {
+        try {
+            delegate.deleteClients(clients);
+        } finally {
+            if (clients != null) {
+                clients.forEach(this::invalidate);
+            }
+        }
+    }
+
+    @Override
+    public Client getClient(Long id) {
+        if (id == null) {
+            return delegate.getClient(id);
+        }
+        Client client = cache.get(id);
+        if (client == null) {
+            long stamp = cache.loadStamp();
+            client = delegate.getClient(id);
+            if (client != null) {
+                cache.putLoaded(id, copy(client), stamp);
+            }
+            return client;
+        }
+        return copy(client);
+    }
+
+    @Override
+    public List<Client> findAllClients() {
+        return delegate.findAllClients();
+    }
+
+    @Override
+    public List<Client> findClientsAfter(Long lastId, int limit) {
+        return delegate.findClientsAfter(lastId, limit);
+    }
+
+    @Override
+    public void forEachClient(Consumer<? super Client> consumer) {
+        delegate.forEachClient(consumer);
+    }
+
+    @Override
+    public List<Client> findClients(ClientQuery query) {
+        return delegate.findClients(query);
+    }
+
+    @Override
+    public int countClients(ClientQuery query) {
+        return delegate.countClients(query);
+    }
+
+    @Override
+    public List<Client> findClientsBySurname(String surname) {
+        return delegate.findClientsBySurname(surname);
+    }
+
+    @Override
+    public List<Client> findClientsByName(String name) {
+        return delegate.findClientsByName(name);
+    }
+
+    @Override
+    public List<Client> findClientsByFoldedSurname(String surname) {
+        return delegate.findClientsByFoldedSurname(surname);
+    }
+
+    @Override
+    public List<Client> findClientsByFoldedName(String name) {
+        return delegate.findClientsByFoldedName(name);
+    }
+
+    @Override
+    public List<Client> findClientsByPrefix(String prefix, int limit) {
+        return delegate.findClientsByPrefix(prefix, limit);
+    }
+
+    private void invalidate(Client client) {
+        if (client != null && client.getId() != null) {
+            cache.invalidate(client.getId());
+        }
+    }
+
+    private static Client copy(Client client) {
+        Client copy = new Client();
+        copy.setId(client.getId());
+        copy.setName(client.getName());
+        copy.setSurname(client.getSurname());
+        return copy;
+    }
+}
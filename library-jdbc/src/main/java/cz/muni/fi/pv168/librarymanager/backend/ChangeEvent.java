@@ -0,0 +1,64 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+/**
+ * Change of book, client or rent in database published by
+ * {@link ChangeEventBus}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public final class ChangeEvent {
+
+    public enum EntityType {
+        BOOK, CLIENT, RENT
+    }
+
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final EntityType entityType;
+    private final ChangeType changeType;
+    private final Long id;
+    private final Object entity;
+
+    /**
+     * @param entityType type of changed entity
+     * @param changeType type of change
+     * @param id id of changed entity
+     * @param entity entity as it was written or null when it is not known
+     */
+    public ChangeEvent(EntityType entityType, ChangeType changeType, Long id, Object entity) {
+        if (entityType == null || changeType == null || id == null) {
+            throw new IllegalArgumentException("entityType, changeType or id is null");
+        }
+        this.entityType = entityType;
+        this.changeType = changeType;
+        this.id = id;
+        this.entity = entity;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return entity as it was written by manager of this process, null
+     * for changes read from change log
+     */
+    public Object getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" + entityType + " " + id + " " + changeType + "}";
+    }
+}
@@ -0,0 +1,59 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers changes of books, clients and rents to listeners. Managers
+ * publish changes they committed when the bus is set to them, changes made
+ * by other processes are published by {@link ChangeFeedPoller}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ChangeEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeEventBus.class);
+
+    private static final ChangeEventBus DEFAULT = new ChangeEventBus();
+
+    private final List<ChangeEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return bus shared by the whole application
+     */
+    public static ChangeEventBus getDefault() {
+        return DEFAULT;
+    }
+
+    public void addListener(ChangeEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChangeEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all listeners in the calling thread, failure of one listener
+     * is logged and does not stop the others.
+     *
+     * @param event committed change
+     */
+    public void publish(ChangeEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("event is null");
+        }
+        for (ChangeEventListener listener : listeners) {
+            try {
+                listener.changed(event);
+            } catch (RuntimeException ex) {
+                logger.error("Listener failed to handle " + event, ex);
+            }
+        }
+    }
+}
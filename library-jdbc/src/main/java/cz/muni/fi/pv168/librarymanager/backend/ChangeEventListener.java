@@ -0,0 +1,18 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+/**
+ * Listener notified by {@link ChangeEventBus} about changed entities.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@FunctionalInterface
+public interface ChangeEventListener {
+
+    /**
+     * Method is called in the thread which made or read the change, so it
+     * has to be thread safe and should not block.
+     *
+     * @param event committed change
+     */
+    void changed(ChangeEvent event);
+}
@@ -0,0 +1,187 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.ChangeType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes changes written to CHANGE_LOG by other processes sharing the
+ * database, e.g. other instances of the application connected to the same
+ * Derby network server. Rows of changes made by this process are published
+ * too, listeners apply them again by reloading the changed entity. Rows
+ * older than {@link #RETENTION_MILLIS} are deleted from time to time.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ChangeFeedPoller implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedPoller.class);
+
+    /**
+     * System property with milliseconds between polls, 0 turns polling off
+     */
+    public static final String PROPERTY = "librarymanager.changeFeed";
+
+    public static final long DEFAULT_PERIOD_MILLIS = 1000;
+
+    /**
+     * Rows of the log older than this are deleted
+     */
+    public static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Maximum number of rows read by one query
+     */
+    private static final int MAX_ROWS = 1000;
+
+    private final DataSource dataSource;
+    private final ChangeEventBus bus;
+    private ScheduledExecutorService scheduler;
+    private Long lastId;
+    private long lastCleanup;
+
+    /**
+     * @param dataSource data source of the database with change log
+     * @param bus bus receiving changes of other processes
+     */
+    public ChangeFeedPoller(DataSource dataSource, ChangeEventBus bus) {
+        if (dataSource == null || bus == null) {
+            throw new IllegalArgumentException("dataSource or bus is null");
+        }
+        this.dataSource = dataSource;
+        this.bus = bus;
+    }
+
+    /**
+     * Starts polling in daemon thread with period given by {@link #PROPERTY}.
+     *
+     * @return true when polling was started, false when it is turned off
+     */
+    public boolean start() {
+        long period = Long.getLong(PROPERTY, DEFAULT_PERIOD_MILLIS);
+        if (period <= 0) {
+            return false;
+        }
+        start(period, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Starts polling in daemon thread, changes logged before the first poll
+     * are not published. Poll called before the start finds the end of the
+     * log, so that changes logged in between are published.
+     *
+     * @param period time between polls
+     * @param unit unit of the period
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) {
+            throw new IllegalStateException("polling is already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (ServiceFailureException ex) {
+                // logged by poll, the next poll tries again
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Publishes changes logged since the previous poll. The first poll only
+     * finds the end of the log.
+     *
+     * @return number of published changes
+     * @throws ServiceFailureException when reading of the log fails
+     */
+    public synchronized int poll() {
+        try (Connection conn = dataSource.getConnection()) {
+            if (lastId == null) {
+                lastId = findLastId(conn);
+                lastCleanup = System.currentTimeMillis();
+                return 0;
+            }
+            List<ChangeEvent> events;
+            int published = 0;
+            do {
+                events = readChanges(conn);
+                for (ChangeEvent event : events) {
+                    bus.publish(event);
+                    published++;
+                }
+            } while (events.size() == MAX_ROWS);
+            if (System.currentTimeMillis() - lastCleanup > RETENTION_MILLIS) {
+                deleteOldChanges(conn);
+            }
+            return published;
+        } catch (SQLException ex) {
+            String msg = "Error when reading change log";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    private static Long findLastId(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery("SELECT MAX(id) FROM change_log")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private List<ChangeEvent> readChanges(Connection conn) throws SQLException {
+        List<ChangeEvent> events = new ArrayList<>();
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT id,entitytype,changetype,entityid FROM change_log "
+                + "WHERE id > ? ORDER BY id FETCH FIRST " + MAX_ROWS + " ROWS ONLY")) {
+            st.setLong(1, lastId);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    lastId = rs.getLong(1);
+                    events.add(new ChangeEvent(EntityType.valueOf(rs.getString(2)),
+                            ChangeType.valueOf(rs.getString(3)), rs.getLong(4), null));
+                }
+            }
+        }
+        return events;
+    }
+
+    private void deleteOldChanges(Connection conn) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement st = conn.prepareStatement(
+                "DELETE FROM change_log WHERE changedat < ?")) {
+            st.setTimestamp(1, new Timestamp(now - RETENTION_MILLIS));
+            logger.info(st.executeUpdate() + " old rows deleted from change log");
+        }
+        lastCleanup = now;
+    }
+
+    /**
+     * Stops polling.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *
@@ -23,11 +25,32 @@ public interface ClientManager {
     public void updateClient(Client client);
     
     /**
-     * Method delete existing client
+     * Method delete existing client, client with current or archived rents
+     * is not deleted
      * @param client client to delete
      */
     public void deleteClient(Client client);
     
+    /**
+     * Method create all clients in one transaction, generated ids are set
+     * to the given clients
+     * @param clients new clients
+     */
+    public void createClients(Collection<Client> clients);
+    
+    /**
+     * Method change all existing clients in one transaction
+     * @param clients clients to change
+     */
+    public void updateClients(Collection<Client> clients);
+    
+    /**
+     * Method delete all existing clients in one transaction, none is deleted
+     * when some of them has current or archived rents
+     * @param clients clients to delete
+     */
+    public void deleteClients(Collection<Client> clients);
+    
     /**
      * Method find all clients with surname
      * @param surname surname to find
@@ -42,12 +65,68 @@ public interface ClientManager {
      */
     public List<Client> findClientsByName(String name);
     
+    /**
+     * Method find all clients with surname ignoring case and diacritics,
+     * "Novák" finds client "novak"
+     * @param surname surname to find
+     * @return clients with input surname as list
+     */
+    public List<Client> findClientsByFoldedSurname(String surname);
+    
+    /**
+     * Method find all clients with first name ignoring case and diacritics
+     * @param name first name to find
+     * @return clients with input first name as list
+     */
+    public List<Client> findClientsByFoldedName(String name);
+    
+    /**
+     * Method find clients while their name is typed, "name surname" or
+     * "surname name" of the client has to start with the prefix ignoring
+     * case
+     * @param prefix beginning of the name
+     * @param limit maximal number of clients
+     * @return at most limit clients as list, empty for blank prefix
+     */
+    public List<Client> findClientsByPrefix(String prefix, int limit);
+    
     /**
      * Method list all existing clients
      * @return all clients as list of Client
      */
     public List<Client> findAllClients();
     
+    /**
+     * Method list one page of clients ordered by id. Next page is obtained by
+     * passing id of the last client of previous page.
+     * @param lastId id of the last client of previous page or null for first page
+     * @param limit maximal number of clients in page
+     * @return at most limit clients with id greater than lastId as list of Client
+     */
+    public List<Client> findClientsAfter(Long lastId, int limit);
+    
+    /**
+     * Method pass all clients one by one to consumer without loading all of 
+     * them into memory
+     * @param consumer consumer of clients
+     */
+    public void forEachClient(Consumer<? super Client> consumer);
+    
+    /**
+     * Method list clients matching the query in order and page given by query
+     * @param query criteria, order and page of clients
+     * @return matching clients as list of Client
+     */
+    public List<Client> findClients(ClientQuery query);
+    
+    /**
+     * Method count all clients matching the query, order and page of query
+     * are ignored
+     * @param query criteria of clients
+     * @return number of matching clients
+     */
+    public int countClients(ClientQuery query);
+    
     /**
      * Method find client by his id number
      * @param id number
@@ -1,5 +1,7 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.ChangeType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
 import cz.muni.fi.pv168.librarymanager.common.*;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -7,7 +9,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +27,18 @@ public class ClientManagerImpl implements ClientManager {
     private static final Logger logger = LoggerFactory.getLogger(
             ClientManagerImpl.class.getName());
     
+    private static final int FETCH_SIZE = 500;
+    
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    
     private DataSource dataSource;
     
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    
+    private ChangeEventBus changeEventBus;
+    
+    private ClientTypeaheadIndex typeaheadIndex;
+    
     public ClientManagerImpl() {}
     
     public ClientManagerImpl(DataSource dataSource) {
@@ -34,6 +49,60 @@ public class ClientManagerImpl implements ClientManager {
         this.dataSource = dataSource;
     }
     
+    /**
+     * Sets number of statements sent to database at once by batch methods
+     * @param batchSize positive number of statements
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size is not positive number");
+        }
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Sets bus to which changes of clients committed by this manager are
+     * published.
+     * @param changeEventBus bus or null for no events
+     */
+    public void setChangeEventBus(ChangeEventBus changeEventBus) {
+        this.changeEventBus = changeEventBus;
+    }
+    
+    /**
+     * Sets index which answers {@link #findClientsByPrefix(String, int)}
+     * without querying the database, clients changed by this manager are
+     * written to it. Until the index is loaded, clients are found in the
+     * database.
+     * @param typeaheadIndex index loaded from this manager, null for no index
+     */
+    public void setTypeaheadIndex(ClientTypeaheadIndex typeaheadIndex) {
+        this.typeaheadIndex = typeaheadIndex;
+    }
+    
+    private void updateTypeaheadIndex(ChangeType changeType, Collection<Client> clients) {
+        if (typeaheadIndex == null) {
+            return;
+        }
+        for (Client client : clients) {
+            if (changeType == ChangeType.DELETED) {
+                typeaheadIndex.remove(client.getId());
+            } else {
+                typeaheadIndex.put(client);
+            }
+        }
+    }
+    
+    private void publish(ChangeType changeType, Collection<Client> clients) {
+        if (changeEventBus == null) {
+            return;
+        }
+        for (Client client : clients) {
+            changeEventBus.publish(new ChangeEvent(EntityType.CLIENT, changeType,
+                    client.getId(), client));
+        }
+    }
+    
     private void checkDataSource() {
         if (dataSource == null) {
             throw new IllegalStateException("DataSource is not set");
@@ -96,6 +165,120 @@ public class ClientManagerImpl implements ClientManager {
         }
     }
 
+    @Override
+    public List<Client> findClientsAfter(Long lastId, int limit) {
+        checkDataSource();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT id, name, surname FROM Client "
+                + "WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+            
+            st.setLong(1, lastId == null ? Long.MIN_VALUE : lastId);
+            st.setInt(2, limit);
+            ResultSet rs = st.executeQuery();
+            
+            List<Client> clients = new ArrayList<>(limit);
+            while (rs.next()) {
+                clients.add(resultSetToClient(rs));
+            }
+            logger.info("Retrived " + clients.size() + " clients after id " + lastId);
+            return clients;
+        } catch (SQLException ex) {
+            String msg = "Error when retrivering clients after id " + lastId + " from DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+    
+    @Override
+    public void forEachClient(Consumer<? super Client> consumer) {
+        checkDataSource();
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT id, name, surname FROM Client")) {
+            
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(resultSetToClient(rs));
+                }
+            }
+            logger.info("Streamed all clients");
+        } catch (SQLException ex) {
+            String msg = "Error when streaming all clients from DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public List<Client> findClients(ClientQuery query) {
+        checkDataSource();
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+        SqlFilter filter = filterOf(query);
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT id, name, surname FROM Client"
+                + filter.toWhereClause()
+                + " ORDER BY " + query.getSortColumn().getColumn()
+                + (query.isDescending() ? " DESC, id DESC" : ", id")
+                + SqlFilter.pageClause(query.getLimit()))) {
+            
+            int index = filter.setParameters(st, 1);
+            SqlFilter.setPageParameters(st, index, query.getOffset(), query.getLimit());
+            st.setFetchSize(query.getLimit() == 0 ? FETCH_SIZE : query.getLimit());
+            List<Client> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(resultSetToClient(rs));
+                }
+            }
+            logger.info("Retriving " + result.size() + " clients by " + query);
+            return result;
+        } catch (SQLException ex) {
+            String msg = "Error when getting clients by " + query + " from DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public int countClients(ClientQuery query) {
+        checkDataSource();
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+        SqlFilter filter = filterOf(query);
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT COUNT(*) FROM Client" + filter.toWhereClause())) {
+            
+            filter.setParameters(st, 1);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException ex) {
+            String msg = "Error when counting clients by " + query + " in DB";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+    
+    private static SqlFilter filterOf(ClientQuery query) {
+        return new SqlFilter()
+                .match("name", query.getName(), query.getNameMatch())
+                .match("surname", query.getSurname(), query.getSurnameMatch());
+    }
+
     @Override
     public void createClient(Client client) throws ServiceFailureException {
         checkDataSource();
@@ -106,11 +289,13 @@ public class ClientManagerImpl implements ClientManager {
 
         try (Connection connection = dataSource.getConnection();
             PreparedStatement st = connection.prepareStatement(
-                "INSERT INTO CLIENT (name, surname) VALUES (?,?)",
+                "INSERT INTO CLIENT (name, surname, namekey, surnamekey) VALUES (?,?,?,?)",
                         Statement.RETURN_GENERATED_KEYS)) { 
 
             st.setString(1, client.getName());
             st.setString(2, client.getSurname());
+            st.setString(3, TextNormalizer.toKey(client.getName()));
+            st.setString(4, TextNormalizer.toKey(client.getSurname()));
             int addedRows = st.executeUpdate();
             if (addedRows != 1) {
                 logger.error("Error while creating client - more rows affected");
@@ -127,9 +312,11 @@ public class ClientManagerImpl implements ClientManager {
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex); 
         }
+        updateTypeaheadIndex(ChangeType.CREATED, Collections.singletonList(client));
+        publish(ChangeType.CREATED, Collections.singletonList(client));
     }
 
-    private void validate(Client client) throws IllegalArgumentException {
+    void validate(Client client) throws IllegalArgumentException {
         if (client == null) {
             throw new IllegalArgumentException("client is null");
         }
@@ -186,11 +373,14 @@ public class ClientManagerImpl implements ClientManager {
         }
         try (Connection connection = dataSource.getConnection();
             PreparedStatement st = connection.prepareStatement(
-                "UPDATE Client SET name = ?, surname = ? WHERE id = ?")) {
+                "UPDATE Client SET name = ?, surname = ?, namekey = ?, surnamekey = ? "
+                + "WHERE id = ?")) {
 
             st.setString(1, client.getName());
             st.setString(2, client.getSurname());
-            st.setLong(3, client.getId());
+            st.setString(3, TextNormalizer.toKey(client.getName()));
+            st.setString(4, TextNormalizer.toKey(client.getSurname()));
+            st.setLong(5, client.getId());
 
             int count = st.executeUpdate();
             if (count == 0) {
@@ -205,6 +395,8 @@ public class ClientManagerImpl implements ClientManager {
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex); 
         }
+        updateTypeaheadIndex(ChangeType.UPDATED, Collections.singletonList(client));
+        publish(ChangeType.UPDATED, Collections.singletonList(client));
     }
 
     @Override
@@ -233,10 +425,172 @@ public class ClientManagerImpl implements ClientManager {
                 throw new ServiceFailureException("Invalid deleted rows count detected (one row should be updated): " + count);
             }
         } catch (SQLException ex) {
+            if (DBUtils.isForeignKeyViolation(ex)) {
+                logger.error("Client " + client + " to delete has rents");
+                throw new IllegalEntityException("Client " + client + " has rents");
+            }
             String msg = "Error when deleting client " + client;
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex);
         }
+        updateTypeaheadIndex(ChangeType.DELETED, Collections.singletonList(client));
+        publish(ChangeType.DELETED, Collections.singletonList(client));
+    }
+
+    @Override
+    public void createClients(Collection<Client> clients) {
+        checkDataSource();
+        if (clients == null) {
+            throw new IllegalArgumentException("clients is null");
+        }
+        for (Client client : clients) {
+            validate(client);
+            if (client.getId() != null) {
+                throw new IllegalEntityException("client id is already set");
+            }
+        }
+        if (clients.isEmpty()) {
+            return;
+        }
+        List<Client> batch = new ArrayList<>(clients);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            long lastId = DBUtils.lockTableAndGetMaxId(conn, "client");
+            st = conn.prepareStatement("INSERT INTO CLIENT (name, surname, namekey, surnamekey) VALUES (?,?,?,?)");
+            for (int i = 0; i < batch.size(); i++) {
+                Client client = batch.get(i);
+                st.setString(1, client.getName());
+                st.setString(2, client.getSurname());
+                st.setString(3, TextNormalizer.toKey(client.getName()));
+                st.setString(4, TextNormalizer.toKey(client.getSurname()));
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    st.executeBatch();
+                }
+            }
+            List<Long> ids = DBUtils.getIdsInsertedAfter(conn, "client", lastId, batch.size());
+            conn.commit();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).setId(ids.get(i));
+            }
+            logger.info(batch.size() + " clients were created");
+        } catch (SQLException ex) {
+            String msg = "Error when inserting batch of " + batch.size() + " clients";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        updateTypeaheadIndex(ChangeType.CREATED, batch);
+        publish(ChangeType.CREATED, batch);
+    }
+
+    @Override
+    public void updateClients(Collection<Client> clients) {
+        checkDataSource();
+        if (clients == null) {
+            throw new IllegalArgumentException("clients is null");
+        }
+        for (Client client : clients) {
+            validate(client);
+            if (client.getId() == null) {
+                throw new IllegalEntityException("client id is null");
+            }
+        }
+        if (clients.isEmpty()) {
+            return;
+        }
+        List<Client> batch = new ArrayList<>(clients);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement("UPDATE Client SET name = ?, surname = ?, namekey = ?, surnamekey = ? "
+                + "WHERE id = ?");
+            int batchStart = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Client client = batch.get(i);
+                st.setString(1, client.getName());
+                st.setString(2, client.getSurname());
+                st.setString(3, TextNormalizer.toKey(client.getName()));
+                st.setString(4, TextNormalizer.toKey(client.getSurname()));
+                st.setLong(5, client.getId());
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    DBUtils.checkBatchUpdatesCounts(st.executeBatch(), 
+                            batch.subList(batchStart, i + 1));
+                    batchStart = i + 1;
+                }
+            }
+            conn.commit();
+            logger.info(batch.size() + " clients were updated");
+        } catch (SQLException ex) {
+            String msg = "Error when updating batch of " + batch.size() + " clients";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        updateTypeaheadIndex(ChangeType.UPDATED, batch);
+        publish(ChangeType.UPDATED, batch);
+    }
+
+    @Override
+    public void deleteClients(Collection<Client> clients) {
+        checkDataSource();
+        if (clients == null) {
+            throw new IllegalArgumentException("clients is null");
+        }
+        for (Client client : clients) {
+            if (client == null) {
+                throw new IllegalArgumentException("client is null");
+            }
+            if (client.getId() == null) {
+                throw new IllegalEntityException("client id is null");
+            }
+        }
+        if (clients.isEmpty()) {
+            return;
+        }
+        List<Client> batch = new ArrayList<>(clients);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement("DELETE FROM client WHERE id = ?");
+            int batchStart = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                st.setLong(1, batch.get(i).getId());
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    DBUtils.checkBatchUpdatesCounts(st.executeBatch(), 
+                            batch.subList(batchStart, i + 1));
+                    batchStart = i + 1;
+                }
+            }
+            conn.commit();
+            logger.info(batch.size() + " clients were deleted");
+        } catch (SQLException ex) {
+            if (DBUtils.isForeignKeyViolation(ex)) {
+                logger.error("Some of clients to delete has rents", ex);
+                throw new IllegalEntityException("Some of clients has rents");
+            }
+            String msg = "Error when deleting batch of " + batch.size() + " clients";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        updateTypeaheadIndex(ChangeType.DELETED, batch);
+        publish(ChangeType.DELETED, batch);
     }
 
     @Override
@@ -285,5 +639,80 @@ public class ClientManagerImpl implements ClientManager {
             throw new ServiceFailureException(msg, ex);
         }
     }
+
+    @Override
+    public List<Client> findClientsByFoldedName(String name) {
+        return findClientsByKey("namekey", name);
+    }
+
+    @Override
+    public List<Client> findClientsByFoldedSurname(String surname) {
+        return findClientsByKey("surnamekey", surname);
+    }
+
+    private List<Client> findClientsByKey(String keyColumn, String value) {
+        checkDataSource();
+        if (value == null) {
+            throw new IllegalArgumentException("value of " + keyColumn + " is null");
+        }
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement st = connection.prepareStatement(
+                "SELECT id, name, surname FROM client WHERE " + keyColumn + " = ?")) {
+
+            st.setString(1, TextNormalizer.toKey(value));
+            List<Client> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(resultSetToClient(rs));
+                }
+            }
+            logger.info("Retriving clients with " + keyColumn + " of " + value);
+            return result;
+
+        } catch (SQLException ex) {
+            String msg = "Error when retrieving clients with " + keyColumn + " of " + value;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public List<Client> findClientsByPrefix(String prefix, int limit) {
+        checkDataSource();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        if (typeaheadIndex != null && typeaheadIndex.isLoaded()) {
+            return typeaheadIndex.findByPrefix(prefix, limit);
+        }
+        String pattern = String.join(" ", TextNormalizer.normalize(prefix).trim().split("\\s+"));
+        if (pattern.isEmpty()) {
+            return Collections.emptyList();
+        }
+        pattern = SqlFilter.escapeLike(pattern) + "%";
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement st = connection.prepareStatement(
+                "SELECT id, name, surname FROM client "
+                + "WHERE namekey || ' ' || surnamekey LIKE ? ESCAPE '\\' "
+                + "OR surnamekey || ' ' || namekey LIKE ? ESCAPE '\\' "
+                + "ORDER BY surname, name, id FETCH FIRST ? ROWS ONLY")) {
+
+            st.setString(1, pattern);
+            st.setString(2, pattern);
+            st.setInt(3, limit);
+            List<Client> result = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(resultSetToClient(rs));
+                }
+            }
+            return result;
+
+        } catch (SQLException ex) {
+            String msg = "Error when retrieving clients with prefix " + prefix;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
     
 }
@@ -0,0 +1,141 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
+
+/**
+ * Criteria of clients listed by {@link ClientManager#findClients(ClientQuery)}.
+ * Criteria which are not set do not restrict the result. Text criteria are
+ * case sensitive, prefix match can use index of the column.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ClientQuery {
+
+    /**
+     * Column clients are sorted by, clients with equal values are sorted by id
+     */
+    public enum SortColumn {
+        ID("id"),
+        NAME("name"),
+        SURNAME("surname");
+
+        private final String column;
+
+        private SortColumn(String column) {
+            this.column = column;
+        }
+
+        String getColumn() {
+            return column;
+        }
+    }
+
+    private String name;
+    private MatchMode nameMatch = MatchMode.PREFIX;
+    private String surname;
+    private MatchMode surnameMatch = MatchMode.PREFIX;
+    private SortColumn sortColumn = SortColumn.ID;
+    private boolean descending;
+    private int offset;
+    private int limit;
+
+    public ClientQuery name(String name, MatchMode match) {
+        if (match == null) {
+            throw new IllegalArgumentException("match mode is null");
+        }
+        this.name = name;
+        this.nameMatch = match;
+        return this;
+    }
+
+    public ClientQuery surname(String surname, MatchMode match) {
+        if (match == null) {
+            throw new IllegalArgumentException("match mode is null");
+        }
+        this.surname = surname;
+        this.surnameMatch = match;
+        return this;
+    }
+
+    public ClientQuery sortBy(SortColumn column, boolean descending) {
+        if (column == null) {
+            throw new IllegalArgumentException("sort column is null");
+        }
+        this.sortColumn = column;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Returns copy of this query for one page, this query is not changed,
+     * so pages of one query can be loaded concurrently.
+     *
+     * @param offset number of skipped clients
+     * @param limit maximal number of clients, 0 for no limit
+     * @return new query with the other criteria of this query
+     */
+    public ClientQuery page(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset is negative number");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit is negative number");
+        }
+        ClientQuery page = copy();
+        page.offset = offset;
+        page.limit = limit;
+        return page;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MatchMode getNameMatch() {
+        return nameMatch;
+    }
+
+    public String getSurname() {
+        return surname;
+    }
+
+    public MatchMode getSurnameMatch() {
+        return surnameMatch;
+    }
+
+    public SortColumn getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private ClientQuery copy() {
+        ClientQuery copy = new ClientQuery();
+        copy.name = name;
+        copy.nameMatch = nameMatch;
+        copy.surname = surname;
+        copy.surnameMatch = surnameMatch;
+        copy.sortColumn = sortColumn;
+        copy.descending = descending;
+        copy.offset = offset;
+        copy.limit = limit;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientQuery{" + "name=" + name + ", surname=" + surname
+                + ", sortColumn=" + sortColumn + ", descending=" + descending
+                + ", offset=" + offset + ", limit=" + limit + '}';
+    }
+}
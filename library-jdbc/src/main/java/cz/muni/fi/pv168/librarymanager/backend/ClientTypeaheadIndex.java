@@ -0,0 +1,224 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.TextNormalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Names of clients kept in memory for finding clients while their name is
+ * typed. Each client has two keys, "name surname" and "surname name", folded
+ * by {@link TextNormalizer}, so that client is found by the beginning of
+ * either order. Keys are kept in one sorted array, clients with a prefix
+ * are found by binary search and read in order of their keys. Index has to
+ * be told about every change of clients,
+ * {@link ClientManagerImpl#setTypeaheadIndex(ClientTypeaheadIndex)} does it
+ * for the manager.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ClientTypeaheadIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<Long, Client> clients = new HashMap<>();
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int size;
+    private volatile boolean loaded;
+
+    /**
+     * Replaces clients in the index by clients of the manager. Keys are
+     * sorted once at the end instead of being inserted one by one.
+     *
+     * @param manager manager reading clients from database
+     */
+    public synchronized void load(ClientManager manager) {
+        loaded = false;
+        clients.clear();
+        size = 0;
+        List<Entry> entries = new ArrayList<>();
+        manager.forEachClient(client -> {
+            Client copy = copy(client);
+            clients.put(copy.getId(), copy);
+            for (String key : keys(copy)) {
+                entries.add(new Entry(key, copy.getId()));
+            }
+        });
+        Collections.sort(entries);
+        ensureCapacity(entries.size());
+        for (Entry entry : entries) {
+            keys[size] = entry.key;
+            ids[size] = entry.id;
+            size++;
+        }
+        loaded = true;
+    }
+
+    /**
+     * @return whether the index was loaded and answers for all clients, it
+     * does not wait for loading in progress
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds client or replaces client with the same id.
+     *
+     * @param client client with id, name and surname
+     */
+    public synchronized void put(Client client) {
+        if (client == null || client.getId() == null) {
+            throw new IllegalArgumentException("client or its id is null");
+        }
+        remove(client.getId());
+        Client copy = copy(client);
+        clients.put(copy.getId(), copy);
+        for (String key : keys(copy)) {
+            int index = find(key, copy.getId());
+            if (index < 0) {
+                insert(-index - 1, key, copy.getId());
+            }
+        }
+    }
+
+    /**
+     * Removes client, nothing happens when client is not in the index.
+     *
+     * @param clientId id of client
+     */
+    public synchronized void remove(Long clientId) {
+        Client client = clients.remove(clientId);
+        if (client == null) {
+            return;
+        }
+        for (String key : keys(client)) {
+            int index = find(key, clientId);
+            if (index >= 0) {
+                System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                keys[--size] = null;
+            }
+        }
+    }
+
+    /**
+     * @return number of clients in the index
+     */
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    /**
+     * Finds clients whose "name surname" or "surname name" starts with the
+     * prefix. Case and diacritics are ignored, spaces between words of the
+     * prefix are collapsed.
+     *
+     * @param prefix beginning of the name
+     * @param limit maximal number of clients
+     * @return at most limit clients ordered by the matching key, empty
+     * for empty prefix
+     */
+    public synchronized List<Client> findByPrefix(String prefix, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        String key = String.join(" ", TextNormalizer.tokenize(prefix));
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // trailing space keeps the word whole, "jan " does not match "jana"
+        if (Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+            key += " ";
+        }
+        int index = find(key, Long.MIN_VALUE);
+        Set<Long> found = new LinkedHashSet<>();
+        for (int i = -index - 1; i < size && found.size() < limit
+                && keys[i].startsWith(key); i++) {
+            found.add(ids[i]);
+        }
+        List<Client> result = new ArrayList<>(found.size());
+        for (Long id : found) {
+            result.add(copy(clients.get(id)));
+        }
+        return result;
+    }
+
+    /**
+     * @return index of the key and id, or -(insertion point) - 1 when it is
+     * not in the index
+     */
+    private int find(String key, long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int cmp = keys[middle].compareTo(key);
+            if (cmp == 0) {
+                cmp = Long.compare(ids[middle], id);
+            }
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private void insert(int index, String key, long id) {
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        keys[index] = key;
+        ids[index] = id;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            int length = Math.max(capacity, keys.length * 2);
+            keys = Arrays.copyOf(keys, length);
+            ids = Arrays.copyOf(ids, length);
+        }
+    }
+
+    private static String[] keys(Client client) {
+        String name = String.join(" ", TextNormalizer.tokenize(client.getName()));
+        String surname = String.join(" ", TextNormalizer.tokenize(client.getSurname()));
+        return new String[]{name + " " + surname, surname + " " + name};
+    }
+
+    private static Client copy(Client client) {
+        Client copy = new Client();
+        copy.setId(client.getId());
+        copy.setName(client.getName());
+        copy.setSurname(client.getSurname());
+        return copy;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        final String key;
+        final long id;
+
+        Entry(String key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int cmp = key.compareTo(other.key);
+            return cmp != 0 ? cmp : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.CsvWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Clock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports books, clients and rents to CSV readable by {@link CsvImporter}.
+ * Rows are streamed from the database, so memory used does not depend on
+ * number of rows.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CsvExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvExporter.class);
+
+    /**
+     * Number of written rows after which progress listener is notified
+     */
+    public static final int PROGRESS_INTERVAL = 10000;
+
+    private final BookManager bookManager;
+    private final ClientManager clientManager;
+    private final RentManager rentManager;
+    private ProgressListener progressListener;
+
+    public CsvExporter(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("dataSource is null");
+        }
+        bookManager = new BookManagerImpl(Clock.systemDefaultZone());
+        bookManager.setDataSource(dataSource);
+        clientManager = new ClientManagerImpl(dataSource);
+        rentManager = new RentManagerImpl(Clock.systemDefaultZone());
+        rentManager.setDataSource(dataSource);
+    }
+
+    /**
+     * @param progressListener listener notified about written rows or null
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @param writer target of CSV with columns id, author, title and
+     * yearofpublication, it is flushed but not closed
+     * @return number of exported books
+     * @throws IOException when writing fails
+     */
+    public long exportBooks(Writer writer) throws IOException {
+        return this.<Book>exportRows(writer, "book", new Object[]{"id", "author", "title", "yearofpublication"},
+                consumer -> bookManager.forEachBook(consumer),
+                book -> new Object[]{book.getId(), book.getAuthor(), book.getTitle(),
+                    book.getYearOfPublication()});
+    }
+
+    /**
+     * @param writer target of CSV with columns id, name and surname, it is
+     * flushed but not closed
+     * @return number of exported clients
+     * @throws IOException when writing fails
+     */
+    public long exportClients(Writer writer) throws IOException {
+        return this.<Client>exportRows(writer, "client", new Object[]{"id", "name", "surname"},
+                consumer -> clientManager.forEachClient(consumer),
+                client -> new Object[]{client.getId(), client.getName(), client.getSurname()});
+    }
+
+    /**
+     * @param writer target of CSV with columns id, clientid, bookid,
+     * startday and endday, it is flushed but not closed
+     * @return number of exported rents
+     * @throws IOException when writing fails
+     */
+    public long exportRents(Writer writer) throws IOException {
+        return this.<Rent>exportRows(writer, "rent", new Object[]{"id", "clientid", "bookid", "startday", "endday"},
+                consumer -> rentManager.forEachRent(consumer),
+                rent -> new Object[]{rent.getId(), rent.getClient().getId(),
+                    rent.getBook().getId(), rent.getStartDay(), rent.getEndDay()});
+    }
+
+    private <T> long exportRows(Writer writer, String entity, Object[] header,
+            Consumer<Consumer<T>> rows, Function<T, Object[]> fields)
+            throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer is null");
+        }
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRecord(header);
+        long[] written = new long[1];
+        try {
+            rows.accept(row -> {
+                try {
+                    csv.writeRecord(fields.apply(row));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                if (++written[0] % PROGRESS_INTERVAL == 0 && progressListener != null) {
+                    progressListener.progress(written[0]);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        csv.flush();
+        if (progressListener != null && written[0] % PROGRESS_INTERVAL != 0) {
+            progressListener.progress(written[0]);
+        }
+        logger.info(written[0] + " rows exported from " + entity);
+        return written[0];
+    }
+}
@@ -0,0 +1,334 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.CsvReader;
+import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import cz.muni.fi.pv168.librarymanager.common.ValidationException;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports books, clients and rents from CSV with a header naming the
+ * columns, columns which are not needed (e.g. id) are ignored. Books need
+ * author, title and yearofpublication, clients need name and surname, rents
+ * need clientid, bookid, startday and endday of ISO format. Ids of books
+ * and clients are generated, so rents have to refer to ids in the database.
+ * <p>
+ * The calling thread parses and validates rows by the rules of the managers
+ * and puts batches to a bounded queue, from which they are inserted by
+ * parallel threads. Memory used does not depend on size of the input. Rows
+ * are inserted in a transaction per batch, batches inserted before a
+ * failure stay in the database.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CsvImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvImporter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    public static final int DEFAULT_PARALLELISM = 2;
+
+    /**
+     * Batch telling inserting thread that there are no more batches
+     */
+    private static final List<Object> END = Collections.emptyList();
+
+    private final BookManagerImpl bookManager;
+    private final ClientManagerImpl clientManager;
+    private final RentManagerImpl rentManager;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private ProgressListener progressListener;
+
+    /**
+     * @param dataSource data source of the database
+     * @param clock clock deciding which rents and years of publication are
+     * in the past or in the future
+     */
+    public CsvImporter(DataSource dataSource, Clock clock) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("dataSource is null");
+        }
+        bookManager = new BookManagerImpl(clock);
+        bookManager.setDataSource(dataSource);
+        clientManager = new ClientManagerImpl(dataSource);
+        rentManager = new RentManagerImpl(clock);
+        rentManager.setDataSource(dataSource);
+    }
+
+    /**
+     * @param batchSize number of rows inserted in one transaction
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize is not positive number");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param parallelism number of threads inserting batches
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism is not positive number");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param progressListener listener notified about inserted rows or null
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @param reader CSV with books
+     * @return number of imported books
+     * @throws IOException when reading fails
+     * @throws ValidationException when row is not valid
+     */
+    public long importBooks(Reader reader) throws IOException {
+        return importRows(reader, "book", Arrays.asList("author", "title", "yearofpublication"),
+                fields -> {
+                    Book book = new Book();
+                    book.setAuthor(fields[0]);
+                    book.setTitle(fields[1]);
+                    book.setYearOfPublication(parseInt(fields[2]));
+                    bookManager.validate(book);
+                    return book;
+                }, bookManager::createBooks);
+    }
+
+    /**
+     * @param reader CSV with clients
+     * @return number of imported clients
+     * @throws IOException when reading fails
+     * @throws ValidationException when row is not valid
+     */
+    public long importClients(Reader reader) throws IOException {
+        return importRows(reader, "client", Arrays.asList("name", "surname"),
+                fields -> {
+                    Client client = new Client();
+                    client.setName(fields[0]);
+                    client.setSurname(fields[1]);
+                    clientManager.validate(client);
+                    return client;
+                }, clientManager::createClients);
+    }
+
+    /**
+     * Rents are checked for overlaps with each other and with rents in the
+     * database by the rent manager.
+     *
+     * @param reader CSV with rents
+     * @return number of imported rents
+     * @throws IOException when reading fails
+     * @throws ValidationException when row is not valid
+     */
+    public long importRents(Reader reader) throws IOException {
+        return importRows(reader, "rent", Arrays.asList("clientid", "bookid", "startday", "endday"),
+                fields -> {
+                    Client client = new Client();
+                    client.setId(parseLong(fields[0]));
+                    Book book = new Book();
+                    book.setId(parseLong(fields[1]));
+                    Rent rent = new Rent();
+                    rent.setClient(client);
+                    rent.setBook(book);
+                    rent.setStartDay(parseDate(fields[2]));
+                    rent.setEndDay(parseDate(fields[3]));
+                    rentManager.validate(rent);
+                    return rent;
+                }, rentManager::createRents);
+    }
+
+    private <T> long importRows(Reader reader, String entity, List<String> columns,
+            Function<String[], T> parser, Consumer<List<T>> inserter) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null");
+        }
+        CsvReader csv = new CsvReader(reader);
+        int[] indexes = findColumns(csv.readRecord(), columns);
+        BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(2 * parallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        AtomicLong inserted = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> inserters = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            inserters.add(executor.submit(() -> insertBatches(queue, inserter, failure, inserted)));
+        }
+        try {
+            String[] fields = new String[columns.size()];
+            List<T> batch = new ArrayList<>(batchSize);
+            String[] record;
+            while ((record = csv.readRecord()) != null) {
+                long line = csv.getLineNumber();
+                for (int i = 0; i < indexes.length; i++) {
+                    if (indexes[i] >= record.length) {
+                        throw new ValidationException("line " + line + ": missing column "
+                                + columns.get(i));
+                    }
+                    fields[i] = record[indexes[i]];
+                }
+                try {
+                    batch.add(parser.apply(fields));
+                } catch (ValidationException | IllegalEntityException ex) {
+                    throw new ValidationException("line " + line + ": " + ex.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    put(queue, batch, failure);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                put(queue, batch, failure);
+            }
+        } catch (IOException | RuntimeException ex) {
+            failure.compareAndSet(null, new ServiceFailureException("Import stopped", ex));
+            throw ex;
+        } finally {
+            finish(queue, inserters, failure, executor);
+        }
+        RuntimeException insertFailure = failure.get();
+        if (insertFailure != null) {
+            throw insertFailure;
+        }
+        logger.info(inserted.get() + " rows imported to " + entity);
+        return inserted.get();
+    }
+
+    private static int[] findColumns(String[] header, List<String> columns) {
+        if (header == null) {
+            throw new ValidationException("header is missing");
+        }
+        List<String> names = new ArrayList<>(header.length);
+        for (String name : header) {
+            names.add(name.trim().toLowerCase(Locale.ROOT));
+        }
+        int[] indexes = new int[columns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = names.indexOf(columns.get(i));
+            if (indexes[i] < 0) {
+                throw new ValidationException("header has no column " + columns.get(i));
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Waits for space in the queue unless inserting failed.
+     */
+    private static <T> void put(BlockingQueue<List<T>> queue, List<T> batch,
+            AtomicReference<RuntimeException> failure) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) {
+                    throw failure.get();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceFailureException("Interrupted while importing", ex);
+        }
+    }
+
+    private <T> void insertBatches(BlockingQueue<List<T>> queue, Consumer<List<T>> inserter,
+            AtomicReference<RuntimeException> failure, AtomicLong inserted) {
+        while (true) {
+            List<T> batch;
+            try {
+                batch = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch == END) {
+                return;
+            }
+            if (failure.get() != null) {
+                continue;
+            }
+            try {
+                inserter.accept(batch);
+            } catch (RuntimeException ex) {
+                failure.compareAndSet(null, ex);
+                continue;
+            }
+            long rows = inserted.addAndGet(batch.size());
+            if (progressListener != null) {
+                progressListener.progress(rows);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void finish(BlockingQueue<List<T>> queue, List<Future<?>> inserters,
+            AtomicReference<RuntimeException> failure, ExecutorService executor) {
+        try {
+            // inserting threads take all batches, so there is space for ends
+            for (int i = 0; i < inserters.size(); i++) {
+                queue.put((List<T>) END);
+            }
+            for (Future<?> inserter : inserters) {
+                inserter.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new ServiceFailureException("Interrupted while importing", ex));
+        } catch (ExecutionException ex) {
+            failure.compareAndSet(null, new ServiceFailureException("Import failed", ex.getCause()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new ValidationException(value + " is not a number");
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new ValidationException(value + " is not a number");
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException ex) {
+            throw new ValidationException(value + " is not a date");
+        }
+    }
+}
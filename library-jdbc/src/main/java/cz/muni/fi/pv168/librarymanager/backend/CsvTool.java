@@ -0,0 +1,93 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command line tool moving books, clients and rents between the database
+ * configured by {@link DataSourceFactory} and UTF-8 CSV files:
+ * <pre>
+ * java ... CsvTool import|export books|clients|rents FILE
+ * </pre>
+ * Import is configured by system properties csv.batchSize, csv.parallelism
+ * and csv.today, the day from which rents are not in the past.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CsvTool {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvTool.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !args[0].matches("import|export")
+                || !args[1].matches("books|clients|rents")) {
+            System.err.println("Usage: CsvTool import|export books|clients|rents FILE");
+            System.exit(2);
+        }
+        BasicDataSource dataSource = DataSourceFactory.createDataSource();
+        try {
+            new SchemaManager(dataSource).updateSchema();
+            ProgressListener progress = rows -> logger.info(rows + " " + args[1]);
+            long rows = args[0].equals("import")
+                    ? importFile(dataSource, args[1], args[2], progress)
+                    : exportFile(dataSource, args[1], args[2], progress);
+            logger.info(args[0] + " of " + rows + " " + args[1] + " finished");
+        } finally {
+            try {
+                dataSource.close();
+            } catch (SQLException ex) {
+                logger.warn("Closing of data source failed", ex);
+            }
+        }
+    }
+
+    private static long importFile(BasicDataSource dataSource, String entity, String file,
+            ProgressListener progress) throws IOException {
+        String today = System.getProperty("csv.today");
+        ZoneId zone = ZoneId.systemDefault();
+        Clock clock = today == null ? Clock.system(zone)
+                : Clock.fixed(LocalDate.parse(today).atStartOfDay(zone).toInstant(), zone);
+        CsvImporter importer = new CsvImporter(dataSource, clock);
+        importer.setBatchSize(Integer.getInteger("csv.batchSize", CsvImporter.DEFAULT_BATCH_SIZE));
+        importer.setParallelism(Integer.getInteger("csv.parallelism", CsvImporter.DEFAULT_PARALLELISM));
+        importer.setProgressListener(progress);
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            switch (entity) {
+                case "books":
+                    return importer.importBooks(reader);
+                case "clients":
+                    return importer.importClients(reader);
+                default:
+                    return importer.importRents(reader);
+            }
+        }
+    }
+
+    private static long exportFile(BasicDataSource dataSource, String entity, String file,
+            ProgressListener progress) throws IOException {
+        CsvExporter exporter = new CsvExporter(dataSource);
+        exporter.setProgressListener(progress);
+        try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            switch (entity) {
+                case "books":
+                    return exporter.exportBooks(writer);
+                case "clients":
+                    return exporter.exportClients(writer);
+                default:
+                    return exporter.exportRents(writer);
+            }
+        }
+    }
+}
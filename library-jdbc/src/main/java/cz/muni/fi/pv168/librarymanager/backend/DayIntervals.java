@@ -0,0 +1,196 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of periods of rents of one book, days are counted from
+ * epoch and both ends of a period are inclusive. Periods are sorted by
+ * start day together with maximal end day of the preceding periods, so
+ * overlap is found by binary search. Overlapping periods are merged into
+ * blocks and lengths of gaps between blocks are kept in a max segment tree,
+ * so the first free slot of given length is found in logarithmic time.
+ * Changes create a new set in linear time.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public final class DayIntervals {
+
+    /**
+     * Set without periods
+     */
+    public static final DayIntervals EMPTY = new DayIntervals(new long[0], new long[0], new long[0]);
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] ids;
+    private final long[] maxEnds;
+    private final long[] blockStarts;
+    private final long[] blockEnds;
+    private final long[] gapTree;
+    private final int leaves;
+
+    private DayIntervals(long[] starts, long[] ends, long[] ids) {
+        this.starts = starts;
+        this.ends = ends;
+        this.ids = ids;
+        int n = starts.length;
+        maxEnds = new long[n];
+        long[] mergedStarts = new long[n];
+        long[] mergedEnds = new long[n];
+        int blocks = 0;
+        for (int i = 0; i < n; i++) {
+            maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+            if (blocks > 0 && starts[i] <= mergedEnds[blocks - 1] + 1) {
+                mergedEnds[blocks - 1] = Math.max(mergedEnds[blocks - 1], ends[i]);
+            } else {
+                mergedStarts[blocks] = starts[i];
+                mergedEnds[blocks] = ends[i];
+                blocks++;
+            }
+        }
+        blockStarts = Arrays.copyOf(mergedStarts, blocks);
+        blockEnds = Arrays.copyOf(mergedEnds, blocks);
+        int size = 1;
+        while (size < Math.max(blocks, 1)) {
+            size *= 2;
+        }
+        leaves = size;
+        // gap after block k is between its end and start of the next block,
+        // gap after the last block never ends
+        gapTree = new long[2 * size];
+        Arrays.fill(gapTree, -1);
+        for (int k = 0; k < blocks; k++) {
+            gapTree[size + k] = k == blocks - 1
+                    ? Long.MAX_VALUE : blockStarts[k + 1] - blockEnds[k] - 1;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            gapTree[node] = Math.max(gapTree[2 * node], gapTree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * @return number of periods
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Returns set with the period added.
+     *
+     * @param start first day
+     * @param end last day, not before the first day
+     * @param id id of rent
+     * @return new set
+     */
+    public DayIntervals with(long start, long end, long id) {
+        if (end < start) {
+            throw new IllegalArgumentException("period ends before it starts");
+        }
+        int index = countStartingBefore(start);
+        int n = starts.length;
+        long[] newStarts = new long[n + 1];
+        long[] newEnds = new long[n + 1];
+        long[] newIds = new long[n + 1];
+        insert(starts, newStarts, index, start);
+        insert(ends, newEnds, index, end);
+        insert(ids, newIds, index, id);
+        return new DayIntervals(newStarts, newEnds, newIds);
+    }
+
+    /**
+     * Returns set without period of the rent.
+     *
+     * @param id id of rent
+     * @return new set or this set when it does not contain the rent
+     */
+    public DayIntervals without(long id) {
+        int index = 0;
+        while (index < ids.length && ids[index] != id) {
+            index++;
+        }
+        if (index == ids.length) {
+            return this;
+        }
+        if (ids.length == 1) {
+            return EMPTY;
+        }
+        return new DayIntervals(remove(starts, index), remove(ends, index), remove(ids, index));
+    }
+
+    /**
+     * @param from first day
+     * @param to last day
+     * @return whether some period has a common day with the given period
+     */
+    public boolean overlaps(long from, long to) {
+        int count = countStartingBefore(to + 1);
+        return count > 0 && maxEnds[count - 1] >= from;
+    }
+
+    /**
+     * Returns the first day, not before the given day, which starts given
+     * number of days not covered by any period.
+     *
+     * @param from the earliest first day
+     * @param days positive number of days
+     * @return first day of the free slot
+     */
+    public long findFirstFreeSlot(long from, long days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("days is not positive number");
+        }
+        // the first block which does not end before the day
+        int block = lowerBound(blockEnds, from);
+        if (block == blockEnds.length || blockStarts[block] - from >= days) {
+            return from;
+        }
+        return blockEnds[firstGapAtLeast(1, 0, leaves, block, days)] + 1;
+    }
+
+    private int firstGapAtLeast(int node, int low, int high, int first, long days) {
+        if (high <= first || gapTree[node] < days) {
+            return -1;
+        }
+        if (high - low == 1) {
+            return low;
+        }
+        int middle = (low + high) / 2;
+        int found = firstGapAtLeast(2 * node, low, middle, first, days);
+        return found >= 0 ? found : firstGapAtLeast(2 * node + 1, middle, high, first, days);
+    }
+
+    private int countStartingBefore(long day) {
+        return lowerBound(starts, day);
+    }
+
+    /**
+     * @return index of the first value not less than key
+     */
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void insert(long[] source, long[] target, int index, long value) {
+        System.arraycopy(source, 0, target, 0, index);
+        target[index] = value;
+        System.arraycopy(source, index, target, index + 1, source.length - index);
+    }
+
+    private static long[] remove(long[] source, int index) {
+        long[] target = new long[source.length - 1];
+        System.arraycopy(source, 0, target, 0, index);
+        System.arraycopy(source, index + 1, target, index, source.length - index - 1);
+        return target;
+    }
+}
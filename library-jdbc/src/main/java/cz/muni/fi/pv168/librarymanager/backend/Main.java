@@ -1,13 +1,15 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.DataSourceFactory;
+import java.sql.SQLException;
 import java.time.Clock;
 import java.time.LocalDate;
+import java.util.Properties;
 import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.derby.jdbc.EmbeddedDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 
 import javax.sql.DataSource;
 
@@ -20,18 +22,17 @@ public class Main {
     final static Logger log = LoggerFactory.getLogger(Main.class);
     private static final Clock clock = Clock.systemDefaultZone();
     
-    public static DataSource createMemoryDatabase() {
-        BasicDataSource bds = new BasicDataSource();
-        bds.setDriverClassName(EmbeddedDriver.class.getName());
-        bds.setUrl("jdbc:derby:memory:library;create=true");
-        new ResourceDatabasePopulator(
-                new ClassPathResource("createTables.sql"),
-                new ClassPathResource("testData.sql"))
-                .execute(bds);
+    public static DataSource createMemoryDatabase() throws SQLException {
+        Properties configuration = new Properties();
+        configuration.setProperty("jdbc.driver", EmbeddedDriver.class.getName());
+        configuration.setProperty("jdbc.url", "jdbc:derby:memory:library;create=true");
+        BasicDataSource bds = DataSourceFactory.createDataSource(configuration);
+        new SchemaManager(bds).updateSchema();
+        DBUtils.executeSqlScript(bds, Main.class.getResource("testData.sql"));
         return bds;
     }
 
-    public static void main(String[] args)  {
+    public static void main(String[] args) throws SQLException {
 
         log.info("zaciname");
         DataSource dataSource = createMemoryDatabase();
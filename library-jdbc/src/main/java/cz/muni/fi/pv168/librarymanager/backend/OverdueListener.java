@@ -0,0 +1,22 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Listener notified by {@link OverdueTracker} about rents which became
+ * overdue.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@FunctionalInterface
+public interface OverdueListener {
+
+    /**
+     * Method is called when the day changes and some rents end before it.
+     *
+     * @param today the new day
+     * @param rents rents which were not overdue on the previous check
+     */
+    void rentsBecameOverdue(LocalDate today, List<Rent> rents);
+}
@@ -0,0 +1,196 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rents ordered by their end day, so that rents overdue at the day of the
+ * clock are read without querying the database. Tracker has to be told
+ * about every change of rents, see {@link TrackingRentManager}. Rents are
+ * copied when added, their book and client are shared.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class OverdueTracker {
+
+    private final Clock clock;
+    private final NavigableMap<LocalDate, Map<Long, Rent>> byEndDay = new TreeMap<>();
+    private final Map<Long, Rent> byId = new HashMap<>();
+    private final List<OverdueListener> listeners = new CopyOnWriteArrayList<>();
+    private LocalDate lastCheck;
+
+    public OverdueTracker(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock is null");
+        }
+        this.clock = clock;
+        this.lastCheck = LocalDate.now(clock);
+    }
+
+    /**
+     * Replaces tracked rents by all rents of the manager.
+     *
+     * @param manager manager reading rents from database
+     */
+    public synchronized void load(RentManager manager) {
+        byEndDay.clear();
+        byId.clear();
+        manager.forEachRent(this::put);
+        lastCheck = LocalDate.now(clock);
+    }
+
+    /**
+     * Adds rent or replaces tracked rent with the same id.
+     *
+     * @param rent rent with id
+     */
+    public synchronized void put(Rent rent) {
+        if (rent == null || rent.getId() == null) {
+            throw new IllegalArgumentException("rent or its id is null");
+        }
+        remove(rent.getId());
+        Rent copy = copy(rent);
+        byId.put(copy.getId(), copy);
+        if (copy.getEndDay() != null) {
+            byEndDay.computeIfAbsent(copy.getEndDay(), day -> new HashMap<>())
+                    .put(copy.getId(), copy);
+        }
+    }
+
+    /**
+     * Replaces tracked rent by the updated one. Update does not change the
+     * client of a rent, so the tracked client is kept. Rent which is not
+     * tracked is added as it is.
+     *
+     * @param rent updated rent with id
+     */
+    public synchronized void putUpdated(Rent rent) {
+        if (rent == null || rent.getId() == null) {
+            throw new IllegalArgumentException("rent or its id is null");
+        }
+        Rent tracked = byId.get(rent.getId());
+        Rent updated = copy(rent);
+        if (tracked != null) {
+            updated.setClient(tracked.getClient());
+        }
+        put(updated);
+    }
+
+    /**
+     * Stops tracking of rent, nothing happens when rent is not tracked.
+     *
+     * @param id id of rent
+     */
+    public synchronized void remove(Long id) {
+        Rent removed = byId.remove(id);
+        if (removed == null || removed.getEndDay() == null) {
+            return;
+        }
+        Map<Long, Rent> rents = byEndDay.get(removed.getEndDay());
+        rents.remove(id);
+        if (rents.isEmpty()) {
+            byEndDay.remove(removed.getEndDay());
+        }
+    }
+
+    /**
+     * @return number of tracked rents
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * Returns rents which ended before the day of the clock.
+     *
+     * @return overdue rents ordered by end day
+     */
+    public List<Rent> findOverdue() {
+        return findEndedBetween(LocalDate.MIN, LocalDate.now(clock));
+    }
+
+    /**
+     * Returns rents whose end day is from the first day (inclusive) to the
+     * second day (exclusive).
+     */
+    private synchronized List<Rent> findEndedBetween(LocalDate from, LocalDate to) {
+        List<Rent> result = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return result;
+        }
+        for (Map<Long, Rent> rents : byEndDay.subMap(from, true, to, false).values()) {
+            for (Rent rent : rents.values()) {
+                result.add(copy(rent));
+            }
+        }
+        return result;
+    }
+
+    public void addListener(OverdueListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(OverdueListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies listeners about rents ending from the day of the previous
+     * check to the day before today. Nothing happens when the day of the
+     * clock did not change since the previous check.
+     */
+    public void checkNewlyOverdue() {
+        LocalDate today = LocalDate.now(clock);
+        List<Rent> rents;
+        synchronized (this) {
+            if (!today.isAfter(lastCheck)) {
+                return;
+            }
+            rents = findEndedBetween(lastCheck, today);
+            lastCheck = today;
+        }
+        if (rents.isEmpty()) {
+            return;
+        }
+        for (OverdueListener listener : listeners) {
+            listener.rentsBecameOverdue(today, rents);
+        }
+    }
+
+    /**
+     * Schedules periodic {@link #checkNewlyOverdue()}, so that listeners are
+     * notified soon after the day rolls over.
+     *
+     * @param executor executor running the checks
+     * @param period time between checks
+     * @param unit unit of the period
+     * @return future cancelling the checks
+     */
+    public ScheduledFuture<?> scheduleChecks(ScheduledExecutorService executor,
+            long period, TimeUnit unit) {
+        return executor.scheduleAtFixedRate(this::checkNewlyOverdue, period, period, unit);
+    }
+
+    private static Rent copy(Rent rent) {
+        Rent copy = new Rent();
+        copy.setId(rent.getId());
+        copy.setBook(rent.getBook());
+        copy.setClient(rent.getClient());
+        copy.setStartDay(rent.getStartDay());
+        copy.setEndDay(rent.getEndDay());
+        return copy;
+    }
+}
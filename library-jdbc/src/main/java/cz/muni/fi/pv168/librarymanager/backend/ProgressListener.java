@@ -0,0 +1,19 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+/**
+ * Listener notified by {@link CsvImporter} and {@link CsvExporter} about
+ * number of transferred rows.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Method is called after each batch of rows, possibly from other than
+     * the transferring thread.
+     *
+     * @param rows number of rows transferred so far
+     */
+    void progress(long rows);
+}
@@ -16,6 +16,7 @@ public class Rent {
     private LocalDate endDay;
     private Client client;
     private Book book;
+    private LocalDate returnDay;
 
     public Long getId() {
         return id;
@@ -57,6 +58,18 @@ public class Rent {
         this.book = book;
     }
 
+    /**
+     * @return day the book was returned, null for rents which were not
+     * returned yet and for archived rents whose return was not recorded
+     */
+    public LocalDate getReturnDay() {
+        return returnDay;
+    }
+
+    public void setReturnDay(LocalDate returnDay) {
+        this.returnDay = returnDay;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -65,6 +78,7 @@ public class Rent {
         hash = 53 * hash + Objects.hashCode(this.endDay);
         hash = 53 * hash + Objects.hashCode(this.client);
         hash = 53 * hash + Objects.hashCode(this.book);
+        hash = 53 * hash + Objects.hashCode(this.returnDay);
         return hash;
     }
 
@@ -95,12 +109,15 @@ public class Rent {
         if (!Objects.equals(this.book, other.book)) {
             return false;
         }
+        if (!Objects.equals(this.returnDay, other.returnDay)) {
+            return false;
+        }
         return true;
     }
 
     @Override
     public String toString() {
-        return "Rent{" + "id=" + id + ", startDay=" + startDay + ", endDay=" + endDay + ", client=" + client + ", book=" + book + '}';
+        return "Rent{" + "id=" + id + ", startDay=" + startDay + ", endDay=" + endDay + ", client=" + client + ", book=" + book + ", returnDay=" + returnDay + '}';
     }
 
     
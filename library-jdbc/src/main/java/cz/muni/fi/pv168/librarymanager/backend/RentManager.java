@@ -1,6 +1,8 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import javax.sql.DataSource;
 
 
@@ -30,6 +32,34 @@ public interface RentManager {
      */
     public void deleteRent(Rent rent);
     
+    /**
+     * Method create all rents in one transaction, generated ids are set
+     * to the given rents
+     * @param rents new rents
+     */
+    public void createRents(Collection<Rent> rents);
+    
+    /**
+     * Method change all existing rents in one transaction
+     * @param rents rents to change
+     */
+    public void updateRents(Collection<Rent> rents);
+    
+    /**
+     * Method delete all existing rents in one transaction
+     * @param rents rents to delete
+     */
+    public void deleteRents(Collection<Rent> rents);
+    
+    /**
+     * Method move rent of returned book to the archive, return day is set
+     * to today and the book is available again from today. Rents which
+     * were not returned stay current however old they are, so that they
+     * are reported as delayed returns
+     * @param rent rent which started already
+     */
+    public void returnRent(Rent rent);
+    
     /**
      * Method find all rent what has delayed return
      * @return delayed returns as list of Rent
@@ -63,5 +93,37 @@ public interface RentManager {
      */
     public List<Rent> findAllRents();
     
+    /**
+     * Method list one page of rents ordered by id. Next page is obtained by
+     * passing id of the last rent of previous page.
+     * @param lastId id of the last rent of previous page or null for first page
+     * @param limit maximal number of rents in page
+     * @return at most limit rents with id greater than lastId as list of Rent
+     */
+    public List<Rent> findRentsAfter(Long lastId, int limit);
+    
+    /**
+     * Method pass all rents one by one to consumer without loading whole 
+     * rent history into memory
+     * @param consumer consumer of rents
+     */
+    public void forEachRent(Consumer<? super Rent> consumer);
+    
+    /**
+     * Method list rents matching the query in order and page given by
+     * query, archived rents with return day only when query includes them
+     * @param query criteria, order and page of rents
+     * @return matching rents as list of Rent
+     */
+    public List<Rent> findRents(RentQuery query);
+    
+    /**
+     * Method count all rents matching the query, order and page of query
+     * are ignored
+     * @param query criteria of rents
+     * @return number of matching rents
+     */
+    public int countRents(RentQuery query);
+    
     public void setDataSource(DataSource dataSource);
 }
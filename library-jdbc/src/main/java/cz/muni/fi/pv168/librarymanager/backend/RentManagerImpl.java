@@ -1,16 +1,25 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.ChangeType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
 import cz.muni.fi.pv168.librarymanager.common.*;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
 import java.sql.Statement;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,10 +35,39 @@ public class RentManagerImpl implements RentManager {
     private static final Logger logger = LoggerFactory.getLogger(
             RentManagerImpl.class.getName());
     
+    private static final int FETCH_SIZE = 500;
+
+    /**
+     * Number of attempts to create rent. Derby rolls back insert which
+     * can not get identity value under contention of concurrent inserts,
+     * such insert succeeds when it is repeated.
+     */
+    private static final int CREATE_ATTEMPTS = 3;
+    
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    
+    /**
+     * Rents joined with archived rents, columns of archived rents are
+     * named as columns of rent and have return day
+     */
+    private static final String RENTS_WITH_ARCHIVE =
+            "(SELECT id, clientid, bookid, startday, endday, "
+            + "CAST(NULL AS DATE) AS returnday FROM rent UNION ALL "
+            + "SELECT id, clientid, bookid, startday, endday, returnday "
+            + "FROM rent_archive) AS rent";
+    
     private DataSource dataSource;
     
     private Clock clock;
     
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    
+    private ChangeEventBus changeEventBus;
+    
+    private BookAvailabilityIndex availabilityIndex;
+    
+    private boolean sharingEntities;
+    
     public RentManagerImpl(Clock clock) {
         this.clock = clock;
     }
@@ -42,13 +80,90 @@ public class RentManagerImpl implements RentManager {
         this.dataSource = dataSource;
     }
     
+    /**
+     * Sets number of statements sent to database at once by batch methods
+     * @param batchSize positive number of statements
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size is not positive number");
+        }
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Sets bus to which changes of rents committed by this manager are
+     * published.
+     * @param changeEventBus bus or null for no events
+     */
+    public void setChangeEventBus(ChangeEventBus changeEventBus) {
+        this.changeEventBus = changeEventBus;
+    }
+    
+    private void publish(ChangeType changeType, Collection<Rent> rents) {
+        if (changeEventBus == null) {
+            return;
+        }
+        for (Rent rent : rents) {
+            changeEventBus.publish(new ChangeEvent(EntityType.RENT, changeType,
+                    rent.getId(), rent));
+        }
+    }
+    
+    /**
+     * Sets index which rejects rents of books rented in the same time
+     * before the database is asked, rents changed by this manager are
+     * written to it. Database stays authoritative, index only makes
+     * the rejection faster.
+     * @param availabilityIndex index loaded from this manager, null for
+     * no index
+     */
+    public void setAvailabilityIndex(BookAvailabilityIndex availabilityIndex) {
+        this.availabilityIndex = availabilityIndex;
+    }
+    
+    /**
+     * Sets whether rents returned by one call share instances of the same
+     * client, book and day. Shared instances are read from database only
+     * once, which saves memory of large listings, but change of a client
+     * or book of one rent is visible in other rents of the same call.
+     * @param sharingEntities true for sharing, false by default
+     */
+    public void setSharingEntities(boolean sharingEntities) {
+        this.sharingEntities = sharingEntities;
+    }
+    
+    private RentRowMapper newRowMapper() {
+        return newRowMapper(false);
+    }
+    
+    private RentRowMapper newRowMapper(boolean history) {
+        if (sharingEntities) {
+            return new RentRowMapper(true, history);
+        }
+        return history ? RentRowMapper.PLAIN_HISTORY : RentRowMapper.PLAIN;
+    }
+    
+    private void checkAvailability(Rent rent) throws IllegalEntityException {
+        if (availabilityIndex != null && !availabilityIndex.isAvailable(
+                rent.getBook().getId(), rent.getStartDay(), rent.getEndDay())) {
+            throw new IllegalEntityException("Book " + rent.getBook() + " is already rent");
+        }
+    }
+    
+    private void updateAvailability(Collection<Rent> rents) {
+        if (availabilityIndex != null) {
+            rents.forEach(availabilityIndex::put);
+        }
+    }
+    
     private void checkDataSource() {
         if (dataSource == null) {
             throw new IllegalStateException("DataSource is not set");
         }
     }
     
-    private void validate(Rent rent) throws IllegalArgumentException, IllegalEntityException{
+    void validate(Rent rent) throws IllegalArgumentException, IllegalEntityException{
         if (rent == null) {
             throw new IllegalArgumentException("rent is null");
         }
@@ -116,36 +231,86 @@ public class RentManagerImpl implements RentManager {
             logger.error("Error when creating rent - rent id is already set");
             throw new IllegalEntityException("rent id is already set");
         }
-              
-        try (Connection connection = dataSource.getConnection()) {
-            checkIfBookIsNotRent(connection, rent); 
+        checkAvailability(rent);
+        for (int attempt = 1; rent.getId() == null; attempt++) {
+            try {
+                rent.setId(insertRent(rent));
+            } catch (SQLTransactionRollbackException ex) {
+                if (attempt == CREATE_ATTEMPTS) {
+                    String msg = "Error when inserting rent " + rent + " into db";
+                    logger.error(msg, ex);
+                    throw new ServiceFailureException(msg, ex);
+                }
+                logger.warn("Inserting rent " + rent + " was rolled back, trying again", ex);
+            } catch (SQLException ex) {
+                String msg = "Error when inserting rent with id "+rent.getId()+" into db";
+                logger.error(msg, ex);
+                throw new ServiceFailureException(msg, ex);
+            }
+        }
+        updateAvailability(Collections.singletonList(rent));
+        logger.info("Rent with id "+rent.getId()+" was created");
+        publish(ChangeType.CREATED, Collections.singletonList(rent));
+    }
+    
+    /**
+     * Inserts rent unless it overlaps other rent of its book. Row of the
+     * book serves as lock of its rents: it is read with update lock held
+     * until commit, so desks creating rents of the same book take turns
+     * and the overlap probe sees the rents committed before. Rents of
+     * other books and readers do not wait.
+     * @return generated id of the rent
+     */
+    private Long insertRent(Rent rent) throws SQLException {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            try (PreparedStatement lockSt = connection.prepareStatement(
+                    "SELECT id FROM book WHERE id = ? FOR UPDATE OF yearofpublication WITH RR")) {
+                lockSt.setLong(1, rent.getBook().getId());
+                try (ResultSet rs = lockSt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new IllegalEntityException("Book " + rent.getBook() + " was not found");
+                    }
+                }
+            }
+            try (PreparedStatement probeSt = connection.prepareStatement(
+                    "SELECT id FROM rent WHERE bookid = ? AND startday <= ? AND endday >= ?")) {
+                probeSt.setLong(1, rent.getBook().getId());
+                probeSt.setDate(2, toSqlDate(rent.getEndDay()));
+                probeSt.setDate(3, toSqlDate(rent.getStartDay()));
+                try (ResultSet rs = probeSt.executeQuery()) {
+                    if (rs.next()) {
+                        checkIfBookIsNotRent(connection, rent);
+                        throw new IllegalEntityException("Book " + rent.getBook() + " is already rent");
+                    }
+                }
+            }
+            Long id;
             try (PreparedStatement st = connection.prepareStatement(
                     "INSERT INTO Rent (clientid,bookid,startday,endday) VALUES (?,?,?,?)",
                     Statement.RETURN_GENERATED_KEYS)) {
-                
                 st.setLong(1, rent.getClient().getId());
                 st.setLong(2, rent.getBook().getId());
                 st.setDate(3, toSqlDate(rent.getStartDay()));
                 st.setDate(4, toSqlDate(rent.getEndDay()));
-
                 int addedRows = st.executeUpdate();
                 if (addedRows != 1) {
                     logger.error("Error while creating rent - more rows affected");
                     throw new ServiceFailureException("Internal Error: More rows ("
                             + addedRows + ") inserted when trying to insert rent " + rent);
                 }
-
-                ResultSet keyRS = st.getGeneratedKeys();
-                rent.setId(getKey(keyRS,rent));
-                logger.info("Rent with id "+rent.getId()+" was created");
+                id = getKey(st.getGeneratedKeys(), rent);
             }
-        } catch (SQLException ex) {
-            String msg = "Error when inserting rent with id "+rent.getId()+" into db";
-            logger.error(msg, ex);
-            throw new ServiceFailureException(msg, ex);
-        } 
+            connection.commit();
+            return id;
+        } finally {
+            DBUtils.doRollbackQuietly(connection);
+            DBUtils.closeQuietly(connection);
+        }
     }
-
+    
     @Override
     public void updateRent(Rent rent) throws ServiceFailureException {
         checkDataSource();
@@ -172,12 +337,14 @@ public class RentManagerImpl implements RentManager {
                 throw new ServiceFailureException("Invalid updated rows count "
                         + "detected (one row should be updated): " + count);
             }
+            updateAvailability(Collections.singletonList(rent));
             logger.info("Rent with id "+rent.getId()+" was updated");
         } catch (SQLException ex) {
             String msg = "Error when updating rent in db";
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex);
         } 
+        publish(ChangeType.UPDATED, Collections.singletonList(rent));
     }
 
     @Override
@@ -204,11 +371,256 @@ public class RentManagerImpl implements RentManager {
                 throw new ServiceFailureException("Invalid deleted rows count "
                         + "detected (one row should be updated): " + count);
             }
+            if (availabilityIndex != null) {
+                availabilityIndex.remove(rent.getId());
+            }
         } catch (SQLException ex) {
             String msg = "Error when deleting rent in db";
             logger.error(msg, ex);
             throw new ServiceFailureException(msg, ex);
         }
+        publish(ChangeType.DELETED, Collections.singletonList(rent));
+    }
+
+    @Override
+    public void createRents(Collection<Rent> rents) {
+        checkDataSource();
+        if (rents == null) {
+            throw new IllegalArgumentException("rents is null");
+        }
+        for (Rent rent : rents) {
+            validate(rent);
+            if (rent.getId() != null) {
+                throw new IllegalEntityException("rent id is already set");
+            }
+        }
+        if (rents.isEmpty()) {
+            return;
+        }
+        List<Rent> batch = new ArrayList<>(rents);
+        checkBatchHasNoOverlaps(batch);
+        batch.forEach(this::checkAvailability);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            long lastId = DBUtils.lockTableAndGetMaxId(conn, "rent");
+            for (Rent rent : batch) {
+                checkIfBookIsNotRent(conn, rent);
+            }
+            st = conn.prepareStatement(
+                    "INSERT INTO Rent (clientid,bookid,startday,endday) VALUES (?,?,?,?)");
+            for (int i = 0; i < batch.size(); i++) {
+                Rent rent = batch.get(i);
+                st.setLong(1, rent.getClient().getId());
+                st.setLong(2, rent.getBook().getId());
+                st.setDate(3, toSqlDate(rent.getStartDay()));
+                st.setDate(4, toSqlDate(rent.getEndDay()));
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    st.executeBatch();
+                }
+            }
+            List<Long> ids = DBUtils.getIdsInsertedAfter(conn, "rent", lastId, batch.size());
+            conn.commit();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).setId(ids.get(i));
+            }
+            updateAvailability(batch);
+            logger.info(batch.size() + " rents were created");
+        } catch (SQLException ex) {
+            String msg = "Error when inserting batch of " + batch.size() + " rents into db";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        publish(ChangeType.CREATED, batch);
+    }
+
+    @Override
+    public void updateRents(Collection<Rent> rents) {
+        checkDataSource();
+        if (rents == null) {
+            throw new IllegalArgumentException("rents is null");
+        }
+        for (Rent rent : rents) {
+            validate(rent);
+            if (rent.getId() == null) {
+                throw new IllegalEntityException("rent id is null");
+            }
+        }
+        if (rents.isEmpty()) {
+            return;
+        }
+        List<Rent> batch = new ArrayList<>(rents);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement(
+                    "UPDATE Rent SET bookid = ?, startday = ?, endday = ? WHERE id = ?");
+            int batchStart = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Rent rent = batch.get(i);
+                st.setLong(1, rent.getBook().getId());
+                st.setDate(2, toSqlDate(rent.getStartDay()));
+                st.setDate(3, toSqlDate(rent.getEndDay()));
+                st.setLong(4, rent.getId());
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    DBUtils.checkBatchUpdatesCounts(st.executeBatch(), 
+                            batch.subList(batchStart, i + 1));
+                    batchStart = i + 1;
+                }
+            }
+            conn.commit();
+            updateAvailability(batch);
+            logger.info(batch.size() + " rents were updated");
+        } catch (SQLException ex) {
+            String msg = "Error when updating batch of " + batch.size() + " rents in db";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        publish(ChangeType.UPDATED, batch);
+    }
+
+    @Override
+    public void deleteRents(Collection<Rent> rents) {
+        checkDataSource();
+        if (rents == null) {
+            throw new IllegalArgumentException("rents is null");
+        }
+        for (Rent rent : rents) {
+            validate(rent);
+            if (rent.getId() == null) {
+                throw new IllegalEntityException("rent id is null");
+            }
+        }
+        if (rents.isEmpty()) {
+            return;
+        }
+        List<Rent> batch = new ArrayList<>(rents);
+        Connection conn = null;
+        PreparedStatement st = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            st = conn.prepareStatement("DELETE FROM rent WHERE id = ?");
+            int batchStart = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                st.setLong(1, batch.get(i).getId());
+                st.addBatch();
+                if ((i + 1) % batchSize == 0 || i == batch.size() - 1) {
+                    DBUtils.checkBatchUpdatesCounts(st.executeBatch(), 
+                            batch.subList(batchStart, i + 1));
+                    batchStart = i + 1;
+                }
+            }
+            conn.commit();
+            if (availabilityIndex != null) {
+                batch.forEach(rent -> availabilityIndex.remove(rent.getId()));
+            }
+            logger.info(batch.size() + " rents were deleted");
+        } catch (SQLException ex) {
+            String msg = "Error when deleting batch of " + batch.size() + " rents in db";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, st);
+        }
+        publish(ChangeType.DELETED, batch);
+    }
+    
+    @Override
+    public void returnRent(Rent rent) {
+        checkDataSource();
+        if (rent == null) {
+            throw new IllegalArgumentException("rent is null");
+        }
+        if (rent.getId() == null) {
+            logger.error("Error when returning rent - rent id is null");
+            throw new IllegalEntityException("rent id is null");
+        }
+        LocalDate today = LocalDate.now(clock);
+        Connection conn = null;
+        PreparedStatement archiveSt = null;
+        PreparedStatement deleteSt = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            archiveSt = conn.prepareStatement(
+                    "INSERT INTO rent_archive (id,clientid,bookid,startday,endday,returnday) "
+                    + "SELECT id, clientid, bookid, startday, endday, CAST(? AS DATE) "
+                    + "FROM rent WHERE id = ? AND startday <= ?");
+            archiveSt.setDate(1, toSqlDate(today));
+            archiveSt.setLong(2, rent.getId());
+            archiveSt.setDate(3, toSqlDate(today));
+            if (archiveSt.executeUpdate() == 0) {
+                checkIfRentStarted(conn, rent, today);
+            }
+            deleteSt = conn.prepareStatement("DELETE FROM rent WHERE id = ?");
+            deleteSt.setLong(1, rent.getId());
+            DBUtils.checkUpdatesCount(deleteSt.executeUpdate(), rent, false);
+            conn.commit();
+            rent.setReturnDay(today);
+            if (availabilityIndex != null) {
+                availabilityIndex.remove(rent.getId());
+            }
+            logger.info("Rent with id " + rent.getId() + " was returned");
+        } catch (SQLException ex) {
+            String msg = "Error when returning rent with id " + rent.getId();
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+            DBUtils.closeQuietly(conn, archiveSt, deleteSt);
+        }
+        publish(ChangeType.DELETED, Collections.singletonList(rent));
+    }
+    
+    /**
+     * Explains why rent was not archived, it is either missing or starts
+     * after today.
+     */
+    private static void checkIfRentStarted(Connection conn, Rent rent, LocalDate today)
+            throws IllegalEntityException, SQLException {
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT startday FROM rent WHERE id = ?")) {
+            st.setLong(1, rent.getId());
+            try (ResultSet rs = st.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalEntityException("Rent " + rent + " was not found in database!");
+                }
+                throw new IllegalEntityException("Rent " + rent + " starts after " + today
+                        + ", it can be deleted, not returned");
+            }
+        }
+    }
+    
+    private static void checkBatchHasNoOverlaps(List<Rent> rents) throws IllegalEntityException {
+        Map<Long, List<Rent>> rentsByBook = new HashMap<>();
+        for (Rent rent : rents) {
+            rentsByBook.computeIfAbsent(rent.getBook().getId(), id -> new ArrayList<>()).add(rent);
+        }
+        for (List<Rent> bookRents : rentsByBook.values()) {
+            bookRents.sort(Comparator.comparing(Rent::getStartDay));
+            for (int i = 1; i < bookRents.size(); i++) {
+                Rent previous = bookRents.get(i - 1);
+                Rent rent = bookRents.get(i);
+                if (!rent.getStartDay().isAfter(previous.getEndDay())) {
+                    throw new IllegalEntityException("Book " + rent.getBook() +
+                            " is rent twice in the same time " + previous + " and " + rent);
+                }
+            }
+        }
     }
 
     @Override
@@ -226,8 +638,9 @@ public class RentManagerImpl implements RentManager {
             ResultSet rs = st.executeQuery();
 
             List<Rent> result = new ArrayList<>();
+            RentRowMapper mapper = newRowMapper();
             while (rs.next()) {
-                result.add(resultSetToRent(rs));
+                result.add(mapper.map(rs));
             }
             logger.info("Retriving delayed returns");
             return result;
@@ -252,10 +665,9 @@ public class RentManagerImpl implements RentManager {
                 "SELECT rent.id, client.id, client.name, client.surname, "+
                 "book.id, book.title, book.author, book.yearofpublication, "+
                 "startday, endday  FROM rent INNER JOIN client ON rent.clientid"+
-                "=client.id INNER JOIN book ON rent.bookid=book.id WHERE client.id=?")) {
+                "=client.id INNER JOIN book ON rent.bookid=book.id WHERE rent.id=?")) {
 
             st.setLong(1, id);
-            System.out.println(st);
             logger.info("Retriving rent with id "+id);
             return executeQueryForSingleRent(st);
         } catch (SQLException ex) {
@@ -358,10 +770,6 @@ public class RentManagerImpl implements RentManager {
         return localDate == null ? null : Date.valueOf(localDate);
     }
 
-    private static LocalDate toLocalDate(Date date) {
-        return date == null ? null : date.toLocalDate();
-    }
-
     @Override
     public List<Rent> findAllRents() {
         checkDataSource();
@@ -380,6 +788,131 @@ public class RentManagerImpl implements RentManager {
         }         
     }
     
+    @Override
+    public List<Rent> findRentsAfter(Long lastId, int limit) {
+        checkDataSource();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit is not positive number");
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT rent.id, client.id, client.name, client.surname, "+
+                "book.id, book.title, book.author, book.yearofpublication, "+
+                "startday, endday  FROM rent INNER JOIN client ON rent.clientid"+
+                "=client.id INNER JOIN book ON rent.bookid=book.id "+
+                "WHERE rent.id > ? ORDER BY rent.id FETCH FIRST ? ROWS ONLY")) {
+            
+            st.setLong(1, lastId == null ? Long.MIN_VALUE : lastId);
+            st.setInt(2, limit);
+            logger.info("Retriving rents after id " + lastId);
+            return executeQueryForMultipleRents(st);
+        } catch (SQLException ex) {
+            String msg = "Error when getting rents after id " + lastId;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+    
+    @Override
+    public void forEachRent(Consumer<? super Rent> consumer) {
+        checkDataSource();
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT rent.id, client.id, client.name, client.surname, "+
+                "book.id, book.title, book.author, book.yearofpublication, "+
+                "startday, endday  FROM rent INNER JOIN client ON rent.clientid"+
+                "=client.id INNER JOIN book ON rent.bookid=book.id")) {
+            
+            st.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                RentRowMapper mapper = newRowMapper();
+                while (rs.next()) {
+                    consumer.accept(mapper.map(rs));
+                }
+            }
+            logger.info("Streamed all rents");
+        } catch (SQLException ex) {
+            String msg = "Error when streaming all rents";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public List<Rent> findRents(RentQuery query) {
+        checkDataSource();
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+        SqlFilter filter = filterOf(query);
+        boolean history = query.isIncludeArchived();
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT rent.id, client.id, client.name, client.surname, "+
+                "book.id, book.title, book.author, book.yearofpublication, "+
+                "startday, endday" + (history ? ", rent.returnday" : "") +
+                " FROM " + (history ? RENTS_WITH_ARCHIVE : "rent") +
+                " INNER JOIN client ON rent.clientid"+
+                "=client.id INNER JOIN book ON rent.bookid=book.id"+
+                filter.toWhereClause() +
+                " ORDER BY " + query.getSortColumn().getColumn() +
+                (query.isDescending() ? " DESC, rent.id DESC" : ", rent.id") +
+                SqlFilter.pageClause(query.getLimit()))) {
+            
+            int index = filter.setParameters(st, 1);
+            SqlFilter.setPageParameters(st, index, query.getOffset(), query.getLimit());
+            st.setFetchSize(query.getLimit() == 0 ? FETCH_SIZE : query.getLimit());
+            List<Rent> result = executeQueryForMultipleRents(st, newRowMapper(history));
+            logger.info("Retriving " + result.size() + " rents by " + query);
+            return result;
+        } catch (SQLException ex) {
+            String msg = "Error when getting rents by " + query;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    @Override
+    public int countRents(RentQuery query) {
+        checkDataSource();
+        if (query == null) {
+            throw new IllegalArgumentException("query is null");
+        }
+        SqlFilter filter = filterOf(query);
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement(
+                "SELECT COUNT(*) FROM " + (query.isIncludeArchived() ? RENTS_WITH_ARCHIVE : "rent") +
+                " INNER JOIN client ON rent.clientid"+
+                "=client.id INNER JOIN book ON rent.bookid=book.id"+
+                filter.toWhereClause())) {
+            
+            filter.setParameters(st, 1);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException ex) {
+            String msg = "Error when counting rents by " + query;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+    
+    /**
+     * Rent lasts at least one day of the period when it starts before
+     * the end of the period and ends after its start.
+     */
+    private static SqlFilter filterOf(RentQuery query) {
+        return new SqlFilter()
+                .match("book.title", query.getBookTitle(), query.getBookTitleMatch())
+                .match("client.surname", query.getClientSurname(), query.getClientSurnameMatch())
+                .atMost("startday", query.getPeriodTo())
+                .atLeast("endday", query.getPeriodFrom());
+    }
+    
     private static Rent executeQueryForSingleRent(PreparedStatement st) throws SQLException, ServiceFailureException {
         ResultSet rs = st.executeQuery();
         if (rs.next()) {
@@ -394,33 +927,22 @@ public class RentManagerImpl implements RentManager {
         }
     }
     
-    private static List<Rent> executeQueryForMultipleRents(PreparedStatement st) throws SQLException {
+    private List<Rent> executeQueryForMultipleRents(PreparedStatement st) throws SQLException {
+        return executeQueryForMultipleRents(st, newRowMapper());
+    }
+    
+    private static List<Rent> executeQueryForMultipleRents(PreparedStatement st,
+            RentRowMapper mapper) throws SQLException {
         ResultSet rs = st.executeQuery();
         List<Rent> result = new ArrayList<>();
         while (rs.next()) {
-            result.add(resultSetToRent(rs));
+            result.add(mapper.map(rs));
         }
         return result;
     }
     
     private static Rent resultSetToRent(ResultSet rs) throws SQLException {
-        Rent result = new Rent();
-        Client client = new Client();
-        Book book = new Book();
-        
-        result.setId(rs.getLong(1));
-        client.setId(rs.getLong(2));
-        client.setName(rs.getString(3));
-        client.setSurname(rs.getString(4));
-        result.setClient(client);
-        book.setId(rs.getLong(5));
-        book.setTitle(rs.getString(6));
-        book.setAuthor(rs.getString(7));
-        book.setYearOfPublication(rs.getInt(8));
-        result.setBook(book);
-        result.setStartDay(toLocalDate(rs.getDate(9)));
-        result.setEndDay(toLocalDate(rs.getDate(10)));
-        return result;
+        return RentRowMapper.PLAIN.map(rs);
     }
 
 
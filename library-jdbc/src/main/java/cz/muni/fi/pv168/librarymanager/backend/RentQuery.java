@@ -0,0 +1,187 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
+import java.time.LocalDate;
+
+/**
+ * Criteria of rents listed by {@link RentManager#findRents(RentQuery)}.
+ * Criteria which are not set do not restrict the result. Text criteria are
+ * case sensitive, prefix match can use index of the column. Only rents
+ * which were not archived are listed unless archived rents are included.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class RentQuery {
+
+    /**
+     * Column rents are sorted by, rents with equal values are sorted by id
+     */
+    public enum SortColumn {
+        ID("rent.id"),
+        BOOK_TITLE("book.title"),
+        CLIENT_SURNAME("client.surname"),
+        START_DAY("startday"),
+        END_DAY("endday");
+
+        private final String column;
+
+        private SortColumn(String column) {
+            this.column = column;
+        }
+
+        String getColumn() {
+            return column;
+        }
+    }
+
+    private String bookTitle;
+    private MatchMode bookTitleMatch = MatchMode.PREFIX;
+    private String clientSurname;
+    private MatchMode clientSurnameMatch = MatchMode.PREFIX;
+    private LocalDate periodFrom;
+    private LocalDate periodTo;
+    private SortColumn sortColumn = SortColumn.ID;
+    private boolean descending;
+    private int offset;
+    private int limit;
+    private boolean includeArchived;
+
+    public RentQuery bookTitle(String title, MatchMode match) {
+        if (match == null) {
+            throw new IllegalArgumentException("match mode is null");
+        }
+        this.bookTitle = title;
+        this.bookTitleMatch = match;
+        return this;
+    }
+
+    public RentQuery clientSurname(String surname, MatchMode match) {
+        if (match == null) {
+            throw new IllegalArgumentException("match mode is null");
+        }
+        this.clientSurname = surname;
+        this.clientSurnameMatch = match;
+        return this;
+    }
+
+    /**
+     * Restricts result to rents lasting at least one day of the period.
+     * @param from first day of the period, null for unbounded
+     * @param to last day of the period, null for unbounded
+     */
+    public RentQuery period(LocalDate from, LocalDate to) {
+        this.periodFrom = from;
+        this.periodTo = to;
+        return this;
+    }
+
+    public RentQuery sortBy(SortColumn column, boolean descending) {
+        if (column == null) {
+            throw new IllegalArgumentException("sort column is null");
+        }
+        this.sortColumn = column;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Returns copy of this query for one page, this query is not changed,
+     * so pages of one query can be loaded concurrently.
+     *
+     * @param offset number of skipped rents
+     * @param limit maximal number of rents, 0 for no limit
+     * @return new query with the other criteria of this query
+     */
+    public RentQuery page(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset is negative number");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit is negative number");
+        }
+        RentQuery page = copy();
+        page.offset = offset;
+        page.limit = limit;
+        return page;
+    }
+
+    /**
+     * Includes rents moved to the archive by
+     * {@link RentManager#returnRent(Rent)}. Query of both tables
+     * is slower, so archive is included only for history views.
+     * @param includeArchived whether archived rents are listed too
+     */
+    public RentQuery includeArchived(boolean includeArchived) {
+        this.includeArchived = includeArchived;
+        return this;
+    }
+
+    public String getBookTitle() {
+        return bookTitle;
+    }
+
+    public MatchMode getBookTitleMatch() {
+        return bookTitleMatch;
+    }
+
+    public String getClientSurname() {
+        return clientSurname;
+    }
+
+    public MatchMode getClientSurnameMatch() {
+        return clientSurnameMatch;
+    }
+
+    public LocalDate getPeriodFrom() {
+        return periodFrom;
+    }
+
+    public LocalDate getPeriodTo() {
+        return periodTo;
+    }
+
+    public SortColumn getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isIncludeArchived() {
+        return includeArchived;
+    }
+
+    private RentQuery copy() {
+        RentQuery copy = new RentQuery();
+        copy.bookTitle = bookTitle;
+        copy.bookTitleMatch = bookTitleMatch;
+        copy.clientSurname = clientSurname;
+        copy.clientSurnameMatch = clientSurnameMatch;
+        copy.periodFrom = periodFrom;
+        copy.periodTo = periodTo;
+        copy.sortColumn = sortColumn;
+        copy.descending = descending;
+        copy.offset = offset;
+        copy.limit = limit;
+        copy.includeArchived = includeArchived;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "RentQuery{" + "bookTitle=" + bookTitle + ", clientSurname=" + clientSurname
+                + ", periodFrom=" + periodFrom + ", periodTo=" + periodTo
+                + ", sortColumn=" + sortColumn + ", descending=" + descending
+                + ", offset=" + offset + ", limit=" + limit
+                + ", includeArchived=" + includeArchived + '}';
+    }
+}
@@ -0,0 +1,113 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps rows of rent joined with client and book to rents. Columns are read
+ * by index in the order rent.id, client.id, client.name, client.surname,
+ * book.id, book.title, book.author, book.yearofpublication, startday,
+ * endday, rows of rent history have returnday as the eleventh column.
+ * Sharing mapper returns one instance of client, book and day for
+ * all rows with the same value, names and titles of known clients and
+ * books are not read at all. It has to be used for rows of one query only.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+class RentRowMapper {
+
+    /**
+     * Mapper creating new client, book and days for every row
+     */
+    static final RentRowMapper PLAIN = new RentRowMapper(false);
+
+    /**
+     * Mapper of rent history creating new client, book and days for every row
+     */
+    static final RentRowMapper PLAIN_HISTORY = new RentRowMapper(false, true);
+
+    private final Map<Long, Client> clients;
+    private final Map<Long, Book> books;
+    private final Map<Date, LocalDate> days;
+    private final boolean history;
+
+    /**
+     * @param sharing whether instances are shared by rows
+     */
+    RentRowMapper(boolean sharing) {
+        this(sharing, false);
+    }
+
+    /**
+     * @param sharing whether instances are shared by rows
+     * @param history whether rows have return day
+     */
+    RentRowMapper(boolean sharing, boolean history) {
+        this.history = history;
+        clients = sharing ? new HashMap<>() : null;
+        books = sharing ? new HashMap<>() : null;
+        days = sharing ? new HashMap<>() : null;
+    }
+
+    Rent map(ResultSet rs) throws SQLException {
+        Rent result = new Rent();
+        result.setId(rs.getLong(1));
+        result.setClient(clients == null ? readClient(rs) : sharedClient(rs));
+        result.setBook(books == null ? readBook(rs) : sharedBook(rs));
+        result.setStartDay(toLocalDate(rs.getDate(9)));
+        result.setEndDay(toLocalDate(rs.getDate(10)));
+        if (history) {
+            result.setReturnDay(toLocalDate(rs.getDate(11)));
+        }
+        return result;
+    }
+
+    private Client sharedClient(ResultSet rs) throws SQLException {
+        Client client = clients.get(rs.getLong(2));
+        if (client == null) {
+            client = readClient(rs);
+            clients.put(client.getId(), client);
+        }
+        return client;
+    }
+
+    private Book sharedBook(ResultSet rs) throws SQLException {
+        Book book = books.get(rs.getLong(5));
+        if (book == null) {
+            book = readBook(rs);
+            books.put(book.getId(), book);
+        }
+        return book;
+    }
+
+    private LocalDate toLocalDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        if (days == null) {
+            return date.toLocalDate();
+        }
+        return days.computeIfAbsent(date, Date::toLocalDate);
+    }
+
+    private static Client readClient(ResultSet rs) throws SQLException {
+        Client client = new Client();
+        client.setId(rs.getLong(2));
+        client.setName(rs.getString(3));
+        client.setSurname(rs.getString(4));
+        return client;
+    }
+
+    private static Book readBook(ResultSet rs) throws SQLException {
+        Book book = new Book();
+        book.setId(rs.getLong(5));
+        book.setTitle(rs.getString(6));
+        book.setAuthor(rs.getString(7));
+        book.setYearOfPublication(rs.getInt(8));
+        return book;
+    }
+}
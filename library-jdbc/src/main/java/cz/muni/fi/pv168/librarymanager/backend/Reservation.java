@@ -0,0 +1,43 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.time.LocalDate;
+
+/**
+ * Request for a rent of given length starting as soon as possible, see
+ * {@link BookAvailabilityIndex#planReservations(Long, java.util.List)}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class Reservation {
+
+    private final LocalDate earliestStart;
+    private final int days;
+
+    /**
+     * @param earliestStart the earliest day the rent can start
+     * @param days positive length of the rent in days
+     */
+    public Reservation(LocalDate earliestStart, int days) {
+        if (earliestStart == null) {
+            throw new IllegalArgumentException("earliestStart is null");
+        }
+        if (days <= 0) {
+            throw new IllegalArgumentException("days is not positive number");
+        }
+        this.earliestStart = earliestStart;
+        this.days = days;
+    }
+
+    public LocalDate getEarliestStart() {
+        return earliestStart;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" + "earliestStart=" + earliestStart + ", days=" + days + '}';
+    }
+}
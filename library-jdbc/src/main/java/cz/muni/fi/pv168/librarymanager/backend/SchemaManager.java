@@ -0,0 +1,209 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import cz.muni.fi.pv168.librarymanager.common.SqlScript;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the database schema and upgrades it to the latest version.
+ * Applied version is stored in SCHEMA_VERSION table, databases created
+ * before the table existed are recognized as version 1.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class SchemaManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(
+            SchemaManager.class.getName());
+
+    /**
+     * Scripts upgrading schema, script on index i upgrades schema
+     * from version i to version i + 1.
+     */
+    private static final String[] MIGRATIONS = {
+        "createTables.sql",
+        "createIndexes.sql",
+        "createChangeLog.sql",
+        "createSearchKeys.sql",
+        "createRentArchive.sql"
+    };
+
+    public static final int LATEST_VERSION = MIGRATIONS.length;
+
+    /**
+     * Version adding foreign keys from rents to clients and books
+     */
+    private static final int FOREIGN_KEYS_VERSION = 2;
+
+    /**
+     * Maximal number of reported rents of missing clients or books
+     */
+    private static final int REPORTED_ORPHANS = 20;
+
+    /**
+     * SQL state of Derby for missing table
+     */
+    private static final String TABLE_NOT_FOUND = "42X05";
+
+    /**
+     * SQL state of Derby for missing schema, schema of the user is created
+     * with the first table
+     */
+    private static final String SCHEMA_NOT_FOUND = "42Y07";
+
+    private final DataSource dataSource;
+
+    public SchemaManager(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("dataSource is null");
+        }
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Method upgrade schema to the latest version, already applied
+     * migrations are skipped. Missing migrations and the new version are
+     * applied in one transaction, so failed upgrade leaves the schema
+     * unchanged. Triggers are then fired without changing any row, so
+     * that their compiled actions are stored. Up-to-date schema costs one
+     * query.
+     * @return number of applied migrations
+     * @throws ServiceFailureException when upgrade fails, e.g. because of
+     * rents of missing clients or books, which must be fixed by hand
+     */
+    public int updateSchema() {
+        Connection conn = null;
+        try {
+            conn = dataSource.getConnection();
+            int version = getSchemaVersion(conn);
+            if (version >= LATEST_VERSION) {
+                return 0;
+            }
+            conn.setAutoCommit(false);
+            for (int i = version; i < LATEST_VERSION; i++) {
+                if (i + 1 == FOREIGN_KEYS_VERSION) {
+                    checkNoOrphanRents(conn);
+                }
+                SqlScript.load(SchemaManager.class.getResource(MIGRATIONS[i])).execute(conn);
+            }
+            setSchemaVersion(conn, LATEST_VERSION);
+            conn.commit();
+            fireTriggers(conn);
+            logger.info("Database schema upgraded from version " + version
+                    + " to version " + LATEST_VERSION);
+            return LATEST_VERSION - version;
+        } catch (SQLException ex) {
+            String msg = "Error when upgrading database schema";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            if (conn != null) {
+                try {
+                    if (!conn.getAutoCommit()) {
+                        conn.rollback();
+                    }
+                } catch (SQLException ex) {
+                    logger.error("Error when rolling back schema upgrade", ex);
+                }
+            }
+            DBUtils.closeQuietly(conn);
+        }
+    }
+
+    private static void checkNoOrphanRents(Connection conn) throws SQLException {
+        List<Long> orphans = new ArrayList<>();
+        int count = 0;
+        try (Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery("SELECT id FROM rent "
+                    + "WHERE clientid NOT IN (SELECT id FROM client) "
+                    + "OR bookid NOT IN (SELECT id FROM book) ORDER BY id")) {
+            while (rs.next()) {
+                if (count++ < REPORTED_ORPHANS) {
+                    orphans.add(rs.getLong(1));
+                }
+            }
+        }
+        if (count > 0) {
+            String msg = "Database schema can not be upgraded to version "
+                    + FOREIGN_KEYS_VERSION + ", " + count
+                    + " rents have missing client or book, ids " + orphans
+                    + (count > orphans.size() ? " ..." : "");
+            logger.error(msg);
+            throw new ServiceFailureException(msg);
+        }
+    }
+
+    private static void fireTriggers(Connection conn) {
+        try {
+            SqlScript.load(SchemaManager.class.getResource("fireTriggers.sql")).execute(conn);
+        } catch (SQLException ex) {
+            // batch methods are slower until the triggers fire outside of them
+            logger.warn("Error when firing triggers after schema upgrade", ex);
+        } finally {
+            DBUtils.doRollbackQuietly(conn);
+        }
+    }
+
+    /**
+     * Method returns version of schema in database
+     * @return applied version, 0 for empty database
+     */
+    public int getSchemaVersion() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return getSchemaVersion(conn);
+        }
+    }
+
+    private static int getSchemaVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery("SELECT version FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException ex) {
+            if (SCHEMA_NOT_FOUND.equals(ex.getSQLState())) {
+                return 0;
+            }
+            if (!TABLE_NOT_FOUND.equals(ex.getSQLState())) {
+                throw ex;
+            }
+            return tableExists(conn, "BOOK") ? 1 : 0;
+        }
+    }
+
+    private static void setSchemaVersion(Connection conn, int version) throws SQLException {
+        if (!tableExists(conn, "SCHEMA_VERSION")) {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("CREATE TABLE \"SCHEMA_VERSION\" ("
+                        + "\"VERSION\" INTEGER NOT NULL)");
+            }
+        }
+        try (PreparedStatement st = conn.prepareStatement(
+                "UPDATE schema_version SET version = ?")) {
+            st.setInt(1, version);
+            if (st.executeUpdate() == 0) {
+                try (PreparedStatement insertSt = conn.prepareStatement(
+                        "INSERT INTO schema_version (version) VALUES (?)")) {
+                    insertSt.setInt(1, version);
+                    insertSt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        // tables of other users are in other schemas
+        try (ResultSet rs = conn.getMetaData().getTables(null, conn.getSchema(), table,
+                new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+/**
+ * Rent manager which answers {@link #findDelayedReturns()} from
+ * {@link OverdueTracker} instead of the database. Tracker is loaded when
+ * the manager is created and when the data source changes, rents created,
+ * changed, deleted and returned through this manager update it. Other
+ * methods are passed to the wrapped manager. Changes made to the database
+ * by other means are not visible until the tracker is loaded again.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class TrackingRentManager implements RentManager {
+
+    private final RentManager delegate;
+    private final OverdueTracker tracker;
+
+    /**
+     * @param delegate manager with data source set
+     */
+    public TrackingRentManager(RentManager delegate) {
+        this(delegate, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param delegate manager with data source set
+     * @param clock clock giving the day after which rents are overdue
+     */
+    public TrackingRentManager(RentManager delegate, Clock clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        }
+        this.delegate = delegate;
+        this.tracker = new OverdueTracker(clock);
+        tracker.load(delegate);
+    }
+
+    /**
+     * @return tracker of overdue rents, listeners can be added to it
+     */
+    public OverdueTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    public void createRent(Rent rent) {
+        delegate.createRent(rent);
+        tracker.put(rent);
+    }
+
+    @Override
+    public void updateRent(Rent rent) {
+        delegate.updateRent(rent);
+        tracker.putUpdated(rent);
+    }
+
+    @Override
+    public void deleteRent(Rent rent) {
+        Long id = rent == null ? null : rent.getId();
+        delegate.deleteRent(rent);
+        tracker.remove(id);
+    }
+
+    @Override
+    public void createRents(Collection<Rent> rents) {
+        delegate.createRents(rents);
+        rents.forEach(tracker::put);
+    }
+
+    @Override
+    public void updateRents(Collection<Rent> rents) {
+        delegate.updateRents(rents);
+        rents.forEach(tracker::putUpdated);
+    }
+
+    @Override
+    public void deleteRents(Collection<Rent> rents) {
+        delegate.deleteRents(rents);
+        rents.forEach(rent -> tracker.remove(rent.getId()));
+    }
+
+    @Override
+    public void returnRent(Rent rent) {
+        Long id = rent == null ? null : rent.getId();
+        delegate.returnRent(rent);
+        tracker.remove(id);
+    }
+
+    @Override
+    public List<Rent> findDelayedReturns() {
+        return tracker.findOverdue();
+    }
+
+    @Override
+    public Client findClientByRentBook(Book book) {
+        return delegate.findClientByRentBook(book);
+    }
+
+    @Override
+    public List<Book> findRentBooksByClient(Client client) {
+        return delegate.findRentBooksByClient(client);
+    }
+
+    @Override
+    public Rent getRent(Long id) {
+        return delegate.getRent(id);
+    }
+
+    @Override
+    public List<Rent> findAllRents() {
+        return delegate.findAllRents();
+    }
+
+    @Override
+    public List<Rent> findRentsAfter(Long lastId, int limit) {
+        return delegate.findRentsAfter(lastId, limit);
+    }
+
+    @Override
+    public void forEachRent(Consumer<? super Rent> consumer) {
+        delegate.forEachRent(consumer);
+    }
+
+    @Override
+    public List<Rent> findRents(RentQuery query) {
+        return delegate.findRents(query);
+    }
+
+    @Override
+    public int countRents(RentQuery query) {
+        return delegate.countRents(query);
+    }
+
+    @Override
+    public void setDataSource(DataSource dataSource) {
+        delegate.setDataSource(dataSource);
+        tracker.load(delegate);
+    }
+}
@@ -0,0 +1,112 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads records of comma separated values. Fields may be enclosed in double
+ * quotes, quoted fields may contain commas, line breaks and doubled quotes.
+ * Blank lines are skipped.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CsvReader implements Closeable {
+
+    private final BufferedReader reader;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    private long line = 1;
+    private long recordLine;
+
+    public CsvReader(Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("reader is null");
+        }
+        this.reader = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * @return fields of the next record or null at the end of input
+     * @throws IOException when reading fails
+     * @throws ValidationException when quoted field is not closed
+     */
+    public String[] readRecord() throws IOException {
+        int c = reader.read();
+        while (c == '\r' || c == '\n') {
+            skipLineBreak(c);
+            c = reader.read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new ValidationException("line " + recordLine + ": quoted field is not closed");
+                }
+                if (c == '"') {
+                    c = reader.read();
+                    if (c == '"') {
+                        field.append('"');
+                        c = reader.read();
+                    } else {
+                        quoted = false;
+                    }
+                    continue;
+                }
+                if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c != -1) {
+                    skipLineBreak(c);
+                }
+                fields.add(field.toString());
+                return fields.toArray(new String[fields.size()]);
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    /**
+     * Consumes rest of line break starting by the character.
+     */
+    private void skipLineBreak(int c) throws IOException {
+        line++;
+        if (c == '\r') {
+            reader.mark(1);
+            if (reader.read() != '\n') {
+                reader.reset();
+            }
+        }
+    }
+
+    /**
+     * @return number of line on which the last read record starts
+     */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
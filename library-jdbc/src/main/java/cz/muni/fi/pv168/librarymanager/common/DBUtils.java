@@ -1,12 +1,13 @@
 package cz.muni.fi.pv168.librarymanager.common;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
@@ -68,6 +69,24 @@ public class DBUtils {
         }
     }
 
+    /**
+     * Tells whether the statement failed because it deletes row referenced
+     * by foreign key, e.g. client or book with rents. Failed batch is
+     * reported with the cause of the failed statement.
+     * 
+     * @param ex exception thrown by the statement
+     * @return true for violated foreign key
+     */
+    public static boolean isForeignKeyViolation(SQLException ex) {
+        // This code is Derby specific!
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof SQLException && "23503".equals(((SQLException) t).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Extract key from given ResultSet.
      * 
@@ -91,30 +110,81 @@ public class DBUtils {
     }
 
     /**
-     * Reads SQL statements from file. SQL commands in file must be separated by 
-     * a semicolon.
+     * Locks table in exclusive mode and returns the greatest id in it. Used
+     * before batch insert, whose generated keys are then read by 
+     * {@link #getIdsInsertedAfter(Connection, String, long, int)}. The lock 
+     * is held until the end of the transaction.
      * 
-     * @param url url of the file
-     * @return array of command  strings
+     * @param conn connection with autocommit mode switched off
+     * @param table table name
+     * @return greatest id in the table or 0 when the table is empty
+     * @throws SQLException when operation fails
      */
-    private static String[] readSqlStatements(URL url) {
-        try {
-            char buffer[] = new char[256];
-            StringBuilder result = new StringBuilder();
-            InputStreamReader reader = new InputStreamReader(url.openStream(), "UTF-8");
-            while (true) {
-                int count = reader.read(buffer);
-                if (count < 0) {
-                    break;
+    public static long lockTableAndGetMaxId(Connection conn, String table) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("LOCK TABLE " + table + " IN EXCLUSIVE MODE");
+            try (ResultSet rs = st.executeQuery("SELECT MAX(id) FROM " + table)) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Returns ids generated by batch insert in the order of insertion. Derby
+     * returns only the last generated key for a batch, so the table must be
+     * locked by {@link #lockTableAndGetMaxId(Connection, String)} before
+     * the batch is executed.
+     * 
+     * @param conn connection holding exclusive lock of the table
+     * @param table table name
+     * @param lastId greatest id in the table before the batch insert
+     * @param count number of inserted rows
+     * @return generated ids in ascending order
+     * @throws SQLException when operation fails
+     */
+    public static List<Long> getIdsInsertedAfter(Connection conn, String table, 
+            long lastId, int count) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT id FROM " + table + " WHERE id > ? ORDER BY id")) {
+            st.setLong(1, lastId);
+            List<Long> result = new ArrayList<>(count);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getLong(1));
                 }
-                result.append(buffer, 0, count);
             }
-            return result.toString().split(";");
-        } catch (IOException ex) {
-            throw new RuntimeException("Cannot read " + url, ex);
+            if (result.size() != count) {
+                throw new ServiceFailureException("Internal integrity error: "
+                        + count + " rows inserted into " + table 
+                        + " but " + result.size() + " keys found");
+            }
+            return result;
         }
     }
-    
+
+    /**
+     * Checks update counts of executed batch. Otherwise appropriate exception 
+     * is thrown.
+     * 
+     * @param counts update counts returned by executeBatch
+     * @param entities entities of the batch in the same order
+     * @throws IllegalEntityException when some entity does not exist
+     * @throws ServiceFailureException when updates count is unexpected number
+     */
+    public static void checkBatchUpdatesCounts(int[] counts, List<?> entities) 
+            throws IllegalEntityException, ServiceFailureException {
+        if (counts.length != entities.size()) {
+            throw new ServiceFailureException("Internal integrity error: "
+                    + counts.length + " update counts for batch of " + entities.size());
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != Statement.SUCCESS_NO_INFO) {
+                checkUpdatesCount(counts[i], entities.get(i), false);
+            }
+        }
+    }
+
     /**
      * Try to execute script for creating tables. If tables already exist, 
      * appropriate exception is catched and ignored.
@@ -139,22 +209,23 @@ public class DBUtils {
     }
     
     /**
-     * Executes SQL script.
+     * Executes SQL script in one transaction, statements are sent to the
+     * database as one batch.
      * 
      * @param ds datasource
      * @param scriptUrl url of sql script to be executed
-     * @throws SQLException when operation fails
+     * @throws SQLException when operation fails, nothing is changed then
      */
     public static void executeSqlScript(DataSource ds, URL scriptUrl) throws SQLException {
+        SqlScript script = SqlScript.load(scriptUrl);
         Connection conn = null;
         try {
             conn = ds.getConnection();
-            for (String sqlStatement : readSqlStatements(scriptUrl)) {
-                if (!sqlStatement.trim().isEmpty()) {
-                    conn.prepareStatement(sqlStatement).executeUpdate();
-                }
-            }
+            conn.setAutoCommit(false);
+            script.execute(conn);
+            conn.commit();
         } finally {
+            doRollbackQuietly(conn);
             closeQuietly(conn);
         }
     }
@@ -0,0 +1,191 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates pooled data sources configured by properties. Besides connection
+ * properties (jdbc.url, jdbc.user, jdbc.password and optional jdbc.driver)
+ * following pool properties are recognized:
+ * <ul>
+ * <li>pool.initialSize, pool.minIdle, pool.maxIdle, pool.maxTotal - pool size</li>
+ * <li>pool.maxWaitMillis - how long to wait for free connection</li>
+ * <li>pool.poolPreparedStatements, pool.maxOpenPreparedStatements - caching
+ * of prepared statements per connection</li>
+ * <li>pool.validationQuery, pool.testOnBorrow, pool.testWhileIdle - validation
+ * of pooled connections</li>
+ * <li>pool.timeBetweenEvictionRunsMillis, pool.minEvictableIdleTimeMillis -
+ * eviction of idle connections</li>
+ * <li>pool.jmxName - name under which pool registers its MBean</li>
+ * </ul>
+ * Missing properties are set to the defaults of this class. Pools of
+ * client URLs (jdbc:derby://host:port/database) connect to a shared
+ * {@link DatabaseServer} by the client driver and have their own defaults:
+ * every connection costs a network handshake and each statement a round
+ * trip, so the pool is larger, keeps all its idle connections for longer
+ * and caches more prepared statements.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class DataSourceFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(
+            DataSourceFactory.class.getName());
+
+    /**
+     * Classpath location of default configuration
+     */
+    public static final String CONFIGURATION = "/dbconf.properties";
+
+    /**
+     * Prefix of URLs of the Derby client driver
+     */
+    public static final String CLIENT_URL_PREFIX = "jdbc:derby://";
+
+    private static final Properties DEFAULTS = new Properties();
+    private static final Properties REMOTE_DEFAULTS = new Properties(DEFAULTS);
+
+    static {
+        DEFAULTS.setProperty("pool.initialSize", "2");
+        DEFAULTS.setProperty("pool.minIdle", "2");
+        DEFAULTS.setProperty("pool.maxIdle", "8");
+        DEFAULTS.setProperty("pool.maxTotal", "8");
+        DEFAULTS.setProperty("pool.maxWaitMillis", "10000");
+        DEFAULTS.setProperty("pool.poolPreparedStatements", "true");
+        DEFAULTS.setProperty("pool.maxOpenPreparedStatements", "100");
+        DEFAULTS.setProperty("pool.validationQuery", "VALUES 1");
+        DEFAULTS.setProperty("pool.testOnBorrow", "false");
+        DEFAULTS.setProperty("pool.testWhileIdle", "true");
+        DEFAULTS.setProperty("pool.timeBetweenEvictionRunsMillis", "60000");
+        DEFAULTS.setProperty("pool.minEvictableIdleTimeMillis", "300000");
+
+        // driver is not found by URL when services of both drivers are merged
+        REMOTE_DEFAULTS.setProperty("jdbc.driver", "org.apache.derby.jdbc.ClientDriver");
+        REMOTE_DEFAULTS.setProperty("pool.initialSize", "4");
+        REMOTE_DEFAULTS.setProperty("pool.minIdle", "4");
+        REMOTE_DEFAULTS.setProperty("pool.maxIdle", "16");
+        REMOTE_DEFAULTS.setProperty("pool.maxTotal", "16");
+        REMOTE_DEFAULTS.setProperty("pool.maxOpenPreparedStatements", "200");
+        REMOTE_DEFAULTS.setProperty("pool.timeBetweenEvictionRunsMillis", "30000");
+        REMOTE_DEFAULTS.setProperty("pool.minEvictableIdleTimeMillis", "1800000");
+    }
+
+    private DataSourceFactory() {
+    }
+
+    /**
+     * Creates data source configured by {@link #CONFIGURATION} on classpath.
+     *
+     * @return pooled data source
+     * @throws ServiceFailureException when configuration can not be read
+     */
+    public static BasicDataSource createDataSource() {
+        return createDataSource(loadConfiguration());
+    }
+
+    /**
+     * Reads {@link #CONFIGURATION} on classpath.
+     *
+     * @return connection, pool and server properties
+     * @throws ServiceFailureException when configuration can not be read
+     */
+    public static Properties loadConfiguration() {
+        Properties configuration = new Properties();
+        try (InputStream in = DataSourceFactory.class.getResourceAsStream(CONFIGURATION)) {
+            if (in == null) {
+                throw new ServiceFailureException("Configuration " + CONFIGURATION + " not found");
+            }
+            configuration.load(in);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Cannot read " + CONFIGURATION, ex);
+        }
+        return configuration;
+    }
+
+    /**
+     * Creates data source configured by given properties.
+     *
+     * @param configuration connection and pool properties
+     * @return pooled data source
+     */
+    public static BasicDataSource createDataSource(Properties configuration) {
+        if (configuration == null) {
+            throw new IllegalArgumentException("configuration is null");
+        }
+        String url = configuration.getProperty("jdbc.url");
+        if (url == null) {
+            throw new IllegalArgumentException("jdbc.url is not configured");
+        }
+        Properties conf = new Properties(isRemote(url) ? REMOTE_DEFAULTS : DEFAULTS);
+        conf.putAll(configuration);
+
+        BasicDataSource ds = new BasicDataSource();
+        if (conf.getProperty("jdbc.driver") != null) {
+            ds.setDriverClassName(conf.getProperty("jdbc.driver"));
+        }
+        ds.setUrl(conf.getProperty("jdbc.url"));
+        ds.setUsername(conf.getProperty("jdbc.user"));
+        ds.setPassword(conf.getProperty("jdbc.password"));
+
+        ds.setInitialSize(intProperty(conf, "pool.initialSize"));
+        ds.setMinIdle(intProperty(conf, "pool.minIdle"));
+        ds.setMaxIdle(intProperty(conf, "pool.maxIdle"));
+        ds.setMaxTotal(intProperty(conf, "pool.maxTotal"));
+        ds.setMaxWaitMillis(longProperty(conf, "pool.maxWaitMillis"));
+
+        ds.setPoolPreparedStatements(booleanProperty(conf, "pool.poolPreparedStatements"));
+        ds.setMaxOpenPreparedStatements(intProperty(conf, "pool.maxOpenPreparedStatements"));
+
+        String validationQuery = conf.getProperty("pool.validationQuery");
+        if (validationQuery != null && !validationQuery.trim().isEmpty()) {
+            ds.setValidationQuery(validationQuery);
+            ds.setTestOnBorrow(booleanProperty(conf, "pool.testOnBorrow"));
+            ds.setTestWhileIdle(booleanProperty(conf, "pool.testWhileIdle"));
+        }
+        ds.setTimeBetweenEvictionRunsMillis(longProperty(conf, "pool.timeBetweenEvictionRunsMillis"));
+        ds.setMinEvictableIdleTimeMillis(longProperty(conf, "pool.minEvictableIdleTimeMillis"));
+
+        if (conf.getProperty("pool.jmxName") != null) {
+            ds.setJmxName(conf.getProperty("pool.jmxName"));
+        }
+        logger.info("Created connection pool for " + ds.getUrl()
+                + " (maxTotal " + ds.getMaxTotal()
+                + ", pooled statements " + ds.isPoolPreparedStatements() + ")");
+        return ds;
+    }
+
+    /**
+     * @param url JDBC URL
+     * @return whether the URL connects through the network server
+     */
+    public static boolean isRemote(String url) {
+        return url.startsWith(CLIENT_URL_PREFIX);
+    }
+
+    /**
+     * Returns current usage of the pool.
+     *
+     * @param dataSource pooled data source
+     * @return snapshot of pool metrics
+     */
+    public static PoolStatistics getStatistics(BasicDataSource dataSource) {
+        return new PoolStatistics(dataSource.getNumActive(), dataSource.getNumIdle(),
+                dataSource.getMaxTotal());
+    }
+
+    private static int intProperty(Properties conf, String name) {
+        return Integer.parseInt(conf.getProperty(name).trim());
+    }
+
+    private static long longProperty(Properties conf, String name) {
+        return Long.parseLong(conf.getProperty(name).trim());
+    }
+
+    private static boolean booleanProperty(Properties conf, String name) {
+        return Boolean.parseBoolean(conf.getProperty(name).trim());
+    }
+}
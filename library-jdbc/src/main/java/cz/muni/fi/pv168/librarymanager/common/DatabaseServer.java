@@ -0,0 +1,197 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.net.InetAddress;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.derby.drda.NetworkServerControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Derby network server running in this process, so that several desks can
+ * share one database. The process starting the server opens the databases
+ * with the embedded engine, desks connect to it by client URLs returned by
+ * {@link #getClientUrl(String)}, including the starting process itself.
+ * Server is configured by properties:
+ * <ul>
+ * <li>server.start - true when this process starts the server</li>
+ * <li>server.host - address the server listens on, localhost by default;
+ * Derby authentication should be enabled before other hosts are allowed</li>
+ * <li>server.port - port of the server, {@link #DEFAULT_PORT} by default</li>
+ * </ul>
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class DatabaseServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseServer.class);
+
+    public static final String DEFAULT_HOST = "localhost";
+
+    public static final int DEFAULT_PORT = 1527;
+
+    /**
+     * How long to wait for the server to accept connections
+     */
+    public static final long START_TIMEOUT_MILLIS = 10000;
+
+    private static final long PING_MILLIS = 50;
+
+    private final String host;
+    private final int port;
+    private NetworkServerControl control;
+
+    /**
+     * @param host address the server listens on
+     * @param port port of the server
+     */
+    public DatabaseServer(String host, int port) {
+        if (host == null) {
+            throw new IllegalArgumentException("host is null");
+        }
+        if (port <= 0 || port > 65535) {
+            throw new IllegalArgumentException("port is out of range");
+        }
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Creates server configured by server properties.
+     *
+     * @param configuration server properties, usually with connection
+     * properties of {@link DataSourceFactory}
+     * @return server which is not started yet, null when this process does
+     * not start the server
+     */
+    public static DatabaseServer fromConfiguration(Properties configuration) {
+        if (configuration == null) {
+            throw new IllegalArgumentException("configuration is null");
+        }
+        if (!Boolean.parseBoolean(configuration.getProperty("server.start", "false").trim())) {
+            return null;
+        }
+        return new DatabaseServer(configuration.getProperty("server.host", DEFAULT_HOST).trim(),
+                Integer.parseInt(configuration.getProperty("server.port",
+                        String.valueOf(DEFAULT_PORT)).trim()));
+    }
+
+    /**
+     * Starts the server and waits until it accepts connections.
+     *
+     * @throws ServiceFailureException when the server does not start in
+     * {@link #START_TIMEOUT_MILLIS}, e.g. because the port is used
+     */
+    public synchronized void start() {
+        if (control != null) {
+            throw new IllegalStateException("server is already started");
+        }
+        try {
+            control = new NetworkServerControl(InetAddress.getByName(host), port);
+            if (ping()) {
+                // server of another process would be mistaken for this one
+                control = null;
+                throw new ServiceFailureException("Another database server runs on "
+                        + host + ":" + port);
+            }
+            // console output is turned off, failures are found by ping
+            control.start(null);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_TIMEOUT_MILLIS);
+            while (!ping()) {
+                if (System.nanoTime() > deadline) {
+                    throw new ServiceFailureException("Database server on " + host + ":" + port
+                            + " did not start in " + START_TIMEOUT_MILLIS + " ms");
+                }
+                Thread.sleep(PING_MILLIS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            stopQuietly();
+            throw new ServiceFailureException("Interrupted while starting database server", ex);
+        } catch (ServiceFailureException ex) {
+            stopQuietly();
+            logger.error(ex.getMessage(), ex);
+            throw ex;
+        } catch (Exception ex) {
+            stopQuietly();
+            String msg = "Error when starting database server on " + host + ":" + port;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+        logger.info("Database server started on " + host + ":" + port);
+    }
+
+    /**
+     * @return whether the server accepts connections
+     */
+    public synchronized boolean isRunning() {
+        return control != null && ping();
+    }
+
+    /**
+     * Stops the server, connected desks lose their connections. Databases
+     * stay open by the embedded engine of this process.
+     */
+    public synchronized void stop() {
+        if (control == null) {
+            return;
+        }
+        try {
+            control.shutdown();
+            logger.info("Database server on " + host + ":" + port + " stopped");
+        } catch (Exception ex) {
+            String msg = "Error when stopping database server on " + host + ":" + port;
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            control = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * @param database name or path of the database on the server
+     * @return URL of the database for the client driver
+     */
+    public String getClientUrl(String database) {
+        if (database == null) {
+            throw new IllegalArgumentException("database is null");
+        }
+        String address = "0.0.0.0".equals(host) ? DEFAULT_HOST : host;
+        return DataSourceFactory.CLIENT_URL_PREFIX + address + ":" + port + "/" + database;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private boolean ping() {
+        try {
+            control.ping();
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private void stopQuietly() {
+        if (control == null) {
+            return;
+        }
+        try {
+            control.shutdown();
+        } catch (Exception ex) {
+            logger.debug("Database server was not running", ex);
+        } finally {
+            control = null;
+        }
+    }
+}
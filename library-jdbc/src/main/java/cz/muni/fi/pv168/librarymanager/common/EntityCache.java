@@ -0,0 +1,181 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded thread safe cache of entities. When the cache is full the least
+ * recently used entry is evicted, entries older than time to live are
+ * evicted on access. Numbers of hits, misses and evictions are counted.
+ * Value loaded from database is stored by {@link #putLoaded} only when the
+ * cache was not written since the load started, so that a stale value does
+ * not replace a value written by a concurrent change.
+ *
+ * @param <K> type of key
+ * @param <V> type of cached value
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class EntityCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<K, Entry<V>> entries;
+
+    private long writes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxSize maximal number of cached entries
+     * @param ttl time to live of entry
+     * @param clock clock used to expire entries
+     */
+    public EntityCache(int maxSize, Duration ttl, Clock clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("max size is not positive number");
+        }
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("time to live is not positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("clock is null");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached value.
+     *
+     * @param key key of value
+     * @return value or null when value is not cached or has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt <= clock.millis()) {
+            entries.remove(key);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Stores value, replacing previous value of the key.
+     *
+     * @param key key of value
+     * @param value value to cache
+     */
+    public synchronized void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key or value is null");
+        }
+        writes++;
+        entries.put(key, new Entry<>(value, clock.millis() + ttlMillis));
+    }
+
+    /**
+     * @return stamp which has to be taken before value is loaded and passed
+     * to {@link #putLoaded(Object, Object, long)}
+     */
+    public synchronized long loadStamp() {
+        return writes;
+    }
+
+    /**
+     * Stores loaded value unless any value was put, invalidated or cleared
+     * since the stamp was taken. Dropped value is loaded again by the next
+     * miss.
+     *
+     * @param key key of value
+     * @param value value loaded after the stamp was taken
+     * @param stamp stamp returned by {@link #loadStamp()}
+     * @return whether the value was stored
+     */
+    public synchronized boolean putLoaded(K key, V value, long stamp) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key or value is null");
+        }
+        if (writes != stamp) {
+            return false;
+        }
+        entries.put(key, new Entry<>(value, clock.millis() + ttlMillis));
+        return true;
+    }
+
+    /**
+     * Removes value of the key from cache.
+     *
+     * @param key key of value
+     */
+    public synchronized void invalidate(K key) {
+        writes++;
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all values from cache.
+     */
+    public synchronized void clear() {
+        writes++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityCache{" + "size=" + entries.size() + ", maxSize=" + maxSize
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
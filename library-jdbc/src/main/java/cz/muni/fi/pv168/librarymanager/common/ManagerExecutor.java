@@ -0,0 +1,159 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * Executor of blocking manager calls. It has as many threads as the pool
+ * has connections, so calls do not wait for connections inside of the
+ * pool. Number of submitted calls which are not finished is limited,
+ * submitting thread waits when the limit is reached.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ManagerExecutor {
+
+    /**
+     * Number of waiting calls per thread allowed by {@link #forPool}
+     */
+    public static final int DEFAULT_QUEUED_PER_THREAD = 16;
+
+    private static final AtomicInteger EXECUTOR_COUNTER = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final int maxPending;
+
+    /**
+     * @param threads number of threads
+     * @param maxPending maximal number of submitted calls which are not
+     * finished, at least the number of threads
+     */
+    public ManagerExecutor(int threads, int maxPending) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads is not positive number");
+        }
+        if (maxPending < threads) {
+            throw new IllegalArgumentException("maxPending is less than threads");
+        }
+        this.maxPending = maxPending;
+        permits = new Semaphore(maxPending);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), newThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates executor with a thread for each connection of the pool.
+     *
+     * @param dataSource pooled data source
+     * @return new executor
+     */
+    public static ManagerExecutor forPool(BasicDataSource dataSource) {
+        int threads = dataSource.getMaxTotal() > 0
+                ? dataSource.getMaxTotal() : Runtime.getRuntime().availableProcessors();
+        return new ManagerExecutor(threads, threads * (DEFAULT_QUEUED_PER_THREAD + 1));
+    }
+
+    private static ThreadFactory newThreadFactory() {
+        String prefix = "manager-" + EXECUTOR_COUNTER.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Submits call, waits while the limit of pending calls is reached.
+     *
+     * @param call blocking call
+     * @return future completed by result of the call or by its exception,
+     * failed by {@link ServiceFailureException} when the submitting thread
+     * is interrupted while waiting
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        if (call == null) {
+            throw new IllegalArgumentException("call is null");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(
+                    new ServiceFailureException("Interrupted while waiting for executor", ex));
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.get());
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+        return future;
+    }
+
+    /**
+     * Submits call without result, see {@link #submit(Supplier)}.
+     *
+     * @param call blocking call
+     * @return future completed when the call finishes
+     */
+    public CompletableFuture<Void> run(Runnable call) {
+        if (call == null) {
+            throw new IllegalArgumentException("call is null");
+        }
+        return submit(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return number of submitted calls which are not finished
+     */
+    public int getPending() {
+        return maxPending - permits.availablePermits();
+    }
+
+    /**
+     * @return maximal number of pending calls
+     */
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * Finishes submitted calls and rejects new ones.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param timeout maximal time to wait
+     * @param unit unit of timeout
+     * @return whether all calls finished
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,201 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of {@link OperationStats} filled by instrumented managers and
+ * data sources. Instrumented objects check {@link #isEnabled()} on each
+ * call, disabled metrics only cost the check and the proxy call. Default
+ * registry is enabled by system property {@value #PROPERTY}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class Metrics implements MetricsMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(
+            Metrics.class.getName());
+
+    /**
+     * System property enabling the default registry
+     */
+    public static final String PROPERTY = "librarymanager.metrics";
+
+    /**
+     * Domain of registered MBeans
+     */
+    public static final String JMX_DOMAIN = "cz.muni.fi.pv168.librarymanager";
+
+    private static final Metrics DEFAULT = new Metrics(Boolean.getBoolean(PROPERTY));
+
+    private final ConcurrentMap<String, OperationStats> stats = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile MBeanServer server;
+
+    public Metrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return registry shared by the application
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns statistics of operation, they are created when they do not
+     * exist yet.
+     *
+     * @param name name of operation
+     * @return statistics of the operation
+     */
+    public OperationStats getStats(String name) {
+        OperationStats operation = stats.get(name);
+        if (operation != null) {
+            return operation;
+        }
+        OperationStats created = new OperationStats(name);
+        operation = stats.putIfAbsent(name, created);
+        if (operation != null) {
+            return operation;
+        }
+        MBeanServer mbeanServer = server;
+        if (mbeanServer != null) {
+            register(mbeanServer, created);
+        }
+        return created;
+    }
+
+    /**
+     * @return statistics of all operations ordered by name
+     */
+    public List<OperationStats> getAllStats() {
+        List<OperationStats> result = new ArrayList<>(stats.values());
+        result.sort(Comparator.comparing(OperationStats::getName));
+        return result;
+    }
+
+    /**
+     * Returns table of statistics of all operations, one operation per line.
+     */
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder(String.format("%10s %8s %10s %10s %10s %10s  %s%n",
+                "calls", "errors", "rows", "p50[us]", "p99[us]", "max[us]", "operation"));
+        for (OperationStats operation : getAllStats()) {
+            sb.append(String.format("%10d %8d %10d %10d %10d %10d  %s%n",
+                    operation.getCalls(), operation.getErrors(), operation.getRows(),
+                    operation.getP50Micros(), operation.getP99Micros(),
+                    operation.getMaxMicros(), operation.getName()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        stats.values().forEach(OperationStats::reset);
+    }
+
+    /**
+     * Registers this registry and statistics of all its operations, including
+     * operations added later, to the platform MBean server.
+     *
+     * @throws ServiceFailureException when registry can not be registered
+     */
+    public void registerMBeans() {
+        registerMBeans(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Registers this registry and statistics of all its operations, including
+     * operations added later, to the MBean server.
+     *
+     * @param mbeanServer MBean server
+     * @throws ServiceFailureException when registry can not be registered
+     */
+    public void registerMBeans(MBeanServer mbeanServer) {
+        if (mbeanServer == null) {
+            throw new IllegalArgumentException("mbeanServer is null");
+        }
+        try {
+            mbeanServer.registerMBean(this, new ObjectName(JMX_DOMAIN + ":type=Metrics"));
+        } catch (JMException ex) {
+            String msg = "Error when registering metrics MBean";
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+        server = mbeanServer;
+        stats.values().forEach(operation -> register(mbeanServer, operation));
+    }
+
+    private static void register(MBeanServer mbeanServer, OperationStats operation) {
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Operation,name="
+                    + ObjectName.quote(operation.getName()));
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(operation, name);
+            }
+        } catch (JMException ex) {
+            logger.warn("Statistics of " + operation.getName() + " were not registered", ex);
+        }
+    }
+
+    /**
+     * Returns proxy of the object recording every call of interface method
+     * as operation named by the interface and the method, for example
+     * BookManager.getBook. Returned collections are counted as rows.
+     *
+     * @param <T> type of interface
+     * @param type interface implemented by the object
+     * @param target instrumented object
+     * @return proxy implementing the interface
+     */
+    public <T> T instrument(Class<T> type, T target) {
+        if (type == null || !type.isInterface()) {
+            throw new IllegalArgumentException("type is not an interface");
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("target is null");
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new TimingHandler(this, type.getSimpleName(), target)));
+    }
+
+    /**
+     * Returns data source recording execution of every statement as
+     * operation named by its SQL. Rows changed by update and rows read from
+     * result set are counted. Connections obtained while metrics are
+     * disabled are not instrumented.
+     *
+     * @param dataSource instrumented data source
+     * @return instrumented data source
+     */
+    public DataSource instrument(DataSource dataSource) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("dataSource is null");
+        }
+        return SqlTimingHandler.instrument(this, dataSource);
+    }
+}
@@ -0,0 +1,17 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+/**
+ * Management interface of {@link Metrics}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public interface MetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,109 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of calls, failed calls, processed rows and latency of one
+ * operation, for example of a manager method or of an SQL statement.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class OperationStats implements OperationStatsMBean {
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records finished call of the operation.
+     *
+     * @param nanos duration of the call
+     * @param rowCount number of rows returned or changed by the call
+     * @param failed whether the call threw exception
+     */
+    public void record(long nanos, long rowCount, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * Adds rows which were read after the call finished, for example rows
+     * of result set.
+     *
+     * @param rowCount number of rows
+     */
+    public void addRows(long rowCount) {
+        rows.add(rowCount);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getPercentile(50));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getPercentile(99));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getMax());
+    }
+
+    /**
+     * @return histogram of call durations
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        rows.reset();
+        latency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "OperationStats{" + "name=" + name + ", calls=" + getCalls()
+                + ", errors=" + getErrors() + ", rows=" + getRows()
+                + ", p50Micros=" + getP50Micros() + ", p99Micros=" + getP99Micros()
+                + ", maxMicros=" + getMaxMicros() + '}';
+    }
+}
@@ -0,0 +1,25 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+/**
+ * Management interface of {@link OperationStats}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public interface OperationStatsMBean {
+
+    String getName();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getRows();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+
+    void reset();
+}
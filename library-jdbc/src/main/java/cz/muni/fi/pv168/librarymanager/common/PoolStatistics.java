@@ -0,0 +1,46 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+/**
+ * Snapshot of connection pool usage.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class PoolStatistics {
+
+    private final int numActive;
+    private final int numIdle;
+    private final int maxTotal;
+
+    public PoolStatistics(int numActive, int numIdle, int maxTotal) {
+        this.numActive = numActive;
+        this.numIdle = numIdle;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @return number of connections borrowed from the pool
+     */
+    public int getNumActive() {
+        return numActive;
+    }
+
+    /**
+     * @return number of connections waiting in the pool
+     */
+    public int getNumIdle() {
+        return numIdle;
+    }
+
+    /**
+     * @return maximal number of connections, negative for no limit
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics{" + "numActive=" + numActive + ", numIdle=" + numIdle
+                + ", maxTotal=" + maxTotal + '}';
+    }
+}
@@ -0,0 +1,160 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WHERE clause composed from conditions joined by AND, together with values
+ * of their parameters. Columns passed to the methods are inserted into SQL
+ * as they are, so they must never come from user input.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class SqlFilter {
+
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+
+    /**
+     * Adds condition with parameters.
+     *
+     * @param condition SQL condition with ? for each parameter
+     * @param values values of parameters
+     * @return this filter
+     */
+    public SqlFilter add(String condition, Object... values) {
+        conditions.add(condition);
+        for (Object value : values) {
+            parameters.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Adds condition matching column to the text, nothing is added when
+     * text is null.
+     *
+     * @param column column name
+     * @param text text to match
+     * @param mode how text is matched
+     * @return this filter
+     */
+    public SqlFilter match(String column, String text, MatchMode mode) {
+        if (text == null) {
+            return this;
+        }
+        switch (mode) {
+            case EXACT:
+                return add(column + " = ?", text);
+            case PREFIX:
+                return add(column + " LIKE ? ESCAPE '\\'", escapeLike(text) + "%");
+            case CONTAINS:
+                return add(column + " LIKE ? ESCAPE '\\'", "%" + escapeLike(text) + "%");
+            default:
+                throw new IllegalArgumentException("unknown match mode " + mode);
+        }
+    }
+
+    /**
+     * Adds condition column &gt;= from, nothing is added when from is null.
+     */
+    public SqlFilter atLeast(String column, Object from) {
+        return from == null ? this : add(column + " >= ?", from);
+    }
+
+    /**
+     * Adds condition column &lt;= to, nothing is added when to is null.
+     */
+    public SqlFilter atMost(String column, Object to) {
+        return to == null ? this : add(column + " <= ?", to);
+    }
+
+    /**
+     * @return WHERE clause starting with space or empty string when there
+     * is no condition
+     */
+    public String toWhereClause() {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Sets parameters of the conditions to the statement.
+     *
+     * @param st statement prepared from SQL containing the WHERE clause
+     * @param firstIndex index of the first parameter of the clause
+     * @return index of the parameter following the clause
+     * @throws SQLException when parameter can not be set
+     */
+    public int setParameters(PreparedStatement st, int firstIndex) throws SQLException {
+        int index = firstIndex;
+        for (Object value : parameters) {
+            if (value instanceof LocalDate) {
+                st.setDate(index++, Date.valueOf((LocalDate) value));
+            } else {
+                st.setObject(index++, value);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns OFFSET and FETCH clause with parameters set by
+     * {@link #setPageParameters(PreparedStatement, int, int, int)}.
+     *
+     * @param limit maximal number of rows, 0 for no limit
+     * @return clause starting with space
+     */
+    public static String pageClause(int limit) {
+        return limit == 0 ? " OFFSET ? ROWS" : " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    }
+
+    /**
+     * Sets parameters of the clause returned by {@link #pageClause(int)}.
+     *
+     * @param st statement prepared from SQL containing the clause
+     * @param index index of the first parameter of the clause
+     * @param offset number of skipped rows
+     * @param limit maximal number of rows, 0 for no limit
+     * @throws SQLException when parameter can not be set
+     */
+    public static void setPageParameters(PreparedStatement st, int index,
+            int offset, int limit) throws SQLException {
+        st.setInt(index, offset);
+        if (limit != 0) {
+            st.setInt(index + 1, limit);
+        }
+    }
+
+    /**
+     * Escapes wildcards of LIKE pattern by backslash.
+     *
+     * @param text text to escape
+     * @return text matched literally by LIKE ... ESCAPE '\'
+     */
+    public static String escapeLike(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            if (c == '%' || c == '_' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * How text is compared to column value
+     */
+    public enum MatchMode {
+        /** value equals to text */
+        EXACT,
+        /** value starts with text, can use index of the column */
+        PREFIX,
+        /** value contains text anywhere */
+        CONTAINS
+    }
+}
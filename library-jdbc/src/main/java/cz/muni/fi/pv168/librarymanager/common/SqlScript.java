@@ -0,0 +1,132 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SQL script split to statements. Statements are separated by semicolons
+ * outside of quotes and comments, comments are removed. Scripts loaded
+ * from URL are cached, so each script is read once.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public final class SqlScript {
+
+    private static final ConcurrentMap<String, SqlScript> CACHE = new ConcurrentHashMap<>();
+
+    private final List<String> statements;
+
+    private SqlScript(List<String> statements) {
+        this.statements = Collections.unmodifiableList(statements);
+    }
+
+    /**
+     * @param url URL of UTF-8 script, usually a classpath resource
+     * @return parsed script
+     * @throws ServiceFailureException when script cannot be read
+     */
+    public static SqlScript load(URL url) {
+        if (url == null) {
+            throw new IllegalArgumentException("url is null");
+        }
+        return CACHE.computeIfAbsent(url.toExternalForm(), key -> parse(read(url)));
+    }
+
+    private static String read(URL url) {
+        try (InputStream in = url.openStream();
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) >= 0) {
+                text.append(buffer, 0, count);
+            }
+            return text.toString();
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Cannot read " + url, ex);
+        }
+    }
+
+    /**
+     * @param text SQL script
+     * @return script with statements of the text
+     */
+    public static SqlScript parse(String text) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder statement = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+                while (i < length && text.charAt(i) != '\n') {
+                    i++;
+                }
+                statement.append(' ');
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                statement.append(' ');
+            } else if (c == '\'' || c == '"') {
+                // doubled quote inside of quotes is read as two quoted parts
+                int end = text.indexOf(c, i + 1);
+                end = end < 0 ? length : end + 1;
+                statement.append(text, i, end);
+                i = end;
+            } else if (c == ';') {
+                addStatement(statements, statement);
+                i++;
+            } else {
+                statement.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, statement);
+        return new SqlScript(statements);
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder statement) {
+        String sql = statement.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        statement.setLength(0);
+    }
+
+    /**
+     * @return statements of the script without separators
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * Executes statements as one batch. Transaction is not committed.
+     *
+     * @param conn connection
+     * @throws SQLException when some statement fails
+     */
+    public void execute(Connection conn) throws SQLException {
+        if (statements.isEmpty()) {
+            return;
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String sql : statements) {
+                st.addBatch(sql);
+            }
+            st.executeBatch();
+        }
+    }
+}
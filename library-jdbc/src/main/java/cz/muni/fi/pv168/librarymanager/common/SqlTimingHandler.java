@@ -0,0 +1,136 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import javax.sql.DataSource;
+
+/**
+ * Invocation handlers of JDBC proxies created by
+ * {@link Metrics#instrument(DataSource)}. Data source wraps connections,
+ * connections wrap statements and statements wrap result sets.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+class SqlTimingHandler {
+
+    private SqlTimingHandler() {
+    }
+
+    static DataSource instrument(Metrics metrics, DataSource dataSource) {
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            Object result = TimingHandler.invokeTarget(dataSource, method, args);
+            if (result instanceof Connection && metrics.isEnabled()) {
+                return proxy(Connection.class, new ConnectionHandler(metrics, (Connection) result));
+            }
+            return result;
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static String nameOf(String sql) {
+        return "SQL " + sql.trim().replaceAll("\\s+", " ");
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+
+        private final Metrics metrics;
+        private final Connection target;
+
+        ConnectionHandler(Metrics metrics, Connection target) {
+            this.metrics = metrics;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TimingHandler.invokeTarget(target, method, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+            // prepared statements are recorded under their SQL, plain
+            // statements under SQL passed to execute methods
+            OperationStats operation = args != null && args.length > 0 && args[0] instanceof String
+                    ? metrics.getStats(nameOf((String) args[0])) : null;
+            return proxy(method.getReturnType(), new StatementHandler(metrics, operation, result));
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+
+        private final Metrics metrics;
+        private final OperationStats prepared;
+        private final Object target;
+
+        StatementHandler(Metrics metrics, OperationStats prepared, Object target) {
+            this.metrics = metrics;
+            this.prepared = prepared;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute") || !metrics.isEnabled()) {
+                return TimingHandler.invokeTarget(target, method, args);
+            }
+            OperationStats operation = args != null && args.length > 0 && args[0] instanceof String
+                    ? metrics.getStats(nameOf((String) args[0])) : prepared;
+            if (operation == null) {
+                return TimingHandler.invokeTarget(target, method, args);
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            Object result = null;
+            try {
+                result = TimingHandler.invokeTarget(target, method, args);
+                failed = false;
+            } finally {
+                operation.record(System.nanoTime() - start, rowsOf(result), failed);
+            }
+            if (result instanceof ResultSet) {
+                return proxy(ResultSet.class, new ResultSetHandler(operation, (ResultSet) result));
+            }
+            return result;
+        }
+
+        private static long rowsOf(Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                return Math.max(((Number) result).longValue(), 0);
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+
+        private final OperationStats operation;
+        private final ResultSet target;
+
+        ResultSetHandler(OperationStats operation, ResultSet target) {
+            this.operation = operation;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TimingHandler.invokeTarget(target, method, args);
+            if (Boolean.TRUE.equals(result) && "next".equals(method.getName())) {
+                operation.addRows(1);
+            }
+            return result;
+        }
+    }
+}
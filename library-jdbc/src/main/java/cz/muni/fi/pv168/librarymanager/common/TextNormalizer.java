@@ -0,0 +1,69 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Folds text for searching. Letters are lowercased and diacritics are
+ * removed, so "Žluťoučký kůň" and "zlutoucky kun" are equal. Words are
+ * maximal runs of letters and digits.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * @param text text or null
+     * @return lowercase text without diacritics, empty for null
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+                return decomposed.replaceAll("\\p{M}+", "").toLowerCase(Locale.ROOT);
+            }
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param value value of column or null
+     * @return normalized value kept in the search key column of the value,
+     * null for null
+     */
+    public static String toKey(String value) {
+        return value == null ? null : normalize(value);
+    }
+
+    /**
+     * @param text text or null
+     * @return normalized words of the text in their order
+     */
+    public static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(normalized.substring(start));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,69 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Invocation handler of proxies created by
+ * {@link Metrics#instrument(Class, Object)}.
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+class TimingHandler implements InvocationHandler {
+
+    private final Metrics metrics;
+    private final String prefix;
+    private final Object target;
+    private final ConcurrentMap<Method, OperationStats> stats = new ConcurrentHashMap<>();
+
+    TimingHandler(Metrics metrics, String prefix, Object target) {
+        this.metrics = metrics;
+        this.prefix = prefix;
+        this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (!metrics.isEnabled() || method.getDeclaringClass() == Object.class) {
+            return invokeTarget(target, method, args);
+        }
+        OperationStats operation = stats.computeIfAbsent(method,
+                m -> metrics.getStats(prefix + "." + m.getName()));
+        long start = System.nanoTime();
+        boolean failed = true;
+        Object result = null;
+        try {
+            result = invokeTarget(target, method, args);
+            failed = false;
+            return result;
+        } finally {
+            operation.record(System.nanoTime() - start, rowsOf(result), failed);
+        }
+    }
+
+    /**
+     * Invokes method on target, exception thrown by the method is rethrown
+     * without wrapping.
+     */
+    static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result == null || result instanceof Number || result instanceof Boolean) {
+            return 0;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Schema version 3: committed changes of books, clients and rents are
+ * written to CHANGE_LOG by triggers, so processes sharing the database
+ * learn about changes of each other by reading new rows of the log, see
+ * ChangeFeedPoller. Ids of the log grow in the order of inserts and
+ * readers wait for uncommitted rows, so no change is skipped.
+ */
+
+CREATE TABLE "CHANGE_LOG" (
+    "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    "ENTITYTYPE" VARCHAR(10) NOT NULL,
+    "CHANGETYPE" VARCHAR(10) NOT NULL,
+    "ENTITYID" BIGINT NOT NULL,
+    "CHANGEDAT" TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX "CHANGE_LOG_CHANGEDAT" ON "CHANGE_LOG" ("CHANGEDAT");
+
+CREATE TRIGGER "BOOK_CREATED" AFTER INSERT ON "BOOK"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'BOOK', 'CREATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "BOOK_UPDATED" AFTER UPDATE ON "BOOK"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'BOOK', 'UPDATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "BOOK_DELETED" AFTER DELETE ON "BOOK"
+    REFERENCING OLD TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'BOOK', 'DELETED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "CLIENT_CREATED" AFTER INSERT ON "CLIENT"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'CLIENT', 'CREATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "CLIENT_UPDATED" AFTER UPDATE ON "CLIENT"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'CLIENT', 'UPDATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "CLIENT_DELETED" AFTER DELETE ON "CLIENT"
+    REFERENCING OLD TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'CLIENT', 'DELETED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "RENT_CREATED" AFTER INSERT ON "RENT"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'RENT', 'CREATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "RENT_UPDATED" AFTER UPDATE ON "RENT"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'RENT', 'UPDATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "RENT_DELETED" AFTER DELETE ON "RENT"
+    REFERENCING OLD TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'RENT', 'DELETED', "ID" FROM CHANGED;
@@ -0,0 +1,25 @@
+/**
+ * Schema version 2: secondary indexes and foreign keys for lookups
+ * used by the managers. Rents of missing clients or books are checked by
+ * SchemaManager before, clients and books with rents can not be deleted.
+ */
+
+ALTER TABLE "RENT" ADD CONSTRAINT "RENT_CLIENT_FK" FOREIGN KEY ("CLIENTID")
+    REFERENCES "CLIENT" ("ID");
+
+ALTER TABLE "RENT" ADD CONSTRAINT "RENT_BOOK_FK" FOREIGN KEY ("BOOKID")
+    REFERENCES "BOOK" ("ID");
+
+CREATE INDEX "RENT_BOOK_PERIOD_IDX" ON "RENT" ("BOOKID", "STARTDAY", "ENDDAY");
+
+CREATE INDEX "RENT_CLIENT_IDX" ON "RENT" ("CLIENTID");
+
+CREATE INDEX "RENT_ENDDAY_IDX" ON "RENT" ("ENDDAY");
+
+CREATE INDEX "BOOK_AUTHOR_IDX" ON "BOOK" ("AUTHOR");
+
+CREATE INDEX "BOOK_TITLE_IDX" ON "BOOK" ("TITLE");
+
+CREATE INDEX "CLIENT_SURNAME_IDX" ON "CLIENT" ("SURNAME");
+
+CREATE INDEX "CLIENT_NAME_IDX" ON "CLIENT" ("NAME");
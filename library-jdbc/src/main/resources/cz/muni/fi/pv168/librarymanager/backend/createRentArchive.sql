@@ -0,0 +1,28 @@
+/**
+ * Schema version 5: rents of returned books are moved from RENT to
+ * RENT_ARCHIVE, so RENT keeps only rents which were not returned yet and
+ * its queries do not slow down as the history grows. Rents which were not
+ * returned stay in RENT however old they are. Archived rent keeps its id.
+ * Moves are logged as deletes of rents by the RENT_DELETED trigger.
+ * Archived rents keep their books and clients, which can not be deleted
+ * then, so the history of a book or client is never lost silently.
+ */
+
+CREATE TABLE "RENT_ARCHIVE" (
+    "ID" BIGINT NOT NULL PRIMARY KEY,
+    "CLIENTID" BIGINT NOT NULL,
+    "BOOKID" BIGINT NOT NULL,
+    "STARTDAY" DATE,
+    "ENDDAY" DATE,
+    "RETURNDAY" DATE
+);
+
+ALTER TABLE "RENT_ARCHIVE" ADD CONSTRAINT "RENT_ARCHIVE_CLIENT_FK" FOREIGN KEY ("CLIENTID")
+    REFERENCES "CLIENT" ("ID");
+
+ALTER TABLE "RENT_ARCHIVE" ADD CONSTRAINT "RENT_ARCHIVE_BOOK_FK" FOREIGN KEY ("BOOKID")
+    REFERENCES "BOOK" ("ID");
+
+CREATE INDEX "RENT_ARCHIVE_BOOK_PERIOD_IDX" ON "RENT_ARCHIVE" ("BOOKID", "STARTDAY", "ENDDAY");
+
+CREATE INDEX "RENT_ARCHIVE_CLIENT_IDX" ON "RENT_ARCHIVE" ("CLIENTID");
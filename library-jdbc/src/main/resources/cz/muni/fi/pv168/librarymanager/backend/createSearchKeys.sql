@@ -0,0 +1,48 @@
+/**
+ * Schema version 4: titles, authors and names of clients folded to lower
+ * case without diacritics by TextNormalizer, so that "Novák" is found by
+ * "novak" with index seek. Managers write the keys with every created or
+ * updated row, existing rows are filled here. Update triggers are dropped
+ * while the keys are filled, the rows do not change for readers of
+ * CHANGE_LOG.
+ */
+
+ALTER TABLE "BOOK" ADD COLUMN "AUTHORKEY" VARCHAR(255);
+
+ALTER TABLE "BOOK" ADD COLUMN "TITLEKEY" VARCHAR(255);
+
+ALTER TABLE "CLIENT" ADD COLUMN "NAMEKEY" VARCHAR(255);
+
+ALTER TABLE "CLIENT" ADD COLUMN "SURNAMEKEY" VARCHAR(255);
+
+CREATE FUNCTION "FOLD_TEXT" ("TEXT" VARCHAR(255)) RETURNS VARCHAR(255)
+    LANGUAGE JAVA PARAMETER STYLE JAVA NO SQL RETURNS NULL ON NULL INPUT
+    EXTERNAL NAME 'cz.muni.fi.pv168.librarymanager.common.TextNormalizer.normalize';
+
+DROP TRIGGER "BOOK_UPDATED";
+
+DROP TRIGGER "CLIENT_UPDATED";
+
+UPDATE "BOOK" SET "AUTHORKEY" = "FOLD_TEXT"("AUTHOR"), "TITLEKEY" = "FOLD_TEXT"("TITLE");
+
+UPDATE "CLIENT" SET "NAMEKEY" = "FOLD_TEXT"("NAME"), "SURNAMEKEY" = "FOLD_TEXT"("SURNAME");
+
+DROP FUNCTION "FOLD_TEXT";
+
+CREATE TRIGGER "BOOK_UPDATED" AFTER UPDATE ON "BOOK"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'BOOK', 'UPDATED', "ID" FROM CHANGED;
+
+CREATE TRIGGER "CLIENT_UPDATED" AFTER UPDATE ON "CLIENT"
+    REFERENCING NEW TABLE AS CHANGED FOR EACH STATEMENT
+    INSERT INTO "CHANGE_LOG" ("ENTITYTYPE", "CHANGETYPE", "ENTITYID")
+    SELECT 'CLIENT', 'UPDATED', "ID" FROM CHANGED;
+
+CREATE INDEX "BOOK_AUTHORKEY_IDX" ON "BOOK" ("AUTHORKEY");
+
+CREATE INDEX "BOOK_TITLEKEY_IDX" ON "BOOK" ("TITLEKEY");
+
+CREATE INDEX "CLIENT_NAMEKEY_IDX" ON "CLIENT" ("NAMEKEY");
+
+CREATE INDEX "CLIENT_SURNAMEKEY_IDX" ON "CLIENT" ("SURNAMEKEY");
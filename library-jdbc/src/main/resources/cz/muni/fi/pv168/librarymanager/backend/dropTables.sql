@@ -3,6 +3,9 @@
  * Created: Mar 29, 2016
  */
 
+DROP TABLE "RENT_ARCHIVE";
+DROP TABLE "RENT";
 DROP TABLE "BOOK";
 DROP TABLE "CLIENT";
-DROP TABLE "RENT";
\ No newline at end of file
+DROP TABLE "CHANGE_LOG";
+DROP TABLE "SCHEMA_VERSION";
@@ -0,0 +1,22 @@
+/**
+ * Fires every trigger once without changing any row. Derby marks actions
+ * of earlier triggers of a table invalid when another trigger is created
+ * on the table. Invalid action is compiled again when the trigger fires,
+ * but it is stored only when the table is not locked, otherwise it is
+ * compiled at every firing. Batch methods lock the table.
+ */
+
+INSERT INTO "BOOK" ("AUTHOR", "TITLE", "YEAROFPUBLICATION")
+    SELECT "AUTHOR", "TITLE", "YEAROFPUBLICATION" FROM "BOOK" WHERE 1 = 0;
+UPDATE "BOOK" SET "TITLE" = "TITLE" WHERE 1 = 0;
+DELETE FROM "BOOK" WHERE 1 = 0;
+
+INSERT INTO "CLIENT" ("NAME", "SURNAME")
+    SELECT "NAME", "SURNAME" FROM "CLIENT" WHERE 1 = 0;
+UPDATE "CLIENT" SET "NAME" = "NAME" WHERE 1 = 0;
+DELETE FROM "CLIENT" WHERE 1 = 0;
+
+INSERT INTO "RENT" ("CLIENTID", "BOOKID", "STARTDAY", "ENDDAY")
+    SELECT "CLIENTID", "BOOKID", "STARTDAY", "ENDDAY" FROM "RENT" WHERE 1 = 0;
+UPDATE "RENT" SET "ENDDAY" = "ENDDAY" WHERE 1 = 0;
+DELETE FROM "RENT" WHERE 1 = 0;
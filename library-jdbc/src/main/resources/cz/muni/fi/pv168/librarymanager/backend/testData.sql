@@ -1,11 +1,11 @@
 
 
-INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION) VALUES ('Ernest Hemingway','Starec a more', 1965)
+INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION, AUTHORKEY, TITLEKEY) VALUES ('Ernest Hemingway','Starec a more', 1965, 'ernest hemingway', 'starec a more');
 
-INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION) VALUES ('Josef Skvorecky','Tankovy prapor', 1975)
+INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION, AUTHORKEY, TITLEKEY) VALUES ('Josef Skvorecky','Tankovy prapor', 1975, 'josef skvorecky', 'tankovy prapor');
 
-INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION) VALUES ('Umberto Ecco','Jmeno ruze', 1900)
+INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION, AUTHORKEY, TITLEKEY) VALUES ('Umberto Ecco','Jmeno ruze', 1900, 'umberto ecco', 'jmeno ruze');
 
-INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION) VALUES ('Ludwig','Konec prokrastinace', 2012)
+INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION, AUTHORKEY, TITLEKEY) VALUES ('Ludwig','Konec prokrastinace', 2012, 'ludwig', 'konec prokrastinace');
 
-INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION) VALUES ('Bohumil Hrabal','Postriziny', 1965)
+INSERT INTO BOOK (AUTHOR, TITLE, YEAROFPUBLICATION, AUTHORKEY, TITLEKEY) VALUES ('Bohumil Hrabal','Postriziny', 1965, 'bohumil hrabal', 'postriziny');
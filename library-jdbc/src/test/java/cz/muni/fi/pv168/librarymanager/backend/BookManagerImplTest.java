@@ -4,13 +4,20 @@ import java.sql.SQLException;
 import javax.sql.DataSource;
 import cz.muni.fi.pv168.librarymanager.common.DBUtils;
 import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
+import cz.muni.fi.pv168.librarymanager.common.ManagerExecutor;
 import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
 import cz.muni.fi.pv168.librarymanager.common.ValidationException;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import static java.time.Month.MARCH;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.After;
 import org.junit.Before;
@@ -52,7 +59,7 @@ public class BookManagerImplTest {
     @Before
     public void setUp() throws SQLException {
         dataSource = prepareDataSource();
-        DBUtils.executeSqlScript(dataSource, BookManager.class.getResource("createTables.sql"));
+        new SchemaManager(dataSource).updateSchema();
         manager = new BookManagerImpl(prepareClockMock(NOW));
         manager.setDataSource(dataSource);
     }
@@ -106,6 +113,144 @@ public class BookManagerImplTest {
                 .containsOnly(bookPoe, bookHem);
     }
     
+    @Test
+    public void findBooksAfter() {
+        assertThat(manager.findBooksAfter(null, 10)).isEmpty();
+
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookHem = sampleHemBookBuilder().build();
+        Book bookRaven = samplePoeBookBuilder().title("Morella").build();
+
+        manager.createBook(bookPoe);
+        manager.createBook(bookHem);
+        manager.createBook(bookRaven);
+
+        assertThat(manager.findBooksAfter(null, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookPoe, bookHem);
+        assertThat(manager.findBooksAfter(bookHem.getId(), 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookRaven);
+        assertThat(manager.findBooksAfter(bookRaven.getId(), 2)).isEmpty();
+    }
+
+    @Test
+    public void asyncManagerPipelinesCalls() throws Exception {
+        ManagerExecutor executor = new ManagerExecutor(4, 8);
+        AsyncBookManager asyncManager = new AsyncBookManager(manager, executor);
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookHem = sampleHemBookBuilder().build();
+
+        CompletableFuture<Void> created = asyncManager.createBook(bookPoe)
+                .thenCompose(ignored -> asyncManager.createBook(bookHem));
+        CompletableFuture<Book> found = created
+                .thenCompose(ignored -> asyncManager.getBook(bookHem.getId()));
+        CompletableFuture<Integer> count = created
+                .thenCompose(ignored -> asyncManager.countBooks(new BookQuery()));
+        CompletableFuture<Void> invalid = asyncManager.createBook(null);
+
+        assertThat(found.get(10, TimeUnit.SECONDS)).isEqualToComparingFieldByField(bookHem);
+        assertThat(count.get(10, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThatThrownBy(invalid::join).hasCauseInstanceOf(IllegalArgumentException.class);
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBooksAfterWithZeroLimit() {
+        manager.findBooksAfter(null, 0);
+    }
+
+    @Test
+    public void forEachBook() {
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookHem = sampleHemBookBuilder().build();
+
+        manager.createBook(bookPoe);
+        manager.createBook(bookHem);
+
+        List<Book> streamed = new ArrayList<>();
+        manager.forEachBook(streamed::add);
+        assertThat(streamed)
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bookPoe, bookHem);
+    }
+
+    @Test
+    public void findBooksByQuery() {
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookHem = sampleHemBookBuilder().build();
+        Book bookMorella = samplePoeBookBuilder().title("Morella").yearOfPublication(2010).build();
+        manager.createBooks(Arrays.asList(bookPoe, bookHem, bookMorella));
+
+        assertThat(manager.findBooks(new BookQuery()
+                .author("Edgar", MatchMode.PREFIX)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookPoe, bookMorella);
+        assertThat(manager.findBooks(new BookQuery()
+                .title("moře", MatchMode.CONTAINS)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookHem);
+        assertThat(manager.findBooks(new BookQuery()
+                .yearOfPublication(2000, null)
+                .sortBy(BookQuery.SortColumn.YEAR_OF_PUBLICATION, true)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookMorella, bookHem);
+        assertThat(manager.findBooks(new BookQuery()
+                .sortBy(BookQuery.SortColumn.TITLE, false)
+                .page(1, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookMorella);
+        assertThat(manager.countBooks(new BookQuery()
+                .author("Edgar", MatchMode.PREFIX)
+                .page(0, 1))).isEqualTo(2);
+    }
+
+    @Test
+    public void findPagesOfOneQueryConcurrently() throws Exception {
+        ManagerExecutor executor = new ManagerExecutor(2, 8);
+        AsyncBookManager asyncManager = new AsyncBookManager(manager, executor);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            books.add(samplePoeBookBuilder().title("Title " + i).build());
+        }
+        manager.createBooks(books);
+        BookQuery query = new BookQuery().sortBy(BookQuery.SortColumn.TITLE, false);
+
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture<List<Book>> first = asyncManager.findBooks(query.page(0, 2));
+            CompletableFuture<List<Book>> second = asyncManager.findBooks(query.page(2, 2));
+
+            assertThat(first.get(10, TimeUnit.SECONDS))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactly(books.get(0), books.get(1));
+            assertThat(second.get(10, TimeUnit.SECONDS))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactly(books.get(2), books.get(3));
+        }
+        assertThat(query.getOffset()).isZero();
+        assertThat(query.getLimit()).isZero();
+        executor.shutdown();
+    }
+
+    @Test
+    public void findBooksMatchesWildcardsLiterally() {
+        Book bookPercent = samplePoeBookBuilder().title("100% Poe").build();
+        Book bookPoe = samplePoeBookBuilder().title("100 Poe").build();
+        manager.createBook(bookPercent);
+        manager.createBook(bookPoe);
+
+        assertThat(manager.findBooks(new BookQuery().title("100%", MatchMode.PREFIX)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bookPercent);
+        assertThat(manager.countBooks(new BookQuery().title("_00", MatchMode.CONTAINS)))
+                .isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBooksWithNullQuery() {
+        manager.findBooks(null);
+    }
+
     @Test
     public void findBooksByAuthor() {
         Book bookPoe = samplePoeBookBuilder().build();
@@ -130,6 +275,73 @@ public class BookManagerImplTest {
                 .containsOnly(bookPoe);
     }
     
+    @Test
+    public void findBooksByFoldedTitleAndAuthor() {
+        Book bookHem = sampleHemBookBuilder().build();
+        manager.createBook(bookHem);
+
+        assertThat(manager.findBooksByFoldedTitle("STAREC A MORE"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bookHem);
+        assertThat(manager.findBooksByFoldedAuthor("ernest hemingway"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bookHem);
+        assertThat(manager.findBooksByFoldedTitle("Starec")).isEmpty();
+
+        bookHem.setTitle("Komár");
+        manager.updateBooks(Arrays.asList(bookHem));
+        assertThat(manager.findBooksByFoldedTitle("komar")).hasSize(1);
+        assertThat(manager.findBooksByFoldedTitle("starec a more")).isEmpty();
+    }
+    
+    @Test
+    public void searchBooksInDatabase() {
+        Book havran = samplePoeBookBuilder().build();
+        Book starec = sampleHemBookBuilder().build();
+        manager.createBooks(Arrays.asList(havran, starec));
+
+        assertThat(manager.searchBooks("avr", 10)).extracting(Book::getId)
+                .containsExactly(havran.getId());
+        assertThat(manager.searchBooks("HEMING, moř", 10)).extracting(Book::getId)
+                .containsExactly(starec.getId());
+        assertThat(manager.searchBooks("poe hemingway", 10)).isEmpty();
+        assertThat(manager.searchBooks(" ,. ", 10)).isEmpty();
+    }
+
+    @Test
+    public void searchBooksInIndex() {
+        Book havran = samplePoeBookBuilder().build();
+        Book starec = sampleHemBookBuilder().build();
+        Book poeAuthor = new BookBuilder().author("Ernest Poems").title("Žluťoučký kůň")
+                .yearOfPublication(2000).build();
+        manager.createBooks(Arrays.asList(havran, starec, poeAuthor));
+        BookSearchIndex index = new BookSearchIndex();
+        manager.setSearchIndex(index);
+        index.load(manager);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(manager.searchBooks("zlutoucky KUN", 10)).extracting(Book::getId)
+                .containsExactly(poeAuthor.getId());
+        assertThat(manager.searchBooks("avr", 10)).extracting(Book::getId)
+                .containsExactly(havran.getId());
+        // exact word ranks above prefix
+        assertThat(manager.searchBooks("poe", 10)).extracting(Book::getId)
+                .containsExactly(havran.getId(), poeAuthor.getId());
+        assertThat(manager.searchBooks("ernest", 10)).extracting(Book::getId)
+                .containsExactly(starec.getId(), poeAuthor.getId());
+        assertThat(manager.searchBooks("ernest", 1)).extracting(Book::getId)
+                .containsExactly(starec.getId());
+
+        havran.setTitle("Zlatý kůň");
+        manager.updateBook(havran);
+        manager.deleteBook(poeAuthor);
+        assertThat(manager.searchBooks("kun", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(havran);
+        assertThat(manager.searchBooks("avr", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void createNullBook() {
         manager.createBook(null);
@@ -279,6 +491,74 @@ public class BookManagerImplTest {
 
     }
 
+    @Test
+    public void createBooks() {
+        manager.setBatchSize(2);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            books.add(samplePoeBookBuilder().title("Havran " + i).build());
+        }
+
+        manager.createBooks(books);
+
+        assertThat(books).extracting("id").doesNotContainNull().doesNotHaveDuplicates();
+        for (Book book : books) {
+            assertThat(manager.getBook(book.getId()))
+                    .isNotSameAs(book)
+                    .isEqualToComparingFieldByField(book);
+        }
+    }
+
+    @Test
+    public void createBooksWithInvalidBook() {
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookWithoutTitle = sampleHemBookBuilder().title(null).build();
+
+        expectedException.expect(ValidationException.class);
+        manager.createBooks(Arrays.asList(bookPoe, bookWithoutTitle));
+    }
+
+    @Test
+    public void updateBooks() {
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookHem = sampleHemBookBuilder().build();
+        manager.createBooks(Arrays.asList(bookPoe, bookHem));
+
+        bookPoe.setTitle("Morella");
+        bookHem.setYearOfPublication(1952);
+        manager.updateBooks(Arrays.asList(bookPoe, bookHem));
+
+        assertThat(manager.findAllBooks())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bookPoe, bookHem);
+    }
+
+    @Test
+    public void updateBooksWithNonExistingIdIsRolledBack() {
+        Book bookPoe = samplePoeBookBuilder().build();
+        manager.createBook(bookPoe);
+        Book bookNotInDB = sampleHemBookBuilder().id(bookPoe.getId() + 1).build();
+
+        bookPoe.setTitle("Morella");
+        assertThatThrownBy(() -> manager.updateBooks(Arrays.asList(bookPoe, bookNotInDB)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.getBook(bookPoe.getId()).getTitle()).isEqualTo("Havran");
+    }
+
+    @Test
+    public void deleteBooks() {
+        Book bookPoe = samplePoeBookBuilder().build();
+        Book bookHem = sampleHemBookBuilder().build();
+        Book bookRaven = samplePoeBookBuilder().title("Morella").build();
+        manager.createBooks(Arrays.asList(bookPoe, bookHem, bookRaven));
+
+        manager.deleteBooks(Arrays.asList(bookPoe, bookRaven));
+
+        assertThat(manager.findAllBooks())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(bookHem);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void deleteNullBook() {
         manager.deleteBook(null);
@@ -356,6 +636,16 @@ public class BookManagerImplTest {
         testExpectedServiceFailureException((bookManager) -> bookManager.findAllBooks());
     }
     
+    @Test
+    public void findBooksAfterWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bookManager) -> bookManager.findBooksAfter(null, 10));
+    }
+
+    @Test
+    public void forEachBookWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bookManager) -> bookManager.forEachBook(book -> {}));
+    }
+    
     @Test
     public void findBooksByTitleWithSqlExceptionThrown() throws SQLException {
         Book book = sampleHemBookBuilder().build();
@@ -371,4 +661,10 @@ public class BookManagerImplTest {
         testExpectedServiceFailureException((bookManager) -> 
                 bookManager.findBooksByAuthor(book.getAuthor()));
     }
+    
+    @Test
+    public void findBooksWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((bookManager) -> 
+                bookManager.findBooks(new BookQuery()));
+    }
 }
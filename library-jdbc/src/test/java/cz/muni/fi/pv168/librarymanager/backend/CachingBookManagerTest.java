@@ -0,0 +1,230 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.ValidationException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CachingBookManagerTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private DataSource dataSource;
+    private BookManager delegate;
+    private Clock clock;
+    private CachingBookManager manager;
+
+    private static DataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-test");
+        ds.setCreateDatabase("create");
+        return ds;
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = prepareDataSource();
+        new SchemaManager(dataSource).updateSchema();
+        BookManagerImpl impl = new BookManagerImpl(Clock.systemDefaultZone());
+        impl.setDataSource(dataSource);
+        delegate = spy(impl);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        manager = new CachingBookManager(delegate, 2, TTL, clock);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, BookManager.class.getResource("dropTables.sql"));
+    }
+
+    private Book createBookInDatabase(String title) {
+        Book book = new BookBuilder().author("Karel Čapek").title(title)
+                .yearOfPublication(1920).build();
+        delegate.createBook(book);
+        return book;
+    }
+
+    @Test
+    public void getBookIsLoadedOnlyOnce() {
+        Book book = createBookInDatabase("R.U.R.");
+
+        assertThat(manager.getBook(book.getId())).isEqualToComparingFieldByField(book);
+        assertThat(manager.getBook(book.getId())).isEqualToComparingFieldByField(book);
+
+        verify(delegate, times(1)).getBook(book.getId());
+        assertThat(manager.getCache().getMisses()).isEqualTo(1);
+        assertThat(manager.getCache().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachedBookCannotBeChangedByCaller() {
+        Book book = createBookInDatabase("R.U.R.");
+
+        manager.getBook(book.getId()).setTitle("Changed");
+
+        assertThat(manager.getBook(book.getId()).getTitle()).isEqualTo("R.U.R.");
+    }
+
+    @Test
+    public void getNonExistingBookIsNotCached() {
+        assertThat(manager.getBook(1L)).isNull();
+        assertThat(manager.getBook(1L)).isNull();
+
+        verify(delegate, times(2)).getBook(1L);
+        assertThat(manager.getCache().size()).isZero();
+    }
+
+    @Test
+    public void createdBookIsCached() {
+        Book book = new BookBuilder().author("Karel Čapek").title("Krakatit")
+                .yearOfPublication(1924).build();
+        manager.createBook(book);
+
+        assertThat(manager.getBook(book.getId())).isEqualToComparingFieldByField(book);
+        verify(delegate, never()).getBook(anyLong());
+    }
+
+    @Test
+    public void updatedBookIsWrittenToCache() {
+        Book book = createBookInDatabase("R.U.R.");
+        manager.getBook(book.getId());
+
+        book.setTitle("Válka s mloky");
+        manager.updateBook(book);
+
+        assertThat(manager.getBook(book.getId())).isEqualToComparingFieldByField(book);
+        verify(delegate, times(1)).getBook(book.getId());
+    }
+
+    @Test
+    public void failedUpdateInvalidatesCachedBook() {
+        Book book = createBookInDatabase("R.U.R.");
+        manager.getBook(book.getId());
+
+        book.setTitle(null);
+        assertThatThrownBy(() -> manager.updateBook(book))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(manager.getCache().size()).isZero();
+        assertThat(manager.getBook(book.getId()).getTitle()).isEqualTo("R.U.R.");
+    }
+
+    @Test
+    public void deletedBookIsRemovedFromCache() {
+        Book book = createBookInDatabase("R.U.R.");
+        manager.getBook(book.getId());
+
+        manager.deleteBook(book);
+
+        assertThat(manager.getBook(book.getId())).isNull();
+    }
+
+    @Test
+    public void batchMethodsUpdateCache() {
+        Book first = createBookInDatabase("R.U.R.");
+        Book second = createBookInDatabase("Krakatit");
+        manager.getBook(first.getId());
+        manager.getBook(second.getId());
+
+        first.setTitle("Válka s mloky");
+        manager.updateBooks(Arrays.asList(first));
+        assertThat(manager.getBook(first.getId()).getTitle()).isEqualTo("Válka s mloky");
+
+        manager.deleteBooks(Arrays.asList(second));
+        assertThat(manager.getBook(second.getId())).isNull();
+
+        List<Book> created = Arrays.asList(new BookBuilder().author("Karel Čapek")
+                .title("Bílá nemoc").yearOfPublication(1937).build());
+        manager.createBooks(created);
+        assertThat(manager.getBook(created.get(0).getId()))
+                .isEqualToComparingFieldByField(created.get(0));
+    }
+
+    @Test
+    public void leastRecentlyUsedBookIsEvicted() {
+        Book first = createBookInDatabase("R.U.R.");
+        Book second = createBookInDatabase("Krakatit");
+        Book third = createBookInDatabase("Bílá nemoc");
+
+        manager.getBook(first.getId());
+        manager.getBook(second.getId());
+        manager.getBook(first.getId());
+        manager.getBook(third.getId());
+
+        assertThat(manager.getCache().size()).isEqualTo(2);
+        assertThat(manager.getCache().getEvictions()).isEqualTo(1);
+        manager.getBook(first.getId());
+        manager.getBook(second.getId());
+        verify(delegate, times(1)).getBook(first.getId());
+        verify(delegate, times(2)).getBook(second.getId());
+    }
+
+    @Test
+    public void expiredBookIsLoadedAgain() {
+        Book book = createBookInDatabase("R.U.R.");
+        manager.getBook(book.getId());
+
+        when(clock.millis()).thenReturn(TTL.toMillis());
+        manager.getBook(book.getId());
+
+        verify(delegate, times(2)).getBook(book.getId());
+        assertThat(manager.getCache().getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void bookLoadedBeforeConcurrentUpdateIsNotCached() {
+        Book book = createBookInDatabase("R.U.R.");
+        Book changed = new BookBuilder().id(book.getId()).author("Karel Čapek")
+                .title("Válka s mloky").yearOfPublication(1936).build();
+        doAnswer(invocation -> {
+            Object loaded = invocation.callRealMethod();
+            manager.updateBook(changed);
+            return loaded;
+        }).doCallRealMethod().when(delegate).getBook(book.getId());
+
+        assertThat(manager.getBook(book.getId()).getTitle()).isEqualTo("R.U.R.");
+
+        assertThat(manager.getBook(book.getId())).isEqualToComparingFieldByField(changed);
+    }
+
+    @Test
+    public void bookLoadedBeforeConcurrentDeleteIsNotCached() {
+        Book book = createBookInDatabase("R.U.R.");
+        doAnswer(invocation -> {
+            Object loaded = invocation.callRealMethod();
+            manager.deleteBook(book);
+            return loaded;
+        }).doCallRealMethod().when(delegate).getBook(book.getId());
+
+        assertThat(manager.getBook(book.getId())).isNotNull();
+
+        assertThat(manager.getCache().size()).isZero();
+        assertThat(manager.getBook(book.getId())).isNull();
+    }
+
+    @Test
+    public void setDataSourceClearsCache() {
+        Book book = createBookInDatabase("R.U.R.");
+        manager.getBook(book.getId());
+
+        manager.setDataSource(dataSource);
+
+        assertThat(manager.getCache().size()).isZero();
+    }
+}
@@ -0,0 +1,216 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.ValidationException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CachingClientManagerTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private DataSource dataSource;
+    private ClientManager delegate;
+    private Clock clock;
+    private CachingClientManager manager;
+
+    private static DataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-test");
+        ds.setCreateDatabase("create");
+        return ds;
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = prepareDataSource();
+        new SchemaManager(dataSource).updateSchema();
+        delegate = spy(new ClientManagerImpl(dataSource));
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        manager = new CachingClientManager(delegate, 2, TTL, clock);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, ClientManager.class.getResource("dropTables.sql"));
+    }
+
+    private Client createClientInDatabase(String name, String surname) {
+        Client client = new ClientBuilder().name(name).surname(surname).build();
+        delegate.createClient(client);
+        return client;
+    }
+
+    @Test
+    public void getClientIsLoadedOnlyOnce() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+
+        assertThat(manager.getClient(client.getId())).isEqualToComparingFieldByField(client);
+        assertThat(manager.getClient(client.getId())).isEqualToComparingFieldByField(client);
+
+        verify(delegate, times(1)).getClient(client.getId());
+        assertThat(manager.getCache().getMisses()).isEqualTo(1);
+        assertThat(manager.getCache().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachedClientCannotBeChangedByCaller() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+
+        manager.getClient(client.getId()).setSurname("Changed");
+
+        assertThat(manager.getClient(client.getId()).getSurname()).isEqualTo("Jobs");
+    }
+
+    @Test
+    public void getNonExistingClientIsNotCached() {
+        assertThat(manager.getClient(1L)).isNull();
+        assertThat(manager.getClient(1L)).isNull();
+
+        verify(delegate, times(2)).getClient(1L);
+        assertThat(manager.getCache().size()).isZero();
+    }
+
+    @Test
+    public void createdClientIsCached() {
+        Client client = new ClientBuilder().name("Bill").surname("Gates").build();
+        manager.createClient(client);
+
+        assertThat(manager.getClient(client.getId())).isEqualToComparingFieldByField(client);
+        verify(delegate, never()).getClient(anyLong());
+    }
+
+    @Test
+    public void updatedClientIsWrittenToCache() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+        manager.getClient(client.getId());
+
+        client.setSurname("Wozniak");
+        manager.updateClient(client);
+
+        assertThat(manager.getClient(client.getId())).isEqualToComparingFieldByField(client);
+        verify(delegate, times(1)).getClient(client.getId());
+    }
+
+    @Test
+    public void failedUpdateInvalidatesCachedClient() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+        manager.getClient(client.getId());
+
+        client.setSurname(null);
+        assertThatThrownBy(() -> manager.updateClient(client))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(manager.getCache().size()).isZero();
+        assertThat(manager.getClient(client.getId()).getSurname()).isEqualTo("Jobs");
+    }
+
+    @Test
+    public void deletedClientIsRemovedFromCache() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+        manager.getClient(client.getId());
+
+        manager.deleteClient(client);
+
+        assertThat(manager.getClient(client.getId())).isNull();
+    }
+
+    @Test
+    public void batchMethodsUpdateCache() {
+        Client first = createClientInDatabase("Steve", "Jobs");
+        Client second = createClientInDatabase("Bill", "Gates");
+        manager.getClient(first.getId());
+        manager.getClient(second.getId());
+
+        first.setSurname("Wozniak");
+        manager.updateClients(Arrays.asList(first));
+        assertThat(manager.getClient(first.getId()).getSurname()).isEqualTo("Wozniak");
+
+        manager.deleteClients(Arrays.asList(second));
+        assertThat(manager.getClient(second.getId())).isNull();
+
+        List<Client> created = Arrays.asList(
+                new ClientBuilder().name("Linus").surname("Torvalds").build());
+        manager.createClients(created);
+        assertThat(manager.getClient(created.get(0).getId()))
+                .isEqualToComparingFieldByField(created.get(0));
+    }
+
+    @Test
+    public void leastRecentlyUsedClientIsEvicted() {
+        Client first = createClientInDatabase("Steve", "Jobs");
+        Client second = createClientInDatabase("Bill", "Gates");
+        Client third = createClientInDatabase("Linus", "Torvalds");
+
+        manager.getClient(first.getId());
+        manager.getClient(second.getId());
+        manager.getClient(first.getId());
+        manager.getClient(third.getId());
+
+        assertThat(manager.getCache().size()).isEqualTo(2);
+        assertThat(manager.getCache().getEvictions()).isEqualTo(1);
+        manager.getClient(first.getId());
+        manager.getClient(second.getId());
+        verify(delegate, times(1)).getClient(first.getId());
+        verify(delegate, times(2)).getClient(second.getId());
+    }
+
+    @Test
+    public void expiredClientIsLoadedAgain() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+        manager.getClient(client.getId());
+
+        when(clock.millis()).thenReturn(TTL.toMillis());
+        manager.getClient(client.getId());
+
+        verify(delegate, times(2)).getClient(client.getId());
+        assertThat(manager.getCache().getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void clientLoadedBeforeConcurrentUpdateIsNotCached() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+        Client changed = new ClientBuilder().id(client.getId())
+                .name("Steve").surname("Wozniak").build();
+        doAnswer(invocation -> {
+            Object loaded = invocation.callRealMethod();
+            manager.updateClient(changed);
+            return loaded;
+        }).doCallRealMethod().when(delegate).getClient(client.getId());
+
+        assertThat(manager.getClient(client.getId()).getSurname()).isEqualTo("Jobs");
+
+        assertThat(manager.getClient(client.getId())).isEqualToComparingFieldByField(changed);
+    }
+
+    @Test
+    public void clientLoadedBeforeConcurrentDeleteIsNotCached() {
+        Client client = createClientInDatabase("Steve", "Jobs");
+        doAnswer(invocation -> {
+            Object loaded = invocation.callRealMethod();
+            manager.deleteClient(client);
+            return loaded;
+        }).doCallRealMethod().when(delegate).getClient(client.getId());
+
+        assertThat(manager.getClient(client.getId())).isNotNull();
+
+        assertThat(manager.getCache().size()).isZero();
+        assertThat(manager.getClient(client.getId())).isNull();
+    }
+}
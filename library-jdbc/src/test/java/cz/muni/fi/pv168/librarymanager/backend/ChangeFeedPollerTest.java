@@ -0,0 +1,114 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.ChangeType;
+import cz.muni.fi.pv168.librarymanager.backend.ChangeEvent.EntityType;
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import static java.time.Month.MARCH;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ChangeFeedPollerTest {
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, MARCH, 13, 22, 00).atZone(ZoneId.of("UTC"));
+
+    private DataSource dataSource;
+    private ChangeEventBus bus;
+    private List<ChangeEvent> events;
+    private ChangeFeedPoller poller;
+    private BookManagerImpl bookManager;
+    private ClientManagerImpl clientManager;
+    private RentManagerImpl rentManager;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-test");
+        ds.setCreateDatabase("create");
+        dataSource = ds;
+        new SchemaManager(dataSource).updateSchema();
+        bus = new ChangeEventBus();
+        events = new CopyOnWriteArrayList<>();
+        bus.addListener(events::add);
+        poller = new ChangeFeedPoller(dataSource, bus);
+        Clock clock = Clock.fixed(NOW.toInstant(), NOW.getZone());
+        bookManager = new BookManagerImpl(clock);
+        bookManager.setDataSource(dataSource);
+        bookManager.setChangeEventBus(bus);
+        clientManager = new ClientManagerImpl(dataSource);
+        clientManager.setChangeEventBus(bus);
+        rentManager = new RentManagerImpl(clock);
+        rentManager.setDataSource(dataSource);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        poller.close();
+        DBUtils.executeSqlScript(dataSource, BookManager.class.getResource("dropTables.sql"));
+    }
+
+    @Test
+    public void managersPublishCommittedChanges() {
+        Book book = new BookBuilder().author("Edgar Allan Poe").title("Havran")
+                .yearOfPublication(1995).build();
+        bookManager.createBook(book);
+        book.setTitle("Krkavec");
+        bookManager.updateBook(book);
+        bookManager.deleteBook(book);
+
+        assertThat(events).extracting(ChangeEvent::getChangeType)
+                .containsExactly(ChangeType.CREATED, ChangeType.UPDATED, ChangeType.DELETED);
+        assertThat(events).extracting(ChangeEvent::getId).containsOnly(book.getId());
+        assertThat(events.get(1).getEntity()).isSameAs(book);
+    }
+
+    @Test
+    public void pollerPublishesAllLoggedChanges() {
+        assertThat(poller.poll()).isZero();
+        Client client = new ClientBuilder().name("Bruce").surname("Wayne").build();
+        clientManager.createClient(client);
+        Book book = new BookBuilder().author("Edgar Allan Poe").title("Havran")
+                .yearOfPublication(1995).build();
+        bookManager.createBook(book);
+
+        // manager without bus plays another process
+        Rent rent = new Rent();
+        rent.setClient(client);
+        rent.setBook(book);
+        rent.setStartDay(LocalDate.of(2016, MARCH, 20));
+        rent.setEndDay(LocalDate.of(2016, MARCH, 25));
+        rentManager.createRent(rent);
+        rentManager.deleteRent(rent);
+        clientManager.deleteClient(client);
+        events.clear();
+
+        // changes of this process are published again, applying them is idempotent
+        assertThat(poller.poll()).isEqualTo(5);
+        assertThat(events).extracting(ChangeEvent::getEntityType).containsExactly(
+                EntityType.CLIENT, EntityType.BOOK, EntityType.RENT, EntityType.RENT,
+                EntityType.CLIENT);
+        assertThat(events).extracting(ChangeEvent::getChangeType).containsExactly(
+                ChangeType.CREATED, ChangeType.CREATED, ChangeType.CREATED,
+                ChangeType.DELETED, ChangeType.DELETED);
+        assertThat(events.get(3).getId()).isEqualTo(rent.getId());
+        assertThat(events).extracting(ChangeEvent::getEntity).containsOnly((Object) null);
+        assertThat(poller.poll()).isZero();
+    }
+}
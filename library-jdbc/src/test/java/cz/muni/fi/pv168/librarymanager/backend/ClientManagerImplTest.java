@@ -1,7 +1,11 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
 import cz.muni.fi.pv168.librarymanager.common.*;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
@@ -34,7 +38,7 @@ public class ClientManagerImplTest {
     @Before
     public void setUp() throws SQLException {
         dataSource = prepareDataSource();
-        DBUtils.executeSqlScript(dataSource,ClientManager.class.getResource("createTables.sql"));
+        new SchemaManager(dataSource).updateSchema();
         manager = new ClientManagerImpl();
         manager.setDataSource(dataSource);      
     }
@@ -199,6 +203,142 @@ public class ClientManagerImplTest {
         assertThat(manager.getClient(client.getId())).isNotNull();
     }
     
+    @Test
+    public void createClients() {
+        manager.setBatchSize(2);
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            clients.add(sampleJaneClientBuilder().name("Jane " + i).build());
+        }
+        
+        manager.createClients(clients);
+        
+        assertThat(clients).extracting("id").doesNotContainNull().doesNotHaveDuplicates();
+        for (Client client : clients) {
+            assertThat(manager.getClient(client.getId()))
+                    .isNotSameAs(client)
+                    .isEqualToComparingFieldByField(client);
+        }
+    }
+    
+    @Test
+    public void updateClients() {
+        Client clientFemale = sampleJaneClientBuilder().build();
+        Client clientMale = samplePhilipClientBuilder().build();
+        manager.createClients(Arrays.asList(clientFemale, clientMale));
+        
+        clientFemale.setSurname("Nováková");
+        clientMale.setName("Filip");
+        manager.updateClients(Arrays.asList(clientFemale, clientMale));
+        
+        assertThat(manager.findAllClients())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(clientFemale, clientMale);
+    }
+    
+    @Test
+    public void updateClientsWithNullId() {
+        Client client = sampleJaneClientBuilder().build();
+        manager.createClient(client);
+        
+        expectedException.expect(IllegalEntityException.class);
+        manager.updateClients(Arrays.asList(client, samplePhilipClientBuilder().build()));
+    }
+    
+    @Test
+    public void deleteClients() {
+        Client clientFemale = sampleJaneClientBuilder().build();
+        Client clientMale = samplePhilipClientBuilder().build();
+        manager.createClients(Arrays.asList(clientFemale, clientMale));
+        
+        manager.deleteClients(Arrays.asList(clientFemale));
+        
+        assertThat(manager.findAllClients())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(clientMale);
+    }
+    
+    @Test
+    public void deleteClientsWithNonExistingIdIsRolledBack() {
+        Client client = sampleJaneClientBuilder().build();
+        manager.createClient(client);
+        Client clientNotInDB = samplePhilipClientBuilder().id(client.getId() + 1).build();
+        
+        assertThatThrownBy(() -> manager.deleteClients(Arrays.asList(client, clientNotInDB)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.getClient(client.getId())).isNotNull();
+    }
+    
+    @Test
+    public void findClientsByFoldedNameAndSurname() {
+        Client jane = sampleJaneClientBuilder().build();
+        Client philip = samplePhilipClientBuilder().build();
+        manager.createClient(jane);
+        manager.createClients(Arrays.asList(philip));
+
+        assertThat(manager.findClientsByFoldedSurname("blazkova"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(jane);
+        assertThat(manager.findClientsByFoldedSurname("BŘEZŇÁK"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(philip);
+        assertThat(manager.findClientsByFoldedName("JANE")).hasSize(1);
+        assertThat(manager.findClientsByFoldedSurname("Blaz")).isEmpty();
+
+        jane.setSurname("Nováková");
+        manager.updateClient(jane);
+        assertThat(manager.findClientsByFoldedSurname("novakova")).hasSize(1);
+        assertThat(manager.findClientsByFoldedSurname("blazkova")).isEmpty();
+    }
+
+    @Test
+    public void findClientsByPrefixInDatabase() {
+        Client jane = sampleJaneClientBuilder().build();
+        Client philip = samplePhilipClientBuilder().build();
+        manager.createClients(Arrays.asList(jane, philip));
+
+        assertThat(manager.findClientsByPrefix("ja", 10)).extracting(Client::getId)
+                .containsExactly(jane.getId());
+        assertThat(manager.findClientsByPrefix("BŘEZŇÁK  ph", 10)).extracting(Client::getId)
+                .containsExactly(philip.getId());
+        assertThat(manager.findClientsByPrefix("b", 1)).hasSize(1);
+        assertThat(manager.findClientsByPrefix("%", 10)).isEmpty();
+        assertThat(manager.findClientsByPrefix(" ", 10)).isEmpty();
+    }
+
+    @Test
+    public void findClientsByPrefixInIndex() {
+        Client jane = sampleJaneClientBuilder().build();
+        Client philip = samplePhilipClientBuilder().build();
+        Client janek = new ClientBuilder().name("Janek").surname("Philips").build();
+        manager.createClients(Arrays.asList(jane, philip, janek));
+        ClientTypeaheadIndex index = new ClientTypeaheadIndex();
+        manager.setTypeaheadIndex(index);
+        index.load(manager);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(manager.findClientsByPrefix("blaz", 10)).extracting(Client::getId)
+                .containsExactly(jane.getId());
+        // clients are ordered by the matching key
+        assertThat(manager.findClientsByPrefix("ja", 10)).extracting(Client::getId)
+                .containsExactly(jane.getId(), janek.getId());
+        assertThat(manager.findClientsByPrefix("jane ", 10)).extracting(Client::getId)
+                .containsExactly(jane.getId());
+        assertThat(manager.findClientsByPrefix("phil", 10)).extracting(Client::getId)
+                .containsExactly(philip.getId(), janek.getId());
+        assertThat(manager.findClientsByPrefix("phil", 1)).extracting(Client::getId)
+                .containsExactly(philip.getId());
+
+        philip.setName("Petr");
+        manager.updateClient(philip);
+        manager.deleteClient(janek);
+        assertThat(manager.findClientsByPrefix("phil", 10)).isEmpty();
+        assertThat(manager.findClientsByPrefix("breznak pe", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(philip);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void deleteNullClient() {
         manager.deleteClient(null);
@@ -233,6 +373,80 @@ public class ClientManagerImplTest {
                 .containsOnly(clientFemale, clientMale);
     }
     
+    @Test
+    public void findClientsAfter() {
+        assertThat(manager.findClientsAfter(null, 10)).isEmpty();
+        
+        Client clientFemale = sampleJaneClientBuilder().build();
+        Client clientMale = samplePhilipClientBuilder().build();
+        Client clientJan = samplePhilipClientBuilder().name("Jan").build();
+        
+        manager.createClient(clientFemale);
+        manager.createClient(clientMale);
+        manager.createClient(clientJan);
+        
+        assertThat(manager.findClientsAfter(null, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(clientFemale, clientMale);
+        assertThat(manager.findClientsAfter(clientMale.getId(), 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(clientJan);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void findClientsAfterWithNegativeLimit() {
+        manager.findClientsAfter(null, -1);
+    }
+    
+    @Test
+    public void forEachClient() {
+        Client clientFemale = sampleJaneClientBuilder().build();
+        Client clientMale = samplePhilipClientBuilder().build();
+        
+        manager.createClient(clientFemale);
+        manager.createClient(clientMale);
+        
+        List<Client> streamed = new ArrayList<>();
+        manager.forEachClient(streamed::add);
+        assertThat(streamed)
+                .usingFieldByFieldElementComparator()
+                .containsOnly(clientFemale, clientMale);
+    }
+
+    @Test
+    public void findClientsByQuery() {
+        Client clientJane = sampleJaneClientBuilder().build();
+        Client clientPhilip = samplePhilipClientBuilder().build();
+        Client clientJan = sampleJaneClientBuilder().name("Jan").surname("Novák").build();
+        manager.createClients(Arrays.asList(clientJane, clientPhilip, clientJan));
+        
+        assertThat(manager.findClients(new ClientQuery()
+                .name("Jan", MatchMode.PREFIX)
+                .sortBy(ClientQuery.SortColumn.SURNAME, false)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(clientJane, clientJan);
+        assertThat(manager.findClients(new ClientQuery()
+                .name("Jan", MatchMode.EXACT)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(clientJan);
+        assertThat(manager.findClients(new ClientQuery()
+                .surname("ň", MatchMode.CONTAINS)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(clientPhilip);
+        assertThat(manager.findClients(new ClientQuery()
+                .sortBy(ClientQuery.SortColumn.NAME, true)
+                .page(0, 2)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(clientPhilip, clientJane);
+        assertThat(manager.countClients(new ClientQuery())).isEqualTo(3);
+    }
+    
+    @Test
+    public void findClientsWithNegativeOffset() {
+        expectedException.expect(IllegalArgumentException.class);
+        manager.findClients(new ClientQuery().page(-1, 10));
+    }
+    
     @Test
     public void findCLientsByName() {
         Client client = samplePhilipClientBuilder().name("Jan").build();
@@ -312,6 +526,16 @@ public class ClientManagerImplTest {
         testExpectedServiceFailureException((clientManager) -> clientManager.findAllClients());
     }
     
+    @Test
+    public void findClientsAfterWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((clientManager) -> clientManager.findClientsAfter(null, 10));
+    }
+    
+    @Test
+    public void forEachClientWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((clientManager) -> clientManager.forEachClient(client -> {}));
+    }
+    
     @Test
     public void findClientsByNameWithSqlExceptionThrown() throws SQLException {
         Client client = sampleJaneClientBuilder().build();
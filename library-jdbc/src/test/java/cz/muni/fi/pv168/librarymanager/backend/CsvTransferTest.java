@@ -0,0 +1,142 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.IllegalEntityException;
+import cz.muni.fi.pv168.librarymanager.common.ValidationException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import static java.time.Month.MARCH;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class CsvTransferTest {
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, MARCH, 13, 22, 00).atZone(ZoneId.of("UTC"));
+
+    private DataSource dataSource;
+    private CsvImporter importer;
+    private CsvExporter exporter;
+    private BookManagerImpl bookManager;
+    private ClientManagerImpl clientManager;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-test");
+        ds.setCreateDatabase("create");
+        dataSource = ds;
+        new SchemaManager(dataSource).updateSchema();
+        Clock clock = Clock.fixed(NOW.toInstant(), NOW.getZone());
+        importer = new CsvImporter(dataSource, clock);
+        importer.setBatchSize(2);
+        importer.setParallelism(2);
+        exporter = new CsvExporter(dataSource);
+        bookManager = new BookManagerImpl(clock);
+        bookManager.setDataSource(dataSource);
+        clientManager = new ClientManagerImpl(dataSource);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, BookManager.class.getResource("dropTables.sql"));
+    }
+
+    @Test
+    public void importAndExportBooks() throws IOException, SQLException {
+        List<Long> progress = new ArrayList<>();
+        importer.setProgressListener(rows -> {
+            synchronized (progress) {
+                progress.add(rows);
+            }
+        });
+        String csv = "Title,Author,YearOfPublication\n"
+                + "Havran,Edgar Allan Poe,1995\r\n"
+                + "\"Stařec a moře\",\"Hemingway, Ernest\",2005\n"
+                + "\n"
+                + "\"Kniha \"\"smíchu\"\"\na zapomnění\",Milan Kundera,1981\n";
+
+        assertThat(importer.importBooks(new StringReader(csv))).isEqualTo(3);
+        assertThat(progress).hasSize(2).contains(3L);
+        assertThat(bookManager.findAllBooks()).extracting(Book::getAuthor)
+                .containsOnly("Edgar Allan Poe", "Hemingway, Ernest", "Milan Kundera");
+
+        StringWriter exported = new StringWriter();
+        assertThat(exporter.exportBooks(exported)).isEqualTo(3);
+        DBUtils.executeSqlScript(dataSource, BookManager.class.getResource("dropTables.sql"));
+        new SchemaManager(dataSource).updateSchema();
+
+        assertThat(importer.importBooks(new StringReader(exported.toString()))).isEqualTo(3);
+        assertThat(bookManager.findAllBooks()).extracting(Book::getTitle)
+                .containsOnly("Havran", "Stařec a moře", "Kniha \"smíchu\"\na zapomnění");
+    }
+
+    @Test
+    public void importAndExportClientsAndRents() throws IOException {
+        importer.importClients(new StringReader("id,name,surname\n7,Bruce,Wayne\n8,Steve,Rogers\n"));
+        importer.importBooks(new StringReader("author,title,yearofpublication\nPoe,Havran,1995\n"));
+        Client bruce = clientManager.findClientsByName("Bruce").get(0);
+        Book book = bookManager.findAllBooks().get(0);
+        String rents = "clientid,bookid,startday,endday\n"
+                + bruce.getId() + "," + book.getId() + ",2016-04-01,2016-04-10\n"
+                + bruce.getId() + "," + book.getId() + ",2016-04-11,2016-04-20\n";
+
+        assertThat(importer.importRents(new StringReader(rents))).isEqualTo(2);
+
+        StringWriter exported = new StringWriter();
+        assertThat(exporter.exportRents(exported)).isEqualTo(2);
+        assertThat(exported.toString()).startsWith("id,clientid,bookid,startday,endday\n")
+                .contains("," + bruce.getId() + "," + book.getId() + ",2016-04-11,2016-04-20\n");
+    }
+
+    @Test
+    public void invalidRowStopsImport() {
+        String csv = "author,title,yearofpublication\n"
+                + "Poe,Havran,1995\n"
+                + "Poe,,1995\n";
+
+        assertThatThrownBy(() -> importer.importBooks(new StringReader(csv)))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("line 3: book title is empty");
+        assertThatThrownBy(() -> importer.importBooks(new StringReader("author,title\n")))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("header has no column yearofpublication");
+        assertThatThrownBy(() -> importer.importBooks(new StringReader(
+                "author,title,yearofpublication\nPoe,Havran,old\n")))
+                .hasMessage("line 2: old is not a number");
+    }
+
+    @Test
+    public void overlappingRentsAreRejected() throws IOException {
+        importer.importClients(new StringReader("name,surname\nBruce,Wayne\n"));
+        importer.importBooks(new StringReader("author,title,yearofpublication\nPoe,Havran,1995\n"));
+        Long clientId = clientManager.findAllClients().get(0).getId();
+        Long bookId = bookManager.findAllBooks().get(0).getId();
+        String csv = "clientid,bookid,startday,endday\n"
+                + clientId + "," + bookId + ",2016-04-01,2016-04-10\n"
+                + clientId + "," + bookId + ",2016-04-05,2016-04-15\n";
+
+        assertThatThrownBy(() -> importer.importRents(new StringReader(csv)))
+                .isInstanceOf(IllegalEntityException.class);
+        RentManagerImpl rentManager = new RentManagerImpl(Clock.systemUTC());
+        rentManager.setDataSource(dataSource);
+        assertThat(rentManager.findAllRents()).isEmpty();
+    }
+}
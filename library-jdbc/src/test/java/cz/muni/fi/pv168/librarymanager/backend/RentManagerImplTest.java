@@ -1,11 +1,23 @@
 package cz.muni.fi.pv168.librarymanager.backend;
 
 import cz.muni.fi.pv168.librarymanager.common.*;
+import cz.muni.fi.pv168.librarymanager.common.SqlFilter.MatchMode;
 import java.sql.SQLException;
 import java.time.Clock;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
@@ -43,7 +55,7 @@ public class RentManagerImplTest {
     @Before
     public void setUp() throws SQLException {
         dataSource = prepareDataSource();
-        DBUtils.executeSqlScript(dataSource,RentManager.class.getResource("createTables.sql"));
+        new SchemaManager(dataSource).updateSchema();
         manager = new RentManagerImpl(prepareClockMock(NOW));
         manager.setDataSource(dataSource);      
         clientManager = new ClientManagerImpl();
@@ -146,6 +158,12 @@ public class RentManagerImplTest {
                 .isNull();
         assertThat(manager.findRentBooksByClient(clientDave))
                 .isEmpty();
+
+        // id of the rent differs from id of its client
+        Rent rentDave = sampleSteveRentsMorella().client(clientDave).build();
+        manager.createRent(rentDave);
+        assertThat(manager.getRent(rentDave.getId()))
+                .isEqualToComparingFieldByField(rentDave);
     }
     
     @Test(expected = IllegalArgumentException.class)
@@ -168,6 +186,13 @@ public class RentManagerImplTest {
         manager.createRent(sampleBruceRentsSea().book(null).build());
     }
     
+    @Test
+    public void createRentWithBookNotInDB() {
+        Rent rent = sampleBruceRentsSea().book(bookNotInDB).build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.createRent(rent);
+    }
+    
     @Test
     public void createRentInPast() {
         Rent rent = sampleBruceRentsSea()
@@ -233,6 +258,86 @@ public class RentManagerImplTest {
         manager.createRent(rentWithRentedBook);
     }
     
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch startGate = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    return task.call();
+                }));
+            }
+            startGate.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void createOverlappingRentsConcurrently() throws Exception {
+        int threads = 16;
+        int rentsPerThread = 10;
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Callable<Void>> desks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Client client = t % 2 == 0 ? clientBruce : clientSteve;
+            desks.add(() -> {
+                for (int i = 0; i < rentsPerThread; i++) {
+                    // all these periods overlap each other
+                    Rent rent = sampleBruceRentsSea()
+                                    .client(client)
+                                    .startDay(2016, MAY, 1 + i)
+                                    .endDay(2016, MAY, 20 + i)
+                                    .build();
+                    try {
+                        manager.createRent(rent);
+                        created.incrementAndGet();
+                    } catch (IllegalEntityException ex) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        
+        runConcurrently(desks);
+        
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(threads * rentsPerThread - 1);
+        assertThat(manager.findAllRents()).hasSize(1);
+    }
+    
+    @Test
+    public void createDisjointRentsConcurrently() throws Exception {
+        Book[] books = {bookSea, bookMorella, bookWild, bookSvejk};
+        int threads = 16;
+        List<Callable<Void>> desks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Book book = books[t % books.length];
+            int week = t / books.length;
+            desks.add(() -> {
+                manager.createRent(sampleBruceRentsSea()
+                                        .book(book)
+                                        .startDay(2016, MAY, 1 + 7 * week)
+                                        .endDay(2016, MAY, 5 + 7 * week)
+                                        .build());
+                return null;
+            });
+        }
+        
+        runConcurrently(desks);
+        
+        List<Rent> rents = manager.findAllRents();
+        assertThat(rents).hasSize(threads);
+        assertThat(rents).extracting("id").doesNotHaveDuplicates();
+    }
+    
     @Test
     public void createRentsOfSameBookInTwoDifferentTimeIntervals() {
         Rent firstRent = sampleBruceRentsSea()
@@ -270,6 +375,66 @@ public class RentManagerImplTest {
         
     }
     
+    @Test
+    public void createRents() {
+        manager.setBatchSize(2);
+        Rent bruceRentsSea = sampleBruceRentsSea().build();
+        Rent bruceRentsSvejk = sampleBruceRentsSea().book(bookSvejk).build();
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        
+        manager.createRents(Arrays.asList(bruceRentsSea, bruceRentsSvejk, steveRentsMorella));
+        
+        assertThat(bruceRentsSea.getId()).isNotNull();
+        assertThat(manager.findAllRents())
+                .containsOnly(bruceRentsSea, bruceRentsSvejk, steveRentsMorella);
+        assertThat(manager.findRentBooksByClient(clientBruce))
+                .containsOnly(bookSea, bookSvejk);
+    }
+    
+    @Test
+    public void createRentsOverlappingEachOther() {
+        Rent firstRent = sampleBruceRentsSea()
+                            .startDay(2016, APRIL, 8)
+                            .endDay(2016, APRIL, 20)
+                            .build();
+        Rent secondRent = sampleSteveRentsMorella()
+                            .book(bookSea)
+                            .startDay(2016, APRIL, 20)
+                            .endDay(2016, APRIL, 30)
+                            .build();
+        
+        assertThatThrownBy(() -> manager.createRents(Arrays.asList(firstRent, secondRent)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findAllRents()).isEmpty();
+    }
+    
+    @Test
+    public void createRentsWithAlreadyRentedBookIsRolledBack() {
+        manager.createRent(sampleBruceRentsSea().build());
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        Rent steveRentsSea = sampleSteveRentsMorella().book(bookSea).build();
+        
+        assertThatThrownBy(() -> manager.createRents(Arrays.asList(steveRentsMorella, steveRentsSea)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findRentBooksByClient(clientSteve)).isEmpty();
+    }
+    
+    @Test
+    public void updateAndDeleteRents() {
+        Rent bruceRentsSea = sampleBruceRentsSea().build();
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        Rent steveRentsWild = sampleSteveRentsMorella().book(bookWild).build();
+        manager.createRents(Arrays.asList(bruceRentsSea, steveRentsMorella, steveRentsWild));
+        
+        bruceRentsSea.setEndDay(bruceRentsSea.getEndDay().plusDays(7));
+        steveRentsMorella.setBook(bookSvejk);
+        manager.updateRents(Arrays.asList(bruceRentsSea, steveRentsMorella));
+        manager.deleteRents(Arrays.asList(steveRentsWild));
+        
+        assertThat(manager.findAllRents())
+                .containsOnly(bruceRentsSea, steveRentsMorella);
+    }
+    
     @Test(expected = IllegalArgumentException.class)
     public void updateNullRent() {
         manager.updateRent(null);
@@ -328,6 +493,28 @@ public class RentManagerImplTest {
         manager.deleteRent(rent);
     }
     
+    @Test
+    public void deleteClientWithRent() {
+        Rent rent = sampleBruceRentsSea().build();
+        manager.createRent(rent);
+
+        assertThatThrownBy(() -> clientManager.deleteClient(clientBruce))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(clientManager.getClient(clientBruce.getId())).isNotNull();
+        assertThat(manager.getRent(rent.getId())).isNotNull();
+    }
+
+    @Test
+    public void deleteBooksWithRentIsRolledBack() {
+        Rent rent = sampleBruceRentsSea().build();
+        manager.createRent(rent);
+
+        assertThatThrownBy(() -> bookManager.deleteBooks(Arrays.asList(bookWild, bookSea)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(bookManager.getBook(bookWild.getId())).isNotNull();
+        assertThat(manager.getRent(rent.getId())).isNotNull();
+    }
+
     @Test
     public void findClientByRentBook() {
         Rent bruceRent = sampleBruceRentsSea().build();
@@ -387,6 +574,82 @@ public class RentManagerImplTest {
                     .containsOnly(bruceRentsSea, bruceRentsSvejk, steveRentsMorella, steveRentsWild);
     }
     
+    @Test
+    public void findAllRentsSharingEntities() {
+        Rent bruceRentsSea = sampleBruceRentsSea().build();
+        Rent bruceRentsSvejk = sampleBruceRentsSea().book(bookSvejk).build();
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        manager.createRent(bruceRentsSea);
+        manager.createRent(bruceRentsSvejk);
+        manager.createRent(steveRentsMorella);
+        manager.setSharingEntities(true);
+
+        List<Rent> rents = manager.findRentsAfter(null, 10);
+        assertThat(rents).containsExactly(bruceRentsSea, bruceRentsSvejk, steveRentsMorella);
+        assertThat(rents.get(0)).isEqualToComparingFieldByField(bruceRentsSea);
+        assertThat(rents.get(0).getClient()).isSameAs(rents.get(1).getClient());
+        assertThat(rents.get(0).getStartDay()).isSameAs(rents.get(1).getStartDay());
+        assertThat(rents.get(0).getClient()).isNotSameAs(rents.get(2).getClient());
+    }
+
+    @Test
+    public void findRentsAfter() {
+        assertThat(manager.findRentsAfter(null, 10)).isEmpty();
+        Rent bruceRentsSea = sampleBruceRentsSea().build();
+        Rent bruceRentsSvejk = sampleBruceRentsSea().book(bookSvejk).build();
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        manager.createRent(bruceRentsSea);
+        manager.createRent(bruceRentsSvejk);
+        manager.createRent(steveRentsMorella);
+        
+        assertThat(manager.findRentsAfter(null, 2))
+                    .containsExactly(bruceRentsSea, bruceRentsSvejk);
+        assertThat(manager.findRentsAfter(bruceRentsSvejk.getId(), 2))
+                    .containsExactly(steveRentsMorella);
+    }
+    
+    @Test
+    public void forEachRent() {
+        Rent bruceRentsSea = sampleBruceRentsSea().build();
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        manager.createRent(bruceRentsSea);
+        manager.createRent(steveRentsMorella);
+        
+        List<Rent> streamed = new ArrayList<>();
+        manager.forEachRent(streamed::add);
+        assertThat(streamed).containsOnly(bruceRentsSea, steveRentsMorella);
+    }
+
+    @Test
+    public void findRentsByQuery() {
+        Rent bruceRentsSea = sampleBruceRentsSea().build();
+        Rent bruceRentsSvejk = sampleBruceRentsSea().book(bookSvejk)
+                .startDay(2016, MAY, 1).endDay(2016, MAY, 20).build();
+        Rent steveRentsMorella = sampleSteveRentsMorella().build();
+        manager.createRents(Arrays.asList(bruceRentsSea, bruceRentsSvejk, steveRentsMorella));
+        
+        assertThat(manager.findRents(new RentQuery()
+                .clientSurname("Dick", MatchMode.PREFIX)
+                .sortBy(RentQuery.SortColumn.END_DAY, true)))
+                .containsExactly(bruceRentsSvejk, bruceRentsSea);
+        assertThat(manager.findRents(new RentQuery()
+                .bookTitle("Soldier", MatchMode.CONTAINS)))
+                .containsExactly(bruceRentsSvejk);
+        assertThat(manager.findRents(new RentQuery()
+                .period(LocalDate.of(2016, MAY, 8), null)))
+                .containsExactly(bruceRentsSvejk);
+        assertThat(manager.findRents(new RentQuery()
+                .period(null, LocalDate.of(2016, APRIL, 9))))
+                .containsExactly(bruceRentsSea);
+        assertThat(manager.findRents(new RentQuery()
+                .sortBy(RentQuery.SortColumn.BOOK_TITLE, false)
+                .page(1, 10)))
+                .containsExactly(bruceRentsSvejk, bruceRentsSea);
+        assertThat(manager.countRents(new RentQuery()
+                .period(LocalDate.of(2016, APRIL, 20), LocalDate.of(2016, MAY, 2))))
+                .isEqualTo(3);
+    }
+    
     @Test
     public void findDelayed() {
         Rent bruceRent = sampleBruceRentsSea().build();
@@ -395,9 +658,243 @@ public class RentManagerImplTest {
         
         assertThat(manager.findDelayedReturns())
                 .contains(bruceRent);
-        
+
+    }
+
+    @Test
+    public void returnRent() {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        Rent steveRent = sampleSteveRentsMorella().build();
+        manager.createRents(Arrays.asList(bruceRent, steveRent));
+
+        manager.returnRent(bruceRent);
+
+        assertThat(bruceRent.getReturnDay()).isEqualTo(NOW.toLocalDate());
+        assertThat(manager.findAllRents()).containsExactly(steveRent);
+        assertThat(manager.findRents(new RentQuery().includeArchived(true)))
+                .containsExactly(bruceRent, steveRent);
+        assertThat(manager.countRents(new RentQuery()
+                .clientSurname("Dick", MatchMode.PREFIX).includeArchived(true)))
+                .isEqualTo(1);
+        // returned book is available for the rest of the rent
+        manager.createRent(sampleSteveRentsMorella().book(bookSea).build());
+        assertThatThrownBy(() -> manager.returnRent(bruceRent))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void archivedRentKeepsItsBookAndClient() {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        manager.createRent(bruceRent);
+        manager.returnRent(bruceRent);
+
+        assertThatThrownBy(() -> bookManager.deleteBook(bookSea))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThatThrownBy(() -> clientManager.deleteClient(clientBruce))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThatThrownBy(() -> clientManager.deleteClients(Arrays.asList(clientBruce)))
+                .isInstanceOf(IllegalEntityException.class);
+
+        assertThat(manager.findRents(new RentQuery().includeArchived(true)))
+                .containsExactly(bruceRent);
+        assertThat(bookManager.getBook(bookSea.getId())).isNotNull();
+        assertThat(clientManager.getClient(clientBruce.getId())).isNotNull();
+    }
+
+    @Test
+    public void returnRentWhichDidNotStart() {
+        Rent steveRent = sampleSteveRentsMorella().build();
+        manager.createRent(steveRent);
+
+        assertThatThrownBy(() -> manager.returnRent(steveRent))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findAllRents()).containsExactly(steveRent);
+    }
+
+    @Test
+    public void overdueRentIsNotArchived() {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        Rent steveRent = sampleSteveRentsMorella().build();
+        Rent daveRent = sampleSteveRentsMorella().client(clientDave).book(bookWild)
+                .startDay(2016, JUNE, 1).endDay(2016, JULY, 1).build();
+        manager.createRents(Arrays.asList(bruceRent, steveRent, daveRent));
+        manager.setClock(prepareClockMock(NOW_PLUS_2_MONTHS));
+
+        manager.returnRent(steveRent);
+
+        assertThat(manager.findDelayedReturns()).containsExactly(bruceRent);
+        assertThat(manager.findAllRents()).containsOnly(bruceRent, daveRent);
+        assertThat(manager.findRents(new RentQuery().includeArchived(true)
+                .sortBy(RentQuery.SortColumn.END_DAY, false)))
+                .containsExactly(steveRent, bruceRent, daveRent);
+    }
+
+    private static Clock prepareMutableClock(ZonedDateTime now) {
+        Clock clock = mock(Clock.class);
+        when(clock.getZone()).thenReturn(now.getZone());
+        when(clock.instant()).thenReturn(now.toInstant());
+        return clock;
+    }
+
+    @Test
+    public void trackingManagerFindsDelayedWithoutDatabase() throws SQLException {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        manager.createRent(bruceRent);
+        TrackingRentManager tracking = new TrackingRentManager(manager,
+                prepareClockMock(NOW_PLUS_2_MONTHS));
+        Rent steveRent = sampleSteveRentsMorella().build();
+        tracking.createRent(steveRent);
+
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(new SQLException());
+        manager.setDataSource(failingDataSource);
+
+        assertThat(tracking.findDelayedReturns())
+                .containsExactly(steveRent, bruceRent);
+    }
+
+    @Test
+    public void trackingManagerFollowsChanges() {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        Rent steveRent = sampleSteveRentsMorella().build();
+        TrackingRentManager tracking = new TrackingRentManager(manager,
+                prepareClockMock(NOW.plusDays(15)));
+        tracking.createRents(Arrays.asList(bruceRent, steveRent));
+        assertThat(tracking.findDelayedReturns()).isEmpty();
+
+        steveRent.setEndDay(LocalDate.of(2016, APRIL, 20));
+        tracking.updateRent(steveRent);
+        assertThat(tracking.findDelayedReturns()).containsExactly(steveRent);
+
+        // client of a rent is not changed by update
+        steveRent.setClient(clientBruce);
+        tracking.updateRent(steveRent);
+        assertThat(tracking.findDelayedReturns()).hasSize(1);
+        assertThat(tracking.findDelayedReturns().get(0).getClient()).isEqualTo(clientSteve);
+
+        tracking.deleteRent(steveRent);
+        assertThat(tracking.findDelayedReturns()).isEmpty();
+        assertThat(tracking.getTracker().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void trackingManagerDoesNotReadUpdatedRents() {
+        Rent steveRent = sampleSteveRentsMorella().build();
+        manager.createRent(steveRent);
+        RentManager delegate = spy(manager);
+        TrackingRentManager tracking = new TrackingRentManager(delegate,
+                prepareClockMock(NOW.plusDays(15)));
+
+        steveRent.setEndDay(LocalDate.of(2016, APRIL, 20));
+        steveRent.setClient(clientBruce);
+        tracking.updateRents(Arrays.asList(steveRent));
+
+        verify(delegate, never()).getRent(anyLong());
+        assertThat(tracking.findDelayedReturns()).hasSize(1);
+        assertThat(tracking.findDelayedReturns().get(0).getEndDay())
+                .isEqualTo(LocalDate.of(2016, APRIL, 20));
+        assertThat(tracking.findDelayedReturns().get(0).getClient()).isEqualTo(clientSteve);
+    }
+
+    @Test
+    public void trackerNotifiesAboutNewlyOverdueRents() {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        Rent steveRent = sampleSteveRentsMorella().build();
+        manager.createRents(Arrays.asList(bruceRent, steveRent));
+        Clock clock = prepareMutableClock(NOW);
+        TrackingRentManager tracking = new TrackingRentManager(manager, clock);
+        List<Rent> notified = new ArrayList<>();
+        tracking.getTracker().addListener((today, rents) -> notified.addAll(rents));
+
+        tracking.getTracker().checkNewlyOverdue();
+        assertThat(notified).isEmpty();
+
+        when(clock.instant()).thenReturn(NOW.plusDays(22).toInstant());
+        tracking.getTracker().checkNewlyOverdue();
+        assertThat(notified).containsExactly(steveRent);
+
+        when(clock.instant()).thenReturn(NOW_PLUS_2_MONTHS.toInstant());
+        tracking.getTracker().checkNewlyOverdue();
+        tracking.getTracker().checkNewlyOverdue();
+        assertThat(notified).containsExactly(steveRent, bruceRent);
     }
     
+    @Test
+    public void availabilityIndexFollowsManager() {
+        Rent bruceRent = sampleBruceRentsSea().build();
+        manager.createRent(bruceRent);
+        Clock clock = prepareMutableClock(NOW);
+        BookAvailabilityIndex index = new BookAvailabilityIndex(clock);
+        index.load(manager);
+        manager.setAvailabilityIndex(index);
+
+        assertThat(index.isAvailable(bookSea.getId())).isFalse();
+        assertThat(index.isAvailable(bookMorella.getId())).isTrue();
+        assertThat(index.findNextFreeDay(bookSea.getId())).isEqualTo(LocalDate.of(2016, MAY, 8));
+
+        Rent steveRent = sampleSteveRentsMorella().build();
+        manager.createRent(steveRent);
+        Rent nextSeaRent = sampleBruceRentsSea().startDay(2016, MAY, 8).endDay(2016, MAY, 20).build();
+        manager.createRent(nextSeaRent);
+        assertThat(index.findNextFreeDay(bookSea.getId())).isEqualTo(LocalDate.of(2016, MAY, 21));
+        assertThat(index.isAvailable(bookMorella.getId(),
+                LocalDate.of(2016, APRIL, 1), LocalDate.of(2016, APRIL, 9))).isTrue();
+        assertThat(index.isAvailable(bookMorella.getId(),
+                LocalDate.of(2016, APRIL, 1), LocalDate.of(2016, APRIL, 10))).isFalse();
+
+        when(clock.instant()).thenReturn(NOW.plusDays(3).toInstant());
+        assertThat(index.isAvailable(bookMorella.getId())).isFalse();
+
+        manager.deleteRent(steveRent);
+        bruceRent.setEndDay(LocalDate.of(2016, APRIL, 9));
+        manager.updateRent(bruceRent);
+        assertThat(index.isAvailable(bookMorella.getId())).isTrue();
+        assertThat(index.isAvailable(bookSea.getId())).isTrue();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void findFreeSlotsAndPlanReservations() {
+        manager.createRents(Arrays.asList(sampleBruceRentsSea().build(),
+                sampleBruceRentsSea().startDay(2016, MAY, 8).endDay(2016, MAY, 20).build(),
+                sampleBruceRentsSea().startDay(2016, JUNE, 1).endDay(2016, JUNE, 10).build()));
+        BookAvailabilityIndex index = new BookAvailabilityIndex(prepareClockMock(NOW));
+        index.load(manager);
+        LocalDate april1 = LocalDate.of(2016, APRIL, 1);
+
+        assertThat(index.findFirstFreeSlot(bookSea.getId(), april1, 6)).isEqualTo(april1);
+        assertThat(index.findFirstFreeSlot(bookSea.getId(), april1, 7))
+                .isEqualTo(LocalDate.of(2016, MAY, 21));
+        assertThat(index.findFirstFreeSlot(bookSea.getId(), april1, 12))
+                .isEqualTo(LocalDate.of(2016, JUNE, 11));
+        assertThat(index.findFirstFreeSlot(bookMorella.getId(), april1, 100)).isEqualTo(april1);
+
+        assertThat(index.planReservations(bookSea.getId(), Arrays.asList(
+                new Reservation(LocalDate.of(2016, APRIL, 10), 5),
+                new Reservation(LocalDate.of(2016, APRIL, 10), 5),
+                new Reservation(april1, 3),
+                new Reservation(april1, 6))))
+                .containsExactly(LocalDate.of(2016, MAY, 21), LocalDate.of(2016, MAY, 26),
+                        april1, LocalDate.of(2016, JUNE, 11));
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void createRentRejectedByAvailabilityIndex() throws SQLException {
+        manager.createRent(sampleBruceRentsSea().build());
+        BookAvailabilityIndex index = new BookAvailabilityIndex(prepareClockMock(NOW));
+        index.load(manager);
+        manager.setAvailabilityIndex(index);
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(new SQLException());
+        manager.setDataSource(failingDataSource);
+
+        assertThatThrownBy(() -> manager.createRent(sampleBruceRentsSea()
+                .startDay(2016, MAY, 1).endDay(2016, MAY, 10).build()))
+                .isInstanceOf(IllegalEntityException.class);
+        verify(failingDataSource, never()).getConnection();
+    }
+
     @FunctionalInterface
     private static interface Operation<T> {
         void callOn(T subjectOfOperation);
@@ -453,6 +950,16 @@ public class RentManagerImplTest {
         testExpectedServiceFailureException((rentManager) -> rentManager.findAllRents());
     }
     
+    @Test
+    public void findRentsAfterWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((rentManager) -> rentManager.findRentsAfter(null, 10));
+    }
+    
+    @Test
+    public void forEachRentWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((rentManager) -> rentManager.forEachRent(rent -> {}));
+    }
+    
     @Test
     public void findClientByBookWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((rentManager) -> 
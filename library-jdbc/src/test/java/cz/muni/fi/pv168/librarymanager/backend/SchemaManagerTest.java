@@ -0,0 +1,231 @@
+package cz.muni.fi.pv168.librarymanager.backend;
+
+import cz.muni.fi.pv168.librarymanager.common.DBUtils;
+import cz.muni.fi.pv168.librarymanager.common.ServiceFailureException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class SchemaManagerTest {
+
+    private static final String RENT_BOOKS_BY_CLIENT =
+            "SELECT book.id,author,title,yearofpublication "
+            + "FROM rent INNER JOIN book ON rent.bookid=book.id WHERE clientid = ?";
+    private static final String CLIENT_BY_RENT_BOOK =
+            "SELECT client.id,name,surname FROM rent INNER JOIN client "
+            + "ON rent.clientid=client.id WHERE rent.bookid=?";
+    private static final String CLIENTS_BY_SURNAME =
+            "SELECT id,name,surname FROM client WHERE surname = ?";
+    private static final String BOOKS_BY_AUTHOR =
+            "SELECT id,author,title,yearofpublication FROM book WHERE author = ?";
+
+    private DataSource dataSource;
+    private SchemaManager schemaManager;
+
+    private static DataSource prepareDataSource() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-schema-test");
+        ds.setCreateDatabase("create");
+        return ds;
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = prepareDataSource();
+        schemaManager = new SchemaManager(dataSource);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, SchemaManager.class.getResource("dropTables.sql"));
+    }
+
+    @Test
+    public void updateEmptyDatabase() throws SQLException {
+        assertThat(schemaManager.getSchemaVersion()).isZero();
+        assertThat(schemaManager.updateSchema()).isEqualTo(SchemaManager.LATEST_VERSION);
+        assertThat(schemaManager.getSchemaVersion()).isEqualTo(SchemaManager.LATEST_VERSION);
+    }
+
+    @Test
+    public void updateUpToDateDatabase() throws SQLException {
+        schemaManager.updateSchema();
+        assertThat(schemaManager.updateSchema()).isZero();
+        assertThat(schemaManager.getSchemaVersion()).isEqualTo(SchemaManager.LATEST_VERSION);
+    }
+
+    @Test
+    public void updateDatabaseOfUserWithoutSchema() throws SQLException {
+        schemaManager.updateSchema();
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-schema-test");
+        ds.setUser("librarian");
+        SchemaManager manager = new SchemaManager(ds);
+
+        assertThat(manager.getSchemaVersion()).isZero();
+        assertThat(manager.updateSchema()).isEqualTo(SchemaManager.LATEST_VERSION);
+        DBUtils.executeSqlScript(ds, SchemaManager.class.getResource("dropTables.sql"));
+    }
+
+    @Test
+    public void updateDatabaseWithoutVersionTable() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, SchemaManager.class.getResource("createTables.sql"));
+        assertThat(schemaManager.getSchemaVersion()).isEqualTo(1);
+        assertThat(schemaManager.updateSchema()).isEqualTo(SchemaManager.LATEST_VERSION - 1);
+    }
+
+    @Test
+    public void updateDatabaseWithRentsOfMissingClients() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, SchemaManager.class.getResource("createTables.sql"));
+        insertSampleData(10);
+        try (Connection conn = dataSource.getConnection();
+            Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM client WHERE id = 7");
+        }
+
+        assertThatThrownBy(() -> schemaManager.updateSchema())
+                .isInstanceOf(ServiceFailureException.class)
+                .hasMessageContaining("1 rents");
+        assertThat(schemaManager.getSchemaVersion()).isEqualTo(1);
+        try (Connection conn = dataSource.getConnection();
+            Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM rent")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isEqualTo(10);
+            st.executeUpdate("DELETE FROM rent WHERE clientid = 7");
+        }
+        assertThat(schemaManager.updateSchema()).isEqualTo(SchemaManager.LATEST_VERSION - 1);
+    }
+
+    @Test
+    public void indexesChangeQueryPlans() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, SchemaManager.class.getResource("createTables.sql"));
+        insertSampleData(2000);
+
+        assertThat(queryPlan(RENT_BOOKS_BY_CLIENT, 7L)).contains("Table Scan ResultSet for RENT");
+        assertThat(queryPlan(CLIENT_BY_RENT_BOOK, 7L)).contains("Table Scan ResultSet for RENT");
+        assertThat(queryPlan(CLIENTS_BY_SURNAME, "Surname 7")).contains("Table Scan ResultSet for CLIENT");
+        assertThat(queryPlan(BOOKS_BY_AUTHOR, "Author 7")).contains("Table Scan ResultSet for BOOK");
+
+        schemaManager.updateSchema();
+
+        assertThat(queryPlan(RENT_BOOKS_BY_CLIENT, 7L)).contains("Index Scan ResultSet for RENT");
+        assertThat(queryPlan(CLIENT_BY_RENT_BOOK, 7L)).contains("Index Scan ResultSet for RENT");
+        assertThat(queryPlan(CLIENTS_BY_SURNAME, "Surname 7"))
+                .contains("Index Scan ResultSet for CLIENT using index CLIENT_SURNAME_IDX");
+        assertThat(queryPlan(BOOKS_BY_AUTHOR, "Author 7"))
+                .contains("Index Scan ResultSet for BOOK using index BOOK_AUTHOR_IDX");
+    }
+
+    @Test
+    public void searchKeysAreFilledByMigration() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, SchemaManager.class.getResource("createTables.sql"));
+        insertSampleData(2000);
+        try (Connection conn = dataSource.getConnection();
+            Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO client (name,surname) VALUES ('Jiří','Novák')");
+            st.executeUpdate("INSERT INTO book (author,title,yearofpublication) "
+                    + "VALUES (NULL,'Válka s Mloky',1936)");
+        }
+
+        schemaManager.updateSchema();
+
+        try (Connection conn = dataSource.getConnection();
+            Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT namekey, surnamekey FROM client WHERE surname = 'Novák'")) {
+                rs.next();
+                assertThat(rs.getString(1)).isEqualTo("jiri");
+                assertThat(rs.getString(2)).isEqualTo("novak");
+            }
+            try (ResultSet rs = st.executeQuery("SELECT authorkey, titlekey FROM book WHERE author IS NULL")) {
+                rs.next();
+                assertThat(rs.getString(1)).isNull();
+                assertThat(rs.getString(2)).isEqualTo("valka s mloky");
+            }
+        }
+        assertThat(queryPlan("SELECT id FROM client WHERE surnamekey = ?", "novak"))
+                .contains("Index Scan ResultSet for CLIENT using index CLIENT_SURNAMEKEY_IDX");
+        assertThat(queryPlan("SELECT id FROM book WHERE titlekey = ?", "valka s mloky"))
+                .contains("Index Scan ResultSet for BOOK using index BOOK_TITLEKEY_IDX");
+    }
+
+    @Test
+    public void deletingBookWithRentsFails() throws SQLException {
+        schemaManager.updateSchema();
+        insertSampleData(10);
+        try (Connection conn = dataSource.getConnection();
+            Statement st = conn.createStatement()) {
+            assertThatThrownBy(() -> st.executeUpdate("DELETE FROM book WHERE id = 1"))
+                    .isInstanceOf(SQLException.class)
+                    .matches(ex -> DBUtils.isForeignKeyViolation((SQLException) ex));
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM rent WHERE bookid = 1")) {
+                rs.next();
+                assertThat(rs.getInt(1)).isEqualTo(1);
+            }
+        }
+    }
+
+    private void insertSampleData(int count) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement bookSt = conn.prepareStatement(
+                "INSERT INTO book (author,title,yearofpublication) VALUES (?,?,?)");
+            PreparedStatement clientSt = conn.prepareStatement(
+                "INSERT INTO client (name,surname) VALUES (?,?)");
+            PreparedStatement rentSt = conn.prepareStatement(
+                "INSERT INTO rent (clientid,bookid,startday,endday) VALUES (?,?,?,?)")) {
+            for (int i = 1; i <= count; i++) {
+                bookSt.setString(1, "Author " + i);
+                bookSt.setString(2, "Title " + i);
+                bookSt.setInt(3, 1900 + i % 100);
+                bookSt.executeUpdate();
+                clientSt.setString(1, "Name " + i);
+                clientSt.setString(2, "Surname " + i);
+                clientSt.executeUpdate();
+            }
+            for (int i = 1; i <= count; i++) {
+                LocalDate start = LocalDate.of(2016, 1, 1).plusDays(i);
+                rentSt.setLong(1, i);
+                rentSt.setLong(2, i);
+                rentSt.setDate(3, Date.valueOf(start));
+                rentSt.setDate(4, Date.valueOf(start.plusDays(14)));
+                rentSt.executeUpdate();
+            }
+        }
+    }
+
+    private String queryPlan(String sql, Object parameter) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+            }
+            try (PreparedStatement st = conn.prepareStatement(sql)) {
+                st.setObject(1, parameter);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        // statistics are collected when the result set is consumed
+                    }
+                }
+            }
+            try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()")) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+}
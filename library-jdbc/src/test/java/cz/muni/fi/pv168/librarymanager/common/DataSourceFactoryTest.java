@@ -0,0 +1,108 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.DelegatingPreparedStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class DataSourceFactoryTest {
+
+    private Properties configuration;
+    private BasicDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        configuration = new Properties();
+        configuration.setProperty("jdbc.url", "jdbc:derby:memory:librarymgr-pool-test;create=true");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void createDataSourceWithDefaults() throws SQLException {
+        dataSource = DataSourceFactory.createDataSource(configuration);
+
+        assertThat(dataSource.isPoolPreparedStatements()).isTrue();
+        assertThat(dataSource.getMaxTotal()).isEqualTo(8);
+        assertThat(dataSource.getValidationQuery()).isEqualTo("VALUES 1");
+        try (Connection conn = dataSource.getConnection()) {
+            assertThat(conn.isValid(1)).isTrue();
+        }
+    }
+
+    @Test
+    public void createDataSourceWithPoolSettings() {
+        configuration.setProperty("pool.maxTotal", "3");
+        configuration.setProperty("pool.minIdle", "1");
+        configuration.setProperty("pool.poolPreparedStatements", "false");
+
+        dataSource = DataSourceFactory.createDataSource(configuration);
+
+        assertThat(dataSource.getMaxTotal()).isEqualTo(3);
+        assertThat(dataSource.getMinIdle()).isEqualTo(1);
+        assertThat(dataSource.isPoolPreparedStatements()).isFalse();
+    }
+
+    @Test
+    public void createRemoteDataSourceWithDefaults() {
+        configuration.setProperty("jdbc.url", "jdbc:derby://localhost:1527/librarymanager");
+        configuration.setProperty("pool.maxWaitMillis", "5000");
+
+        dataSource = DataSourceFactory.createDataSource(configuration);
+
+        assertThat(dataSource.getMaxTotal()).isEqualTo(16);
+        assertThat(dataSource.getMaxIdle()).isEqualTo(dataSource.getMaxTotal());
+        assertThat(dataSource.getMaxWaitMillis()).isEqualTo(5000);
+        assertThat(dataSource.getValidationQuery()).isEqualTo("VALUES 1");
+        assertThat(dataSource.getTestOnBorrow()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createDataSourceWithoutUrl() {
+        DataSourceFactory.createDataSource(new Properties());
+    }
+
+    @Test
+    public void preparedStatementsAreReused() throws SQLException {
+        configuration.setProperty("pool.maxTotal", "1");
+        dataSource = DataSourceFactory.createDataSource(configuration);
+
+        Object first;
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement("VALUES 1")) {
+            first = ((DelegatingPreparedStatement) st).getInnermostDelegate();
+        }
+        try (Connection conn = dataSource.getConnection();
+            PreparedStatement st = conn.prepareStatement("VALUES 1")) {
+            assertThat(((DelegatingPreparedStatement) st).getInnermostDelegate()).isSameAs(first);
+        }
+    }
+
+    @Test
+    public void getStatistics() throws SQLException {
+        dataSource = DataSourceFactory.createDataSource(configuration);
+
+        try (Connection conn = dataSource.getConnection()) {
+            PoolStatistics statistics = DataSourceFactory.getStatistics(dataSource);
+            assertThat(statistics.getNumActive()).isEqualTo(1);
+            assertThat(statistics.getMaxTotal()).isEqualTo(8);
+        }
+        assertThat(DataSourceFactory.getStatistics(dataSource).getNumActive()).isZero();
+    }
+}
@@ -0,0 +1,95 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import cz.muni.fi.pv168.librarymanager.backend.Client;
+import cz.muni.fi.pv168.librarymanager.backend.ClientBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.ClientManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.SchemaManager;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class DatabaseServerTest {
+
+    private DatabaseServer server;
+    private BasicDataSource embedded;
+    private BasicDataSource remote;
+
+    @Before
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new DatabaseServer(DatabaseServer.DEFAULT_HOST, port);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (remote != null) {
+            remote.close();
+        }
+        if (embedded != null) {
+            embedded.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void shareDatabaseThroughServer() throws SQLException {
+        server.start();
+        assertThat(server.isRunning()).isTrue();
+
+        Properties configuration = new Properties();
+        configuration.setProperty("jdbc.url", "jdbc:derby:memory:librarymgr-server-test;create=true");
+        embedded = DataSourceFactory.createDataSource(configuration);
+        new SchemaManager(embedded).updateSchema();
+        Client client = new ClientBuilder().name("Jan").surname("Novak").build();
+        new ClientManagerImpl(embedded).createClient(client);
+
+        configuration.setProperty("jdbc.url", server.getClientUrl("memory:librarymgr-server-test"));
+        remote = DataSourceFactory.createDataSource(configuration);
+        try (Connection conn = remote.getConnection()) {
+            assertThat(conn.getMetaData().getDriverName()).contains("Network Client");
+        }
+        assertThat(new ClientManagerImpl(remote).getClient(client.getId()))
+                .isEqualToComparingFieldByField(client);
+
+        server.stop();
+        assertThat(server.isRunning()).isFalse();
+        // embedded engine keeps the database open
+        assertThat(new ClientManagerImpl(embedded).getClient(client.getId())).isNotNull();
+    }
+
+    @Test
+    public void startOnUsedPort() {
+        DatabaseServer other = new DatabaseServer(DatabaseServer.DEFAULT_HOST, server.getPort());
+        server.start();
+        assertThatThrownBy(other::start).isInstanceOf(ServiceFailureException.class);
+        assertThat(server.isRunning()).isTrue();
+    }
+
+    @Test
+    public void fromConfiguration() {
+        Properties configuration = new Properties();
+        assertThat(DatabaseServer.fromConfiguration(configuration)).isNull();
+
+        configuration.setProperty("server.start", "true");
+        configuration.setProperty("server.port", "1528");
+        DatabaseServer configured = DatabaseServer.fromConfiguration(configuration);
+        assertThat(configured.getHost()).isEqualTo(DatabaseServer.DEFAULT_HOST);
+        assertThat(configured.getClientUrl("librarymanager"))
+                .isEqualTo("jdbc:derby://localhost:1528/librarymanager");
+    }
+}
@@ -0,0 +1,72 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class ManagerExecutorTest {
+
+    private final ManagerExecutor executor = new ManagerExecutor(2, 3);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void callsCompleteFutures() throws Exception {
+        CompletableFuture<Integer> result = executor.submit(() -> 42);
+        CompletableFuture<Integer> failure = executor.submit(() -> {
+            throw new ValidationException("invalid");
+        });
+
+        assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(42);
+        assertThatThrownBy(() -> failure.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(ValidationException.class);
+        assertThat(executor.getPending()).isZero();
+    }
+
+    @Test
+    public void submittingWaitsWhenLimitIsReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < executor.getMaxPending(); i++) {
+            executor.run(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertThat(executor.getPending()).isEqualTo(3);
+
+        CompletableFuture<CompletableFuture<Integer>> submitted
+                = CompletableFuture.supplyAsync(() -> executor.submit(() -> 1));
+        Thread.sleep(200);
+        assertThat(submitted.isDone()).isFalse();
+
+        release.countDown();
+        assertThat(submitted.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    @Test
+    public void interruptedSubmitFails() {
+        Thread.currentThread().interrupt();
+        CompletableFuture<Integer> future = executor.submit(() -> 1);
+
+        assertThat(Thread.interrupted()).isTrue();
+        assertThatThrownBy(future::join).hasCauseInstanceOf(ServiceFailureException.class);
+        assertThat(executor.getPending()).isZero();
+    }
+}
@@ -0,0 +1,133 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import cz.muni.fi.pv168.librarymanager.backend.Book;
+import cz.muni.fi.pv168.librarymanager.backend.BookBuilder;
+import cz.muni.fi.pv168.librarymanager.backend.BookManager;
+import cz.muni.fi.pv168.librarymanager.backend.BookManagerImpl;
+import cz.muni.fi.pv168.librarymanager.backend.SchemaManager;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class MetricsTest {
+
+    private static final String FIND_ALL_BOOKS
+            = "SQL SELECT id, author, title, yearofpublication FROM Book";
+
+    private DataSource dataSource;
+    private Metrics metrics;
+    private BookManager manager;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:librarymgr-test");
+        ds.setCreateDatabase("create");
+        dataSource = ds;
+        new SchemaManager(dataSource).updateSchema();
+        metrics = new Metrics(true);
+        BookManagerImpl impl = new BookManagerImpl(Clock.systemDefaultZone());
+        impl.setDataSource(metrics.instrument(dataSource));
+        manager = metrics.instrument(BookManager.class, impl);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, BookManager.class.getResource("dropTables.sql"));
+    }
+
+    private static Book newBook(String title) {
+        return new BookBuilder().author("Karel Čapek").title(title)
+                .yearOfPublication(1920).build();
+    }
+
+    @Test
+    public void managerCallsAreRecorded() {
+        manager.createBooks(Arrays.asList(newBook("R.U.R."), newBook("Krakatit")));
+        manager.findAllBooks();
+        manager.findAllBooks();
+
+        OperationStats findAll = metrics.getStats("BookManager.findAllBooks");
+        assertThat(findAll.getCalls()).isEqualTo(2);
+        assertThat(findAll.getErrors()).isZero();
+        assertThat(findAll.getRows()).isEqualTo(4);
+        assertThat(findAll.getMaxMicros()).isGreaterThanOrEqualTo(findAll.getP99Micros());
+    }
+
+    @Test
+    public void failedManagerCallsAreRecorded() {
+        assertThatThrownBy(() -> manager.createBook(null))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        OperationStats create = metrics.getStats("BookManager.createBook");
+        assertThat(create.getCalls()).isEqualTo(1);
+        assertThat(create.getErrors()).isEqualTo(1);
+    }
+
+    @Test
+    public void statementsAreRecordedBySql() {
+        manager.createBooks(Arrays.asList(newBook("R.U.R."), newBook("Krakatit")));
+        manager.findAllBooks();
+
+        assertThat(metrics.getAllStats()).extracting(OperationStats::getName)
+                .contains(FIND_ALL_BOOKS);
+        OperationStats findAll = metrics.getStats(FIND_ALL_BOOKS);
+        assertThat(findAll.getCalls()).isEqualTo(1);
+        assertThat(findAll.getRows()).isEqualTo(2);
+        assertThat(metrics.dump()).contains(FIND_ALL_BOOKS, "BookManager.findAllBooks");
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        metrics.setEnabled(false);
+
+        manager.createBook(newBook("R.U.R."));
+        manager.findAllBooks();
+
+        assertThat(metrics.getAllStats()).isEmpty();
+    }
+
+    @Test
+    public void percentilesOfHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMax()).isEqualTo(1_000_000);
+        assertThat(histogram.getPercentile(50)).isBetween(500_000L, 500_000L * 9 / 8);
+        assertThat(histogram.getPercentile(99)).isBetween(990_000L, 1_000_000L);
+        assertThat(histogram.getPercentile(100)).isEqualTo(1_000_000);
+        assertThat(new LatencyHistogram().getPercentile(99)).isZero();
+    }
+
+    @Test
+    public void statisticsAreRegisteredAsMBeans() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBeans(server);
+        manager.findAllBooks();
+
+        ObjectName findAll = new ObjectName(Metrics.JMX_DOMAIN + ":type=Operation,name="
+                + ObjectName.quote("BookManager.findAllBooks"));
+        assertThat(server.getAttribute(findAll, "Calls")).isEqualTo(1L);
+        assertThat((String) server.invoke(new ObjectName(Metrics.JMX_DOMAIN + ":type=Metrics"),
+                "dump", null, null)).contains("BookManager.findAllBooks");
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(findAll)).isFalse();
+    }
+}
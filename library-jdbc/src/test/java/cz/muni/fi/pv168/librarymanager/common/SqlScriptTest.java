@@ -0,0 +1,37 @@
+package cz.muni.fi.pv168.librarymanager.common;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ *
+ * @author Josef Pavelec, Faculty of Informatics, Masaryk University
+ */
+public class SqlScriptTest {
+
+    @Test
+    public void parseSplitsStatementsAndRemovesComments() {
+        SqlScript script = SqlScript.parse("-- books; clients\n"
+                + "CREATE TABLE book (id INT) /* ; */;\n"
+                + "INSERT INTO book VALUES ('a;b', 'it''s');\n"
+                + "\n;  ;\n"
+                + "DROP TABLE book");
+
+        assertThat(script.getStatements()).containsExactly(
+                "CREATE TABLE book (id INT)",
+                "INSERT INTO book VALUES ('a;b', 'it''s')",
+                "DROP TABLE book");
+    }
+
+    @Test
+    public void loadCachesScripts() {
+        SqlScript script = SqlScript.load(SqlScriptTest.class.getResource(
+                "/cz/muni/fi/pv168/librarymanager/backend/dropTables.sql"));
+
+        assertThat(script.getStatements()).isNotEmpty();
+        assertThat(SqlScript.load(SqlScriptTest.class.getResource(
+                "/cz/muni/fi/pv168/librarymanager/backend/dropTables.sql"))).isSameAs(script);
+        assertThatThrownBy(() -> SqlScript.load(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+}